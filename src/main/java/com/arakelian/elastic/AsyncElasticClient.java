@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.arakelian.elastic.model.About;
+import com.arakelian.elastic.model.BulkResponse;
+import com.arakelian.elastic.model.ClusterHealth;
+import com.arakelian.elastic.model.DeletedDocument;
+import com.arakelian.elastic.model.Document;
+import com.arakelian.elastic.model.Documents;
+import com.arakelian.elastic.model.Index;
+import com.arakelian.elastic.model.IndexCreated;
+import com.arakelian.elastic.model.IndexDeleted;
+import com.arakelian.elastic.model.IndexedDocument;
+import com.arakelian.elastic.model.Mget;
+import com.arakelian.elastic.model.Nodes;
+import com.arakelian.elastic.model.Refresh;
+import com.arakelian.elastic.model.search.Search;
+import com.arakelian.elastic.model.search.SearchResponse;
+
+/**
+ * Non-blocking counterpart to {@link ElasticClient}.
+ *
+ * Each method sends its request asynchronously and returns immediately; a calling thread is not
+ * held while the request is in-flight. The returned future completes with the same value that
+ * {@link ElasticClient} would return, or completes exceptionally with the {@link ElasticException}
+ * that it would throw. Cancelling the future cancels the underlying HTTP request.
+ *
+ * Futures may be completed on an I/O thread, so dependent stages should not block; use the
+ * <code>*Async</code> variants of {@link CompletableFuture} for expensive work.
+ *
+ * @see ElasticClient
+ */
+public interface AsyncElasticClient {
+    CompletableFuture<About> about();
+
+    CompletableFuture<BulkResponse> bulk(CharSequence operations, Boolean pretty);
+
+    CompletableFuture<ClusterHealth> clusterHealth();
+
+    CompletableFuture<ClusterHealth> clusterHealth(ClusterHealth.Status waitForStatus, String timeout);
+
+    CompletableFuture<ClusterHealth> clusterHealthForIndex(
+            String names,
+            ClusterHealth.Status waitForStatus,
+            String timeout);
+
+    CompletableFuture<IndexCreated> createIndex(String name, Index index);
+
+    CompletableFuture<IndexDeleted> deleteAllIndexes();
+
+    CompletableFuture<DeletedDocument> deleteDocument(String name, String type, String id);
+
+    CompletableFuture<DeletedDocument> deleteDocument(
+            String name,
+            String type,
+            String id,
+            long epochMillisUtc);
+
+    CompletableFuture<IndexDeleted> deleteIndex(String names);
+
+    CompletableFuture<Document> getDocument(String name, String type, String id, String sourceFields);
+
+    CompletableFuture<Documents> getDocuments(Mget mget);
+
+    CompletableFuture<IndexedDocument> indexDocument(
+            String name,
+            String type,
+            String id,
+            CharSequence document);
+
+    CompletableFuture<IndexedDocument> indexDocument(
+            String name,
+            String type,
+            String id,
+            CharSequence document,
+            long epochMillisUtc);
+
+    /**
+     * Checks to see if specified index exists.
+     *
+     * @param name
+     *            index name
+     * @return future that completes with true if index exists, or false if Elastic returned an HTTP
+     *         404 (not found)
+     */
+    CompletableFuture<Boolean> indexExists(String name);
+
+    CompletableFuture<Nodes> nodes();
+
+    CompletableFuture<Refresh> refreshAllIndexes();
+
+    CompletableFuture<Refresh> refreshIndex(String names);
+
+    CompletableFuture<SearchResponse> search(String name, Search search);
+}
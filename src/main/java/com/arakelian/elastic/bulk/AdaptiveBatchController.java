@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Additive-increase, multiplicative-decrease (AIMD) controller that adjusts the size of bulk batches
+ * and the number of concurrent bulk requests, based upon observed bulk latency and rejections.
+ *
+ * While bulk requests complete within the target latency, the batch size is increased by a fixed
+ * step until it reaches its maximum, and then concurrency is increased by one. When a request is
+ * slower than the target latency, the batch size is halved. When Elastic indicates that it is
+ * overloaded (e.g. HTTP 429 or 503, or per-item rejections), both batch size and concurrency are
+ * halved.
+ */
+final class AdaptiveBatchController {
+    /** Smallest batch size, in bytes; also used as the additive step **/
+    private final int minBatchBytes;
+
+    /** Largest batch size, in bytes **/
+    private final int maxBatchBytes;
+
+    /** Largest number of concurrent bulk requests **/
+    private final int maxConcurrency;
+
+    /** Bulk latency that we try to stay within **/
+    private final long targetLatencyNanos;
+
+    /** Current batch size, in bytes; only modified while holding monitor **/
+    private volatile int batchBytes;
+
+    /** Current number of concurrent bulk requests; only modified while holding monitor **/
+    private volatile int concurrency;
+
+    AdaptiveBatchController(
+            final int minBatchBytes,
+            final int maxBatchBytes,
+            final int maxConcurrency,
+            final long targetLatency,
+            final TimeUnit unit) {
+        Preconditions.checkArgument(minBatchBytes > 0, "minBatchBytes must be greater than 0");
+        Preconditions.checkArgument(
+                maxBatchBytes >= minBatchBytes,
+                "maxBatchBytes must be greater than or equal to minBatchBytes");
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be greater than 0");
+        Preconditions.checkArgument(targetLatency > 0, "targetLatency must be greater than 0");
+        this.minBatchBytes = minBatchBytes;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLatencyNanos = unit.toNanos(targetLatency);
+
+        // slow start
+        this.batchBytes = minBatchBytes;
+        this.concurrency = 1;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Called when a bulk request completes successfully.
+     *
+     * @param latencyNanos
+     *            time taken by bulk request, in nanoseconds
+     */
+    public synchronized void onLatency(final long latencyNanos) {
+        if (latencyNanos > targetLatencyNanos) {
+            batchBytes = Math.max(minBatchBytes, batchBytes / 2);
+        } else if (batchBytes < maxBatchBytes) {
+            batchBytes = (int) Math.min(maxBatchBytes, (long) batchBytes + minBatchBytes);
+        } else if (concurrency < maxConcurrency) {
+            concurrency++;
+        }
+    }
+
+    /**
+     * Called when Elastic indicates that it is overloaded.
+     */
+    public synchronized void onOverload() {
+        batchBytes = Math.max(minBatchBytes, batchBytes / 2);
+        concurrency = Math.max(1, concurrency / 2);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("batchBytes", batchBytes) //
+                .add("concurrency", concurrency) //
+                .toString();
+    }
+}
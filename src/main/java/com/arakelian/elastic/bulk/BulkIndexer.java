@@ -18,25 +18,41 @@
 package com.arakelian.elastic.bulk;
 
 import static com.arakelian.elastic.bulk.BulkOperation.Action.DELETE;
+import static com.arakelian.elastic.bulk.BulkOperation.Action.INDEX;
 import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -46,7 +62,10 @@ import org.slf4j.LoggerFactory;
 
 import com.arakelian.core.utils.ExecutorUtils;
 import com.arakelian.core.utils.MoreStringUtils;
+import com.arakelian.elastic.AsyncElasticClient;
 import com.arakelian.elastic.ElasticClient;
+import com.arakelian.elastic.ElasticHttpException;
+import com.arakelian.elastic.bulk.BulkOperation.Action;
 import com.arakelian.elastic.bulk.event.IndexerListener;
 import com.arakelian.elastic.model.BulkIndexerConfig;
 import com.arakelian.elastic.model.BulkIndexerStats;
@@ -54,8 +73,11 @@ import com.arakelian.elastic.model.BulkResponse;
 import com.arakelian.elastic.model.BulkResponse.BulkOperationResponse;
 import com.arakelian.elastic.model.BulkResponse.Item;
 import com.arakelian.elastic.model.ImmutableBulkIndexerStats;
+import com.arakelian.elastic.model.ImmutableBulkResponse;
 import com.arakelian.elastic.refresh.RefreshLimiter;
 import com.arakelian.elastic.utils.ElasticClientUtils;
+import com.arakelian.elastic.utils.ResizableSemaphore;
+import com.arakelian.elastic.utils.VirtualThreadExecutor;
 import com.arakelian.retry.RetryException;
 import com.arakelian.retry.Retryer;
 import com.google.common.base.MoreObjects;
@@ -63,10 +85,13 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * Indexes or deletes a group of documents from one or more Elastic indexes using the Elastic Bulk
@@ -80,68 +105,94 @@ public class BulkIndexer implements Closeable {
         private final int id;
         private final ImmutableList<BulkOperation> operations;
         private final int totalBytes;
-        private final int delayMillis;
-        private final int attempt;
         private final Reason reason;
 
+        /** Attempt number of each operation, or null if this is the first attempt of every one **/
+        private final int[] attempts;
+
+        /** Lowest attempt number of any operation in this batch **/
+        private final int attempt;
+
+        /** Lane that batch must be sent in, or -1 if batch can be sent in any order **/
+        private final int lane;
+
+        /**
+         * Completes once this batch and its partial retries have finished, which releases the next
+         * batch in the lane; null if batch is not sent in a lane
+         **/
+        private final SettableFuture<Void> settled;
+
+        public Batch(
+                final ImmutableList<BulkOperation> operations,
+                final int totalBytes,
+                final Reason reason,
+                final int lane) {
+            this(operations, totalBytes, null, reason, lane, lane >= 0 ? SettableFuture.create() : null);
+        }
+
         public Batch(
                 final ImmutableList<BulkOperation> operations,
                 final int totalBytes,
-                final int delayMillis,
-                final int attempt,
-                final Reason reason) {
+                final int[] attempts,
+                final Reason reason,
+                final int lane,
+                final SettableFuture<Void> settled) {
             Preconditions.checkNotNull(operations);
+            Preconditions.checkArgument(
+                    attempts == null || attempts.length == operations.size(),
+                    "Number of attempts must match number of operations");
             this.id = BULK_ID.incrementAndGet();
             this.operations = operations;
             this.totalBytes = totalBytes;
-            this.delayMillis = delayMillis;
             this.reason = reason;
-            this.attempt = Math.min(attempt, 1);
+            this.attempts = attempts;
+            this.attempt = attempts != null && attempts.length != 0 ? Ints.min(attempts) : 1;
+            this.lane = lane;
+            this.settled = settled;
             BulkIndexer.this.totalBytes.addAndGet(totalBytes);
         }
 
         /**
          * Returns the payload for the Elastic bulk API endpoint.
          *
-         * We compute this by concatenating all of the individual operations being performed on each
-         * document.
-         *
-         * Note that we never convert the StringBuilder to a String to unnecessarily allocate extra
-         * RAM.
+         * The payload references the UTF-8 encoded bytes of each individual operation; we never
+         * concatenate them, and they are streamed to Elastic with one write per operation.
          *
          * @return payload for the Elastic bulk API endpoint.
          */
-        private CharSequence buildPayload() {
-            // to reduce memory fragmentation when indexing billions of records, let's round up
-            // memory allocation
-            final int size = roundAllocation(totalBytes);
-
-            // allocate a string
-            final StringBuilder buf = new StringBuilder(size);
-            for (final BulkOperation op : operations) {
-                buf.append(op.getOperation());
-            }
-            return buf;
+        private BulkPayload buildPayload() {
+            return BulkPayload.of(operations);
         }
 
         @Override
         public BulkResponse call() throws IOException, InterruptedException {
-            if (delayMillis != 0) {
-                LOGGER.info(
-                        "Waiting {} before sending retry of {}",
-                        MoreStringUtils.toString(delayMillis, TimeUnit.MILLISECONDS),
-                        this);
-                Thread.sleep(delayMillis);
-            }
-
             LOGGER.info("Sending {}", this);
-            final CharSequence ops = buildPayload();
+            final BulkPayload ops = buildPayload();
 
             try {
                 // we assume Retryer verifies that result.isSuccessful() is true
                 final Retryer<BulkResponse> retryer = config.getRetryer();
                 return retryer.call(() -> {
-                    return elasticClient.bulk(ops, false);
+                    if (adaptive == null) {
+                        return elasticClient.bulk(ops, false);
+                    }
+
+                    // only as many batch threads as the adaptive concurrency send at once
+                    batchPermits.acquire();
+                    final long start = System.nanoTime();
+                    try {
+                        final BulkResponse response = elasticClient.bulk(ops, false);
+                        adaptive.onLatency(System.nanoTime() - start);
+                        return response;
+                    } catch (final ElasticHttpException e) {
+                        if (ElasticClientUtils.retryIfResponse(e.getStatusCode())) {
+                            adaptive.onOverload();
+                        }
+                        throw e;
+                    } finally {
+                        batchPermits.release();
+                        updateConcurrency();
+                    }
                 });
             } catch (final ExecutionException e) {
                 throw new IOException("Unable to index " + this, e.getCause());
@@ -152,20 +203,90 @@ public class BulkIndexer implements Closeable {
             }
         }
 
+        /**
+         * Sends this batch with the {@link AsyncElasticClient}, without waiting for the response.
+         * Unlike {@link #call()}, the request is only attempted once; if it fails with an error
+         * that is retryable, the {@link BatchListener} parks the operations as partial retries.
+         *
+         * @return future that completes with the bulk response
+         */
+        private ListenableFuture<BulkResponse> send() {
+            final SettableFuture<BulkResponse> result = SettableFuture.create();
+            final BulkPayload ops = buildPayload();
+
+            LOGGER.info("Sending {}", this);
+            final long start = System.nanoTime();
+            asyncClient.bulk(ops, false).whenComplete((response, t) -> {
+                try {
+                    if (t == null) {
+                        if (adaptive != null) {
+                            adaptive.onLatency(System.nanoTime() - start);
+                            updateConcurrency();
+                        }
+                        result.set(response);
+                        return;
+                    }
+
+                    final Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                    if (adaptive != null && cause instanceof ElasticHttpException) {
+                        final int status = ((ElasticHttpException) cause).getStatusCode();
+                        if (ElasticClientUtils.retryIfResponse(status)) {
+                            adaptive.onOverload();
+                            updateConcurrency();
+                        }
+                    }
+                    result.setException(cause);
+                } finally {
+                    refreshIndexes();
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Returns the attempt number of the operation at the given position in this batch.
+         * Operations that were merged from different retries may be on different attempts.
+         *
+         * @param index
+         *            position of operation
+         * @return the attempt number of the operation
+         */
+        private int getAttempt(final int index) {
+            return attempts != null ? attempts[index] : 1;
+        }
+
         private void failed(final Throwable t) {
             final IndexerListener listener = config.getListener();
             for (final BulkOperation op : operations) {
                 failed.incrementAndGet();
                 listener.onFailure(op, t);
+                releaseBudget(op);
             }
         }
 
         /**
-         * Refresh all of the indexes that we've indexed data into.
+         * Returns true if this batch retries operations of an earlier batch in the same lane. The
+         * lane is still held by the earlier batch, so this batch is sent without waiting for the
+         * lane, and it uses the in-flight permit of the earlier batch.
+         *
+         * @return true if this batch retries operations of an earlier batch in the same lane
+         */
+        private boolean isLaneRetry() {
+            return lane >= 0 && reason == Reason.RETRY;
+        }
+
+
+        /**
+         * Refresh all of the indexes that we've indexed data into. Each index is enqueued once per
+         * batch, no matter how many operations it received.
          */
         private void refreshIndexes() {
+            final Set<String> names = new LinkedHashSet<>();
             for (final BulkOperation op : operations) {
-                final String name = op.getIndex().getName();
+                names.add(op.getIndex().getName());
+            }
+
+            for (final String name : names) {
                 try {
                     refreshLimiter.enqueueRefresh(name);
                 } catch (final RejectedExecutionException e) {
@@ -174,6 +295,16 @@ public class BulkIndexer implements Closeable {
             }
         }
 
+        /**
+         * Marks this batch, and any partial retries, as finished, so that the next batch in the lane
+         * can be sent.
+         */
+        private void settle() {
+            if (settled != null) {
+                settled.set(null);
+            }
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this) //
@@ -183,6 +314,7 @@ public class BulkIndexer implements Closeable {
                     .add("totalBytes", totalBytes) //
                     .add("attempt", attempt) //
                     .add("reason", reason) //
+                    .add("lane", lane >= 0 ? lane : null) //
                     .toString();
         }
     }
@@ -197,6 +329,9 @@ public class BulkIndexer implements Closeable {
         private final Batch batch;
         private final ListenableFuture<BulkResponse> future;
 
+        /** True if the lane of the batch is held until its operations are retried **/
+        private boolean laneRetry;
+
         private BatchListener(
                 final ListenableFuture<BulkResponse> future,
                 final Batch batch,
@@ -207,6 +342,36 @@ public class BulkIndexer implements Closeable {
         }
 
         public void onFailure(final Throwable t) {
+            // asynchronous requests are not retried by the Retryer, so we retry them like partial
+            // failures, without holding a thread while we wait
+            final int maxRetries = config.getMaxPartialRetries();
+            if (asyncClient != null && !isClosed() && RETRY_IO_EXCEPTION.apply(t)
+                    && batch.attempt < maxRetries) {
+                LOGGER.warn("{} failed after {}; retrying", batch, queued, t);
+
+                // each operation has its own attempt limit
+                final IndexerListener listener = config.getListener();
+                final int size = batch.operations.size();
+                final List<BulkOperation> retryable = new ArrayList<>(size);
+                final int[] attempts = new int[size];
+                for (int i = 0; i < size; i++) {
+                    final BulkOperation op = batch.operations.get(i);
+                    final int attempt = batch.getAttempt(i);
+                    if (attempt >= maxRetries) {
+                        failed.incrementAndGet();
+                        listener.onFailure(op, t);
+                        releaseBudget(op);
+                        continue;
+                    }
+                    attempts[retryable.size()] = attempt + 1;
+                    retryable.add(op);
+                }
+
+                retries.addAndGet(retryable.size());
+                laneRetry = scheduleRetry(batch, retryable, Arrays.copyOf(attempts, retryable.size()));
+                return;
+            }
+
             LOGGER.warn("{} failed after {}", batch, queued, t);
             batch.failed(t);
         }
@@ -227,6 +392,7 @@ public class BulkIndexer implements Closeable {
                     batch.operations.size());
 
             List<BulkOperation> retryable = null;
+            int[] attempts = null;
             for (int i = 0; i < size; i++) {
                 final BulkOperation op = batch.operations.get(i);
                 final BulkOperationResponse response = items.get(i).get();
@@ -236,17 +402,21 @@ public class BulkIndexer implements Closeable {
                 if ((status >= 200 && status < 300) || (op.getAction() == DELETE && status == 404)) {
                     successful.incrementAndGet();
                     listener.onSuccess(op, status);
+                    releaseBudget(op);
                     continue;
                 }
 
                 // check if we can retry
-                if (isClosed() || !ElasticClientUtils.retryIfResponse(status)) {
+                final int attempt = batch.getAttempt(i);
+                if (isClosed() || !ElasticClientUtils.retryIfResponse(status)
+                        || attempt >= config.getMaxPartialRetries()) {
                     // operation failed and is not retryable
                     failed.incrementAndGet();
                     if (status == 409) {
                         versionConflicts.incrementAndGet();
                     }
                     listener.onFailure(op, response);
+                    releaseBudget(op);
                     continue;
                 }
 
@@ -262,48 +432,55 @@ public class BulkIndexer implements Closeable {
                 retries.incrementAndGet();
                 if (retryable == null) {
                     retryable = new ArrayList<>(size);
+                    attempts = new int[size];
                 }
+                attempts[retryable.size()] = attempt + 1;
                 retryable.add(op);
             }
 
-            // since the retry batch is merely a subset of this batch, we know that it fits
-            // within the size and byte limitations of batches generally; future improvement might
-            // be to collect these and flush together
+            // retries are parked until they are due, and then merged with other pending retries
             if (retryable != null) {
-                int totalBytes = 0;
-                for (final BulkOperation op : retryable) {
-                    totalBytes += op.getOperation().length();
+                if (adaptive != null) {
+                    // Elastic rejected some operations, so we back off
+                    adaptive.onOverload();
+                    updateConcurrency();
                 }
 
-                final Batch retryBatch = new Batch( //
-                        ImmutableList.copyOf(retryable), //
-                        totalBytes, //
-                        config.getPartialRetryDelayMillis(), batch.attempt + 1, Reason.RETRY);
-
-                // there is no need to check if we are closed, as we will get a
-                // RejectedExecutionException.
-                final ListenableFuture<BulkResponse> result = submitBatch(retryBatch);
-                assert result != null;
+                laneRetry = scheduleRetry(batch, retryable, Arrays.copyOf(attempts, retryable.size()));
             }
         }
 
         @Override
         public void run() {
-            final BulkResponse value;
             try {
-                value = getUninterruptibly(future);
-            } catch (final ExecutionException e) {
-                onFailure(e.getCause());
-                return;
-            } catch (final RuntimeException e) {
-                onFailure(e);
-                return;
-            } catch (final Error e) {
-                onFailure(e);
-                return;
+                final BulkResponse value;
+                try {
+                    value = getUninterruptibly(future);
+                } catch (final ExecutionException e) {
+                    onFailure(e.getCause());
+                    return;
+                } catch (final RuntimeException e) {
+                    onFailure(e);
+                    return;
+                } catch (final Error e) {
+                    onFailure(e);
+                    return;
+                }
+                Preconditions.checkArgument(value != null, "Batch response must be non-null");
+                onSuccess(value);
+            } finally {
+                if (!laneRetry) {
+                    // next batch in lane may be sent
+                    batch.settle();
+
+                    // request is no longer in-flight once response is processed; when the lane is
+                    // held, the permit is handed down to the retry
+                    if (inFlight != null) {
+                        inFlight.release();
+                    }
+                }
+                signalCapacity();
             }
-            Preconditions.checkArgument(value != null, "Batch response must be non-null");
-            onSuccess(value);
         }
     }
 
@@ -323,16 +500,199 @@ public class BulkIndexer implements Closeable {
         }
     }
 
+    /**
+     * Bulk operations that are waiting to be flushed. Producers are assigned to a stripe by thread,
+     * so that concurrent producers do not contend for a single lock; or, when lanes are used,
+     * operations are assigned to a stripe by document.
+     */
+    private static final class Stripe {
+        /** Used as synchronization lock for this stripe **/
+        private final Lock lock = new ReentrantLock();
+
+        /** Bulk operations waiting to be flushed **/
+        private final List<BulkOperation> pendingOperations = Lists.newArrayList();
+
+        /** Total number of bytes in bulk operations **/
+        private int totalPendingBytes;
+
+        /**
+         * Position of pending INDEX or DELETE operation, keyed by index name and id; null if
+         * duplicates are not collapsed
+         **/
+        private final Map<String, Integer> positions;
+
+        /** Lane that batches from this stripe are sent in, or -1 if lanes are not used **/
+        private final int lane;
+
+        private Stripe(final boolean collapseDuplicates, final int lane) {
+            this.positions = collapseDuplicates ? Maps.newHashMap() : null;
+            this.lane = lane;
+        }
+
+        /**
+         * Returns the pending operations of this stripe, and clears the stripe. Caller must hold the
+         * lock.
+         *
+         * @return the pending operations of this stripe
+         */
+        private ImmutableList<BulkOperation> drain() {
+            final ImmutableList<BulkOperation> ops = ImmutableList.copyOf(pendingOperations);
+            pendingOperations.clear();
+            totalPendingBytes = 0;
+            if (positions != null) {
+                positions.clear();
+            }
+            return ops;
+        }
+    }
+
+    /**
+     * Bulk operation that is waiting to be retried.
+     */
+    private static final class PendingRetry implements Delayed {
+        private final BulkOperation op;
+        private final int attempt;
+        private final long dueNanos;
+
+        private PendingRetry(final BulkOperation op, final int attempt, final long dueNanos) {
+            this.op = op;
+            this.attempt = attempt;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Blocks the caller or rejects tasks that an executor cannot accept, according to
+     * {@link BulkIndexerConfig#isBlockingQueue()}. Tasks submitted by the retry thread are always
+     * rejected; see {@link BulkIndexer#deferRetry(Batch)}.
+     */
+    private static final class BatchRejectionPolicy implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+
+        private BatchRejectionPolicy(final boolean blocking) {
+            this.delegate = blocking ? new BlockCallerPolicy() : new ThreadPoolExecutor.AbortPolicy();
+        }
+
+        @Override
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+            if (SUBMITTING_RETRY.get().booleanValue()) {
+                throw new RejectedExecutionException("Executor is busy: " + executor);
+            }
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+
+    /**
+     * Runs tasks on virtual threads, and never runs tasks submitted by the retry thread on that
+     * thread; see {@link BulkIndexer#deferRetry(Batch)}.
+     */
+    private static final class BatchThreadExecutor extends VirtualThreadExecutor {
+        private BatchThreadExecutor(final String prefix, final BulkIndexerConfig config) {
+            super(
+                    VirtualThreadExecutor.newThreadFactory(prefix),
+                    config.getMaximumThreads(),
+                    config.getQueueSize(),
+                    config.isBlockingQueue());
+        }
+
+        @Override
+        protected boolean isCallerRuns() {
+            return super.isCallerRuns() && !SUBMITTING_RETRY.get().booleanValue();
+        }
+    }
+
     private static enum Reason {
         FORCE, MAX_OPERATIONS, MAX_BYTES, RETRY;
     }
 
+    /** True while the retry thread submits a batch that can be deferred if executors are busy **/
+    private static final ThreadLocal<Boolean> SUBMITTING_RETRY = ThreadLocal
+            .withInitial(() -> Boolean.FALSE);
+
     private static final int ONE_KB = 1024;
 
+    /** Partial retry delay doubles with each attempt, up to 32x **/
+    private static final int MAX_RETRY_BACKOFF_SHIFT = 5;
+
     private static final AtomicInteger BULK_ID = new AtomicInteger(0);
 
+    private static final ElasticClientUtils.RetryIoException RETRY_IO_EXCEPTION = //
+            new ElasticClientUtils.RetryIoException();
+
     private static final Logger LOGGER = LoggerFactory.getLogger(BulkIndexer.class);
 
+    /**
+     * Returns a single response that combines the responses of several bulk requests.
+     *
+     * @param responses
+     *            bulk responses
+     * @return a single response that combines the responses of several bulk requests
+     */
+    private static BulkResponse combine(final List<BulkResponse> responses) {
+        final List<Item> items = new ArrayList<>();
+        boolean errors = false;
+        Integer took = null;
+        for (final BulkResponse response : responses) {
+            errors |= Boolean.TRUE.equals(response.getErrors());
+            if (response.getTook() != null) {
+                took = took != null ? Math.max(took, response.getTook()) : response.getTook();
+            }
+            if (response.getItems() != null) {
+                items.addAll(response.getItems());
+            }
+        }
+        return ImmutableBulkResponse.builder() //
+                .errors(errors) //
+                .took(took) //
+                .items(items) //
+                .build();
+    }
+
+    /**
+     * Returns a future that combines the responses of several bulk requests.
+     *
+     * @param futures
+     *            futures of bulk requests
+     * @return a future that combines the responses, or null if there are no futures
+     */
+    private static ListenableFuture<BulkResponse> combineAll(
+            final List<ListenableFuture<BulkResponse>> futures) {
+        if (futures.isEmpty()) {
+            return null;
+        } else if (futures.size() == 1) {
+            return futures.get(0);
+        } else {
+            return Futures.transform(
+                    Futures.allAsList(futures),
+                    BulkIndexer::combine,
+                    MoreExecutors.directExecutor());
+        }
+    }
+
+    private static int getActiveCount(final ExecutorService executor) {
+        if (executor instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) executor).getActiveCount();
+        }
+        return ((ThreadPoolExecutor) executor).getActiveCount();
+    }
+
+    private static int getQueueSize(final ExecutorService executor) {
+        if (executor instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) executor).getQueueSize();
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
     public static int roundAllocation(final int bytes) {
         // JVM will have an easier time with free blocks if they're
         // the same size
@@ -345,26 +705,71 @@ public class BulkIndexer implements Closeable {
     /** Elastic API **/
     private final ElasticClient elasticClient;
 
+    /** Non-blocking Elastic API used to send bulk requests, or null if batch threads send them **/
+    private final AsyncElasticClient asyncClient;
+
+    /**
+     * Limits number of bulk requests in-flight when sending with {@link #asyncClient}; resized to
+     * the adaptive concurrency when adaptive batching is enabled
+     **/
+    private final ResizableSemaphore inFlight;
+
+    /**
+     * Limits number of bulk requests that batch threads send at once to the adaptive concurrency;
+     * null if adaptive batching is disabled, or when sending with {@link #asyncClient}
+     **/
+    private final ResizableSemaphore batchPermits;
+
+    /**
+     * Completes once the most recent batch in each lane, and its partial retries, have finished; null
+     * if lanes are not used
+     **/
+    private final ListenableFuture<?>[] laneTails;
+
     /** Refresh limiter **/
     private final RefreshLimiter refreshLimiter;
 
-    /** Used as synchronization lock to make class thread safe **/
-    private final Lock batchLock = new ReentrantLock();
+    /** Limits bytes in bulk operations across indexers that share it, or null if disabled **/
+    private final MemoryBudget memoryBudget;
+
+    /** Adaptive batch size and concurrency, or null if disabled **/
+    private final AdaptiveBatchController adaptive;
+
+    /** Pending bulk operations, striped to reduce lock contention between producers **/
+    private final Stripe[] stripes;
 
     /** Executor for automatic flushes **/
     private final ScheduledExecutorService flushExecutor;
 
-    /** Bulk operations waiting to be flushed **/
-    private final List<BulkOperation> pendingOperations = Lists.newArrayList();
+    /** Total number of bytes in bulk operations waiting to be flushed, across all stripes **/
+    private final LongAdder totalPendingBytes = new LongAdder();
+
+    /** Bulk operations that are waiting to be retried **/
+    private final DelayQueue<PendingRetry> pendingRetries = new DelayQueue<>();
 
-    /** Total number of bytes in bulk operations **/
-    private int totalPendingBytes;
+    /** Number of bulk operations that are waiting to be retried in a lane that is held for them **/
+    private final AtomicInteger pendingLaneRetries = new AtomicInteger();
+
+    /** Number of bulk operations in retry batches that were deferred because executors were busy **/
+    private final AtomicInteger deferredRetries = new AtomicInteger();
+
+    /** Callbacks that are run once, when the next batch has finished or the indexer is closed **/
+    private final Queue<Runnable> capacityListeners = new ConcurrentLinkedQueue<>();
+
+    /** Executor that submits partial retries when they are due **/
+    private final ScheduledExecutorService retryExecutor;
 
     /** We can only be closed once **/
     private final AtomicBoolean closed = new AtomicBoolean();
 
     /** Number of documents submitted for indexing **/
-    private final AtomicInteger submitted = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+
+    /** Number of bytes in documents submitted for indexing **/
+    private final LongAdder submittedBytes = new LongAdder();
+
+    /** Number of documents that were collapsed into another pending operation on same document **/
+    private final LongAdder collapsed = new LongAdder();
 
     /** Number of documents retried **/
     private final AtomicInteger retries = new AtomicInteger();
@@ -384,56 +789,123 @@ public class BulkIndexer implements Closeable {
     /** Shutdown hook **/
     private final Thread shutdownHook;
 
-    /** Batches that waiting to be processed **/
-    private final LinkedBlockingQueue<Runnable> batchWorkQueue;
-
-    /** Bulk responses that have not been processed **/
-    private final LinkedBlockingQueue<Runnable> bulkResponseWorkQueue;
-
     /** Executor for Elastic bulk API call **/
-    private final ThreadPoolExecutor batchExecutor;
+    private final ExecutorService batchExecutor;
 
     /** Wrapper around {@link #batchExecutor} that adds listening capabilities **/
     private final ListeningExecutorService listeningBatchExecutor;
 
+    /** Limits number of batches waiting in lanes to configured queue size **/
+    private final Semaphore laneQueue;
+
     /** Executor for processing Elastic bulk API response and retrying if needed **/
-    private final ThreadPoolExecutor bulkResponseExecutor;
+    private final ExecutorService bulkResponseExecutor;
 
     /** Wrapper around {@link #bulkResponseExecutor} that adds listening capabilities **/
     private final ListeningExecutorService listeningBulkResponseExecutor;
 
+    public BulkIndexer(
+            final ElasticClient elasticClient,
+            final BulkIndexerConfig config,
+            final RefreshLimiter refreshLimiter) {
+        this(elasticClient, null, config, refreshLimiter);
+    }
+
+    /**
+     * Creates a bulk indexer that sends bulk requests with a non-blocking client. Batch threads
+     * only build payloads, and the number of bulk requests in-flight is limited by
+     * {@link BulkIndexerConfig#getMaxInFlightRequests()} rather than by
+     * {@link BulkIndexerConfig#getMaximumThreads()}.
+     *
+     * Requests that fail with a retryable error are not retried by
+     * {@link BulkIndexerConfig#getRetryer()}; instead, their operations are retried like partial
+     * failures, up to {@link BulkIndexerConfig#getMaxPartialRetries()} attempts.
+     *
+     * @param elasticClient
+     *            Elastic API
+     * @param asyncClient
+     *            non-blocking Elastic API used to send bulk requests, or null to send them from
+     *            batch threads
+     * @param config
+     *            bulk indexer configuration
+     * @param refreshLimiter
+     *            refresh limiter
+     */
     @SuppressWarnings("FutureReturnValueIgnored")
     public BulkIndexer(
             final ElasticClient elasticClient,
+            final AsyncElasticClient asyncClient,
             final BulkIndexerConfig config,
             final RefreshLimiter refreshLimiter) {
         this.config = Preconditions.checkNotNull(config, "config must be non-null");
         this.elasticClient = Preconditions.checkNotNull(elasticClient, "elasticClient must be non-null");
+        this.asyncClient = asyncClient;
         this.refreshLimiter = Preconditions.checkNotNull(refreshLimiter, "refreshLimiter must be non-null");
 
+        // batch size and concurrency may adapt to observed latency and rejections
+        this.adaptive = config.isAdaptiveBatching() ? new AdaptiveBatchController( //
+                Math.min(config.getMinBulkOperationBytes(), config.getMaxBulkOperationBytes()), //
+                config.getMaxBulkOperationBytes(), //
+                asyncClient != null ? config.getMaxInFlightRequests() : config.getMaximumThreads(), //
+                config.getTargetBulkLatencyMillis(), //
+                TimeUnit.MILLISECONDS) : null;
+
+        // pending operations are striped across producers, or partitioned by document into lanes
+        final int lanes = config.getLanes();
+        this.stripes = new Stripe[lanes != 0 ? lanes : config.getPendingStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(config.isCollapseDuplicates(), lanes != 0 ? i : -1);
+        }
+
+        this.memoryBudget = config.getMemoryBudget();
+
         // we queue flushes when waiting for Elastic
         // determine what to do when queue is full
         final RejectedExecutionHandler rejectedExecutionHandler = //
-                config.isBlockingQueue() ? new BlockCallerPolicy() : new ThreadPoolExecutor.AbortPolicy();
+                new BatchRejectionPolicy(config.isBlockingQueue());
 
         // calls to Elastic bulk API are asynchronous
-        batchWorkQueue = new LinkedBlockingQueue<>(config.getQueueSize());
-        batchExecutor = new ThreadPoolExecutor( //
-                1, config.getMaximumThreads(), //
-                0L, TimeUnit.MILLISECONDS, //
-                batchWorkQueue, //
-                ExecutorUtils.newThreadFactory(getClass(), "-batch", false), // daemon
-                rejectedExecutionHandler);
+        final boolean virtualThreads = VirtualThreadExecutor
+                .isVirtualThreadEnabled(config.isVirtualThreads());
+        if (virtualThreads) {
+            batchExecutor = new BatchThreadExecutor(getClass().getSimpleName() + "-batch-", config);
+        } else {
+            // the pool only grows beyond its core size when the queue is full, so we start every
+            // thread that adaptive concurrency may need up front
+            final int coreThreads = adaptive != null ? config.getMaximumThreads()
+                    : lanes != 0 ? Math.min(lanes, config.getMaximumThreads()) : 1;
+            batchExecutor = new ThreadPoolExecutor( //
+                    coreThreads, //
+                    config.getMaximumThreads(), //
+                    0L, TimeUnit.MILLISECONDS, //
+                    new LinkedBlockingQueue<>(config.getQueueSize()), //
+                    ExecutorUtils.newThreadFactory(getClass(), "-batch", false), // daemon
+                    rejectedExecutionHandler);
+        }
         this.listeningBatchExecutor = MoreExecutors.listeningDecorator(batchExecutor);
 
+        // asynchronous requests are limited by permits; with adaptive batching, so are requests that
+        // are sent by batch threads, since the thread pool cannot be shrunk while it is busy
+        final int permits = adaptive != null ? adaptive.getConcurrency() : config.getMaxInFlightRequests();
+        inFlight = asyncClient != null ? new ResizableSemaphore(permits, false) : null;
+        batchPermits = asyncClient == null && adaptive != null ? new ResizableSemaphore(permits, true) : null;
+
+        // batches within a lane are chained, so they are sent serially, and lanes are sent in
+        // parallel; when sending from batch threads, batches waiting in lanes are bounded too
+        laneTails = lanes != 0 ? new ListenableFuture<?>[lanes] : null;
+        laneQueue = lanes != 0 && asyncClient == null ? new Semaphore(config.getQueueSize()) : null;
+
         // processing of Elastic bulk API responses are asynchronous
-        bulkResponseWorkQueue = new LinkedBlockingQueue<>(config.getQueueSize());
-        bulkResponseExecutor = new ThreadPoolExecutor( //
-                1, config.getMaximumThreads(), //
-                0L, TimeUnit.MILLISECONDS, //
-                bulkResponseWorkQueue, //
-                ExecutorUtils.newThreadFactory(getClass(), "-response", true), // daemon
-                rejectedExecutionHandler);
+        if (virtualThreads) {
+            bulkResponseExecutor = new BatchThreadExecutor(getClass().getSimpleName() + "-response-", config);
+        } else {
+            bulkResponseExecutor = new ThreadPoolExecutor( //
+                    1, config.getMaximumThreads(), //
+                    0L, TimeUnit.MILLISECONDS, //
+                    new LinkedBlockingQueue<>(config.getQueueSize()), //
+                    ExecutorUtils.newThreadFactory(getClass(), "-response", true), // daemon
+                    rejectedExecutionHandler);
+        }
         this.listeningBulkResponseExecutor = MoreExecutors.listeningDecorator(bulkResponseExecutor);
 
         // schedule automatic flushes
@@ -453,6 +925,13 @@ public class BulkIndexer implements Closeable {
             flushExecutor = null;
         }
 
+        // partial retries wait on a timer, rather than on a batch thread
+        retryExecutor = MoreExecutors.getExitingScheduledExecutorService( //
+                new ScheduledThreadPoolExecutor(1,
+                        ExecutorUtils.newThreadFactory(getClass(), "-retry", false)), //
+                1,
+                TimeUnit.MINUTES);
+
         // bulk thread pool is daemon, and we use shutdown hook to close it safely
         shutdownHook = ExecutorUtils.createShutdownHook(this);
     }
@@ -507,6 +986,25 @@ public class BulkIndexer implements Closeable {
         }
     }
 
+    /**
+     * Registers a callback that is run once, when the next batch has finished (which may free up
+     * capacity, see {@link #getRemainingCapacity()}), or when the indexer is closed. This allows
+     * callers to wait for capacity without polling.
+     *
+     * The callback runs on the thread that processed the batch response, or on the calling thread
+     * if the indexer is already closed; it must be quick, and must not add bulk operations itself.
+     *
+     * @param listener
+     *            callback
+     */
+    public void addCapacityListener(final Runnable listener) {
+        Preconditions.checkArgument(listener != null, "listener must be non-null");
+        capacityListeners.add(listener);
+        if (isClosed()) {
+            signalCapacity();
+        }
+    }
+
     /**
      * Called during shutdown to terminate the scheduled executor thread.
      *
@@ -517,9 +1015,11 @@ public class BulkIndexer implements Closeable {
     public void close() throws BulkIndexerFailed {
         final boolean shutdown;
 
-        // we only hold the lock long enough to signal to other threads that we're shutting down and
-        // will not take any more business
-        batchLock.lock();
+        // we only hold the locks long enough to signal to other threads that we're shutting down
+        // and will not take any more business; locks are always acquired in the same order
+        for (final Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
         try {
             // once we are closed, we will not flush any more data; everything has to be
             // in queue for processing
@@ -529,7 +1029,9 @@ public class BulkIndexer implements Closeable {
             // we only shutdown once
             shutdown = closed.compareAndSet(false, true);
         } finally {
-            batchLock.unlock();
+            for (int i = stripes.length; --i >= 0;) {
+                stripes[i].lock.unlock();
+            }
         }
 
         if (shutdown) {
@@ -540,123 +1042,438 @@ public class BulkIndexer implements Closeable {
                 ExecutorUtils.shutdown(flushExecutor, timeout, unit, true);
             }
 
+            // batches waiting in lanes are submitted as the batches ahead of them finish, so we
+            // wait for lanes before shutting down the executors
+            awaitLanes(timeout, unit);
+
+            // retries that are already scheduled are submitted when they are due
+            ExecutorUtils.shutdown(retryExecutor, timeout, unit, true);
+
             // shutdown batch executor first; we want to ensure that bulk executor queue is
             // emptied before we shutdown the response executor
             ExecutorUtils.shutdown(listeningBatchExecutor, timeout, unit, true);
 
+            // asynchronous requests are not tracked by an executor, so we wait for them separately
+            awaitInFlightRequests(timeout, unit);
+
             // make sure we process any responses
             ExecutorUtils.shutdown(listeningBulkResponseExecutor, timeout, unit, true);
 
             // shutdown hook is last thing to go
             ExecutorUtils.removeShutdownHook(shutdownHook);
 
+            // nobody waits for capacity that will never come
+            signalCapacity();
+
             // compute final statistics and do notification
             final BulkIndexerStats stats = getStats();
             final IndexerListener listener = config.getListener();
             listener.closed(stats);
 
             // throw exception if indexer failed
-            final long expected = stats.getSubmitted() + stats.getRetries();
-            if (stats.getSuccessful() != expected) {
+            if (stats.getSuccessful() != stats.getExpected()) {
                 throw new BulkIndexerFailed(stats);
             }
         }
     }
 
     /**
-     * Return a new {@link Batch} from the list of queued bulk operations.
-     *
-     * If there are no pending operations that need to be flushed, or the batch size thresholds have
-     * not been met (and force is false), this method will return null.
+     * Waits for every batch that is waiting in a lane to be sent, and for the last batch in each lane
+     * to finish.
      *
-     * @param forceFlush
-     *            true to force a Batch to be created
-     * @return a new {@link Batch}, or null
-     * @throws RejectedExecutionException
-     *             if indexer is closed (and we have pending operations) or background queue is full
+     * @param timeout
+     *            maximum time to wait
+     * @param unit
+     *            time unit of timeout
      */
-    private Batch createBatch(final boolean forceFlush) throws RejectedExecutionException {
-        batchLock.lock();
-        try {
-            final int size = pendingOperations.size();
-            if (size == 0) {
-                return null;
-            }
-
-            // indexer may have closed since we acquired lock
-            ensureOpen();
+    private void awaitLanes(final long timeout, final TimeUnit unit) {
+        if (laneTails == null) {
+            return;
+        }
 
-            final Reason reason;
-            if (forceFlush) {
-                reason = Reason.FORCE;
-            } else if (size >= config.getMaxBulkOperations()) {
-                reason = Reason.MAX_OPERATIONS;
-            } else if (totalPendingBytes > config.getMaxBulkOperationBytes()) {
-                reason = Reason.MAX_BYTES;
-            } else {
-                // no flush
-                reason = null;
+        final List<ListenableFuture<?>> tails = new ArrayList<>(laneTails.length);
+        synchronized (laneTails) {
+            for (final ListenableFuture<?> tail : laneTails) {
+                if (tail != null) {
+                    tails.add(tail);
+                }
             }
+        }
 
-            if (reason != null) {
-                final Batch batch = new Batch(ImmutableList.copyOf(pendingOperations), //
-                        totalPendingBytes, 0, 1, reason);
-                pendingOperations.clear();
-                totalPendingBytes = 0;
-                return batch;
-            }
-        } finally {
-            batchLock.unlock();
+        try {
+            Futures.successfulAsList(tails).get(timeout, unit);
+        } catch (final TimeoutException | ExecutionException e) {
+            LOGGER.warn("Lanes of {} did not finish", this, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return null;
     }
 
     /**
-     * Enqueue a bulk operation to the pending {@link Batch}.
+     * Waits for asynchronous bulk requests to complete, and for their responses to be queued for
+     * processing.
      *
-     * @param bulkOperation
-     *            bulk operation
-     * @param forceFlush
-     *            true if flush operation should be forced, even if batch is not full
-     * @throws RejectedExecutionException
-     *             if indexer is closed or background queue is full
+     * @param timeout
+     *            maximum time to wait
+     * @param unit
+     *            time unit of timeout
      */
-    private ListenableFuture<BulkResponse> enqueue(
-            final BulkOperation bulkOperation,
-            final boolean forceFlush) throws RejectedExecutionException {
-        Preconditions.checkArgument(bulkOperation != null, "bulkOperation must be non-null");
+    private void awaitInFlightRequests(final long timeout, final TimeUnit unit) {
+        if (inFlight == null) {
+            return;
+        }
 
-        // we only hold the lock long enough to add the operation and create a batch if needed
-        final Batch batch;
-        batchLock.lock();
+        // permits are no longer resized once we are closed
+        final int permits = inFlight.getPermits();
         try {
-            // indexer may have closed since we acquired lock
-            ensureOpen();
-
-            // add to queue
-            final CharSequence operation = bulkOperation.getOperation();
-            Preconditions.checkState(
-                    operation.charAt(operation.length() - 1) == '\n',
-                    "Bulk operations must end with newline");
-            totalPendingBytes += operation.length();
-            pendingOperations.add(bulkOperation);
-
-            // keep tally of what we put into queue
-            submitted.incrementAndGet();
-
-            // flush only when queue or memory thresholds are reached
-            batch = createBatch(forceFlush);
-        } finally {
-            batchLock.unlock();
+            if (inFlight.tryAcquire(permits, timeout, unit)) {
+                inFlight.release(permits);
+            } else {
+                LOGGER.warn("Timed out waiting for {} in-flight bulk requests", getInFlightRequests());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
-        // we submit to executor outside the lock, since this thread could block if the queue is
-        // full
-        return batch != null ? submitBatch(batch) : null;
     }
 
     /**
-     * Throws exception if indexer has been closed.
+     * Acquires bytes from the memory budget, if one is configured, blocking or throwing according
+     * to {@link BulkIndexerConfig#isBlockingQueue()}.
+     *
+     * Before blocking, pending operations are flushed, since their bytes would otherwise only be
+     * released by an automatic flush (which may be disabled), or once a batch is large enough to be
+     * sent. We wait at most {@link BulkIndexerConfig#getMemoryBudgetTimeoutMillis()}, in case the
+     * bytes are held by another indexer that shares the budget.
+     *
+     * @param bytes
+     *            size of bulk operation, in bytes
+     * @throws RejectedExecutionException
+     *             if memory budget is exhausted and we are not blocking, or the wait times out or
+     *             is interrupted
+     */
+    private void acquireBudget(final int bytes) throws RejectedExecutionException {
+        if (memoryBudget == null) {
+            return;
+        }
+        if (!config.isBlockingQueue()) {
+            if (!memoryBudget.tryAcquire(bytes)) {
+                throw new RejectedExecutionException("Memory budget is exhausted: " + memoryBudget);
+            }
+            return;
+        }
+
+        if (!memoryBudget.fits(bytes)) {
+            flushQuietly();
+        }
+        final long timeout = config.getMemoryBudgetTimeoutMillis();
+        try {
+            if (!memoryBudget.tryAcquire(bytes, timeout, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Timed out waiting for memory budget: " + memoryBudget);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for memory budget", e);
+        }
+    }
+
+    /**
+     * Adds a bulk operation to the given stripe. Caller must hold the stripe lock.
+     *
+     * If duplicates are collapsed, an INDEX or DELETE of a document that already has a pending
+     * INDEX or DELETE replaces the pending operation in place, unless the pending operation has a
+     * higher version. Other actions are never collapsed, and act as a barrier for the document.
+     * The operation that was collapsed is returned, so that it can be reported once the lock has
+     * been released.
+     *
+     * @param stripe
+     *            stripe that operation is added to
+     * @param op
+     *            bulk operation
+     * @param size
+     *            size of bulk operation, in bytes
+     * @return the operation that was replaced or dropped, or null if no operation was collapsed
+     */
+    private BulkOperation addPending(final Stripe stripe, final BulkOperation op, final int size) {
+        if (stripe.positions != null) {
+            // index names cannot contain slashes
+            final String key = op.getIndex().getName() + '/' + op.getId();
+            final Action action = op.getAction();
+            if (action == INDEX || action == DELETE) {
+                final Integer position = stripe.positions.get(key);
+                if (position != null) {
+                    final BulkOperation pending = stripe.pendingOperations.get(position);
+                    if (!supersedes(op, pending)) {
+                        return op;
+                    }
+                    stripe.pendingOperations.set(position, op);
+                    final int delta = size - pending.getPayload().size();
+                    stripe.totalPendingBytes += delta;
+                    totalPendingBytes.add(delta);
+                    return pending;
+                }
+                stripe.positions.put(key, stripe.pendingOperations.size());
+            } else {
+                stripe.positions.remove(key);
+            }
+        }
+
+        stripe.pendingOperations.add(op);
+        stripe.totalPendingBytes += size;
+        totalPendingBytes.add(size);
+        return null;
+    }
+
+    /**
+     * Returns true if the given operation should replace a pending operation on the same document.
+     *
+     * @param op
+     *            bulk operation
+     * @param pending
+     *            pending bulk operation on same document
+     * @return true if the given operation should replace the pending operation
+     */
+    private boolean supersedes(final BulkOperation op, final BulkOperation pending) {
+        final Long version = op.getVersion();
+        final Long pendingVersion = pending.getVersion();
+        return version == null || pendingVersion == null || version.longValue() >= pendingVersion.longValue();
+    }
+
+    /**
+     * Reports a bulk operation that was collapsed into another pending operation on the same
+     * document, and returns its bytes to the memory budget. Caller must not hold a stripe lock.
+     *
+     * @param op
+     *            bulk operation that was replaced or dropped
+     */
+    private void collapsed(final BulkOperation op) {
+        collapsed.increment();
+        config.getListener().onCollapsed(op);
+        releaseBudget(op);
+    }
+
+    /**
+     * Return a new {@link Batch} from the list of queued bulk operations in the given stripe.
+     *
+     * If there are no pending operations that need to be flushed, or the batch size thresholds have
+     * not been met (and force is false), this method will return null.
+     *
+     * @param stripe
+     *            stripe containing queued bulk operations
+     * @param forceFlush
+     *            true to force a Batch to be created
+     * @return a new {@link Batch}, or null
+     * @throws RejectedExecutionException
+     *             if indexer is closed (and we have pending operations) or background queue is full
+     */
+    private Batch createBatch(final Stripe stripe, final boolean forceFlush)
+            throws RejectedExecutionException {
+        stripe.lock.lock();
+        try {
+            final int size = stripe.pendingOperations.size();
+            if (size == 0) {
+                return null;
+            }
+
+            // indexer may have closed since we acquired lock
+            ensureOpen();
+
+            final Reason reason;
+            if (forceFlush) {
+                reason = Reason.FORCE;
+            } else if (size >= config.getMaxBulkOperations()) {
+                reason = Reason.MAX_OPERATIONS;
+            } else if (stripe.totalPendingBytes > getMaxBatchBytes()) {
+                reason = Reason.MAX_BYTES;
+            } else {
+                // no flush
+                reason = null;
+            }
+
+            if (reason != null) {
+                final int bytes = stripe.totalPendingBytes;
+                totalPendingBytes.add(-bytes);
+                return new Batch(stripe.drain(), bytes, reason, stripe.lane);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Returns new batches that contain the queued bulk operations of every stripe, other than the
+     * given one. Operations from different stripes are merged, and split into batches that respect
+     * the batch size thresholds.
+     *
+     * @param exclude
+     *            stripe that has already been flushed, or null
+     * @return new batches, which is empty if there are no pending operations
+     * @throws RejectedExecutionException
+     *             if indexer is closed (and we have pending operations)
+     */
+    private List<Batch> createForcedBatches(final Stripe exclude) throws RejectedExecutionException {
+        final List<Batch> batches = new ArrayList<>();
+        ImmutableList.Builder<BulkOperation> ops = null;
+        int count = 0;
+        int bytes = 0;
+        for (final Stripe stripe : stripes) {
+            if (stripe == exclude) {
+                continue;
+            }
+
+            final List<BulkOperation> drained;
+            stripe.lock.lock();
+            try {
+                if (stripe.pendingOperations.size() == 0) {
+                    continue;
+                }
+
+                // indexer may have closed since we acquired lock
+                ensureOpen();
+
+                totalPendingBytes.add(-stripe.totalPendingBytes);
+                drained = stripe.drain();
+            } finally {
+                stripe.lock.unlock();
+            }
+
+            for (final BulkOperation op : drained) {
+                final int size = op.getPayload().size();
+                final boolean full = count >= config.getMaxBulkOperations()
+                        || bytes + size > getMaxBatchBytes();
+                if (ops != null && full) {
+                    batches.add(new Batch(ops.build(), bytes, Reason.FORCE, -1));
+                    ops = null;
+                }
+                if (ops == null) {
+                    ops = ImmutableList.builder();
+                    count = 0;
+                    bytes = 0;
+                }
+                ops.add(op);
+                count++;
+                bytes += size;
+            }
+        }
+
+        if (ops != null) {
+            batches.add(new Batch(ops.build(), bytes, Reason.FORCE, -1));
+        }
+        return batches;
+    }
+
+    /**
+     * Returns a batch of merged partial retries. Each operation keeps its own attempt number, so
+     * that an operation is not given up early because it was merged with an older one.
+     *
+     * @param retries
+     *            partial retries
+     * @param bytes
+     *            total bytes of the operations
+     * @return a batch of merged partial retries
+     */
+    private Batch createRetryBatch(final List<PendingRetry> retries, final int bytes) {
+        final ImmutableList.Builder<BulkOperation> ops = ImmutableList.builder();
+        final int[] attempts = new int[retries.size()];
+        for (int i = 0, size = retries.size(); i < size; i++) {
+            final PendingRetry retry = retries.get(i);
+            ops.add(retry.op);
+            attempts[i] = retry.attempt;
+        }
+        return new Batch(ops.build(), bytes, attempts, Reason.RETRY, -1, null);
+    }
+
+    /**
+     * Returns the stripe that the current thread should add bulk operations to.
+     *
+     * @return the stripe that the current thread should add bulk operations to
+     */
+    private Stripe currentStripe() {
+        if (stripes.length == 1) {
+            return stripes[0];
+        }
+        return stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+    }
+
+    /**
+     * Returns the stripe for the lane that the given bulk operation must be sent in. All operations
+     * on the same document are assigned to the same lane.
+     *
+     * @param op
+     *            bulk operation
+     * @return the stripe for the lane that the given bulk operation must be sent in
+     */
+    private Stripe laneStripe(final BulkOperation op) {
+        final int hash = 31 * op.getIndex().getName().hashCode() + op.getId().hashCode();
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    /**
+     * Enqueue a bulk operation to the pending {@link Batch}.
+     *
+     * @param bulkOperation
+     *            bulk operation
+     * @param forceFlush
+     *            true if flush operation should be forced, even if batch is not full
+     * @throws RejectedExecutionException
+     *             if indexer is closed or background queue is full
+     */
+    private ListenableFuture<BulkResponse> enqueue(
+            final BulkOperation bulkOperation,
+            final boolean forceFlush) throws RejectedExecutionException {
+        Preconditions.checkArgument(bulkOperation != null, "bulkOperation must be non-null");
+
+        final BulkPayload operation = bulkOperation.getPayload();
+        Preconditions.checkState(operation.endsWithNewline(), "Bulk operations must end with newline");
+
+        // we wait for the memory budget before acquiring the lock, since this thread could block
+        acquireBudget(operation.size());
+
+        // we only hold the lock long enough to add the operation and create a batch if needed
+        final Stripe stripe = config.getLanes() != 0 ? laneStripe(bulkOperation) : currentStripe();
+        final Batch batch;
+        boolean added = false;
+        BulkOperation collapsedOp = null;
+        stripe.lock.lock();
+        try {
+            // indexer may have closed since we acquired lock
+            ensureOpen();
+
+            // add to queue
+            collapsedOp = addPending(stripe, bulkOperation, operation.size());
+            added = true;
+
+            // keep tally of what we put into queue
+            submitted.increment();
+            submittedBytes.add(operation.size());
+
+            // flush only when queue or memory thresholds are reached
+            batch = createBatch(stripe, forceFlush);
+        } finally {
+            stripe.lock.unlock();
+            if (!added) {
+                releaseBudget(bulkOperation);
+            }
+            if (collapsedOp != null) {
+                // listener is called outside the lock
+                collapsed(collapsedOp);
+            }
+        }
+
+        // we submit to executor outside the lock, since this thread could block if the queue is
+        // full
+        final ListenableFuture<BulkResponse> future = batch != null ? submitBatch(batch) : null;
+        if (!forceFlush || stripes.length == 1) {
+            return future;
+        }
+
+        // a forced flush sends the pending operations of other stripes too
+        final ListenableFuture<BulkResponse> others = flush(stripe);
+        return others != null ? combineAll(ImmutableList.of(future, others)) : future;
+    }
+
+    /**
+     * Throws exception if indexer has been closed.
      *
      * @throws RejectedExecutionException
      *             if indexer has been closed
@@ -677,13 +1494,54 @@ public class BulkIndexer implements Closeable {
      *             if indexer is closed (and we have pending operations) or background queue is full
      */
     public ListenableFuture<BulkResponse> flush() throws RejectedExecutionException {
-        final Batch batch = createBatch(true);
-        if (batch != null) {
-            // we submit to executor outside a lock, since this thread could block if the
-            // batch executor's queue is full
-            return submitBatch(batch);
+        return flush(null);
+    }
+
+    /**
+     * Flushes the pending bulk operations of every stripe other than the given one, and returns a
+     * future that combines the responses of each batch (or null if no batch operation is
+     * required).
+     *
+     * When lanes are used, each lane is flushed in a separate batch, whether batches are sent by
+     * threads or asynchronously. Otherwise, operations from every stripe are merged into batches
+     * that respect the batch size thresholds.
+     *
+     * @param exclude
+     *            stripe that has already been flushed, or null
+     * @return returns a future that corresponds to the batches, or null if no batch operation
+     *         required
+     * @throws RejectedExecutionException
+     *             if indexer is closed (and we have pending operations) or background queue is full
+     */
+    private ListenableFuture<BulkResponse> flush(final Stripe exclude) throws RejectedExecutionException {
+        final List<Batch> batches;
+        if (config.getLanes() != 0) {
+            batches = new ArrayList<>(stripes.length);
+            for (final Stripe stripe : stripes) {
+                final Batch batch = stripe != exclude ? createBatch(stripe, true) : null;
+                if (batch != null) {
+                    batches.add(batch);
+                }
+            }
+        } else {
+            batches = createForcedBatches(exclude);
         }
-        return null;
+
+        // we submit to executor outside a lock, since this thread could block if the batch
+        // executor's queue is full
+        final List<ListenableFuture<BulkResponse>> futures = new ArrayList<>(batches.size());
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            try {
+                futures.add(submitBatch(batches.get(i)));
+            } catch (final RejectedExecutionException e) {
+                // operations in the remaining batches have already been drained from their stripes
+                for (final Batch batch : batches.subList(i + 1, size)) {
+                    abandon(batch, e);
+                }
+                throw e;
+            }
+        }
+        return combineAll(futures);
     }
 
     /**
@@ -699,6 +1557,23 @@ public class BulkIndexer implements Closeable {
         }
     }
 
+    /**
+     * Fails the given bulk operations, which could not be retried.
+     *
+     * @param retries
+     *            operations that were waiting to be retried
+     * @param t
+     *            reason for failure
+     */
+    private void failRetries(final List<PendingRetry> retries, final Throwable t) {
+        final IndexerListener listener = config.getListener();
+        for (final PendingRetry retry : retries) {
+            failed.incrementAndGet();
+            listener.onFailure(retry.op, t);
+            releaseBudget(retry.op);
+        }
+    }
+
     public final BulkIndexerConfig getConfig() {
         return config;
     }
@@ -707,35 +1582,130 @@ public class BulkIndexer implements Closeable {
         return elasticClient;
     }
 
+    /**
+     * Returns the number of bytes that a batch may contain before it is flushed. This is either
+     * {@link BulkIndexerConfig#getMaxBulkOperationBytes()}, or the current adaptive batch size.
+     *
+     * @return number of bytes that a batch may contain before it is flushed
+     */
+    private int getMaxBatchBytes() {
+        return adaptive != null ? adaptive.getBatchBytes() : config.getMaxBulkOperationBytes();
+    }
+
+    /**
+     * Returns the total number of bytes in bulk operations that are waiting to be flushed.
+     *
+     * @return total number of bytes in bulk operations that are waiting to be flushed
+     */
+    public long getPendingBytes() {
+        return totalPendingBytes.sum();
+    }
+
     public RefreshLimiter getRefreshLimiter() {
         return refreshLimiter;
     }
 
+    /**
+     * Returns the number of bulk operations that are waiting to be retried.
+     *
+     * @return number of bulk operations that are waiting to be retried
+     */
+    public int getPendingRetries() {
+        return pendingRetries.size() + pendingLaneRetries.get() + deferredRetries.get();
+    }
+
+    /**
+     * Returns the number of bulk requests that are in-flight, or waiting for their lane, when
+     * sending with an {@link AsyncElasticClient}.
+     *
+     * @return number of bulk requests that are in-flight
+     */
+    public int getInFlightRequests() {
+        return inFlight != null ? Math.max(inFlight.getPermits() - inFlight.availablePermits(), 0) : 0;
+    }
+
+    /**
+     * Returns the number of batches that can be flushed before callers block or are rejected,
+     * according to {@link BulkIndexerConfig#isBlockingQueue()}. This is an estimate, since other
+     * threads may be flushing batches concurrently. If a memory budget is configured, this is zero
+     * when an operation of average size would not fit in the budget.
+     *
+     * @return number of batches that can be flushed before callers block or are rejected
+     */
+    public int getRemainingCapacity() {
+        final int queueSize = config.getQueueSize();
+        int remaining = Math.min(queueSize - getWorkQueueSize(), queueSize - getResponseQueueSize());
+        if (laneQueue != null) {
+            remaining = Math.min(remaining, laneQueue.availablePermits());
+        }
+        if (inFlight != null) {
+            remaining = Math.min(remaining, inFlight.availablePermits());
+        }
+        if (memoryBudget != null && !memoryBudget.fits(getTypicalOperationBytes())) {
+            // next operation would have to wait for memory, no matter how many batches are free
+            return 0;
+        }
+        return Math.max(0, remaining);
+    }
+
+    /**
+     * Returns the average size of the bulk operations that have been submitted, which is used to
+     * estimate whether another operation would fit in the memory budget.
+     *
+     * @return average size of submitted bulk operations, in bytes
+     */
+    private int getTypicalOperationBytes() {
+        final long count = submitted.sum();
+        return count != 0 ? (int) Math.min(Integer.MAX_VALUE, submittedBytes.sum() / count) : 1;
+    }
+
     public int getResponseQueueActiveThreads() {
-        return bulkResponseExecutor.getActiveCount();
+        return getActiveCount(bulkResponseExecutor);
     }
 
     public int getResponseQueueSize() {
-        return bulkResponseWorkQueue.size();
+        return getQueueSize(bulkResponseExecutor);
     }
 
     public BulkIndexerStats getStats() {
         return ImmutableBulkIndexerStats.builder() //
-                .submitted(submitted.get()) //
+                .submitted(submitted.sum()) //
+                .collapsed(collapsed.sum()) //
                 .retries(retries.get()) //
                 .totalBytes(totalBytes.get()) //
                 .successful(successful.get()) //
                 .failed(failed.get()) //
                 .versionConflicts(versionConflicts.get()) //
+                .batchBytes(getMaxBatchBytes()) //
+                .concurrency(getConcurrency()) //
+                .memoryBudget(memoryBudget != null ? memoryBudget.getStats() : null) //
                 .build();
     }
 
+    /**
+     * Returns the number of bulk requests that may be sent concurrently.
+     *
+     * @return number of bulk requests that may be sent concurrently
+     */
+    private int getConcurrency() {
+        if (inFlight != null) {
+            return inFlight.getPermits();
+        }
+        if (batchPermits != null) {
+            return batchPermits.getPermits();
+        }
+        if (batchExecutor instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) batchExecutor).getConcurrency();
+        }
+        return ((ThreadPoolExecutor) batchExecutor).getCorePoolSize();
+    }
+
     public int getWorkQueueActiveThreads() {
-        return batchExecutor.getActiveCount();
+        return getActiveCount(batchExecutor);
     }
 
     public int getWorkQueueSize() {
-        return batchWorkQueue.size();
+        return getQueueSize(batchExecutor);
     }
 
     /**
@@ -754,45 +1724,441 @@ public class BulkIndexer implements Closeable {
      */
     public boolean isIdle() {
         // testing queues is a little faster, so we do that first
-        final boolean idle = batchWorkQueue.isEmpty() //
-                && bulkResponseWorkQueue.isEmpty() //
+        final boolean idle = getWorkQueueSize() == 0 //
+                && getResponseQueueSize() == 0 //
+                && getPendingRetries() == 0 //
                 && getWorkQueueActiveThreads() == 0 //
-                && getResponseQueueActiveThreads() == 0;
+                && getResponseQueueActiveThreads() == 0 //
+                && getInFlightRequests() == 0;
         return idle;
     }
 
+    /**
+     * Returns the delay before a partial retry. The delay doubles with each attempt, and is
+     * jittered to spread out retries, which also gives them a chance to be merged into fewer
+     * batches.
+     *
+     * @param attempt
+     *            attempt number of retry
+     * @return the delay before a partial retry, in milliseconds
+     */
+    private long getRetryDelayMillis(final int attempt) {
+        final int shift = Math.min(Math.max(attempt - 2, 0), MAX_RETRY_BACKOFF_SHIFT);
+        final long delay = (long) config.getPartialRetryDelayMillis() << shift;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Returns the bytes of a bulk operation to the memory budget, once its outcome is known or it
+     * has been collapsed into another operation.
+     *
+     * @param op
+     *            bulk operation
+     */
+    private void releaseBudget(final BulkOperation op) {
+        if (memoryBudget != null) {
+            memoryBudget.release(op.getPayload().size());
+        }
+    }
+
+    /**
+     * Parks bulk operations until they are due to be retried. This does not tie up a batch thread
+     * while waiting.
+     *
+     * Operations from a batch that was sent in a lane are retried together, in the same lane, and
+     * the lane is held until they have been retried; otherwise, an older operation could be applied
+     * after a newer operation on the same document. Operations from other batches are merged with
+     * other pending retries.
+     *
+     * @param batch
+     *            batch that operations were sent in
+     * @param ops
+     *            bulk operations to retry
+     * @param attempts
+     *            attempt number of retry, for each operation
+     * @return true if the lane of the batch is held until the operations are retried
+     */
+    private boolean scheduleRetry(final Batch batch, final List<BulkOperation> ops, final int[] attempts) {
+        if (ops.isEmpty()) {
+            return false;
+        }
+        if (batch.lane >= 0) {
+            return scheduleLaneRetry(batch, ops, attempts);
+        }
+
+        // operations that were merged from different retries back off independently
+        final Map<Integer, List<BulkOperation>> byAttempt = new TreeMap<>();
+        for (int i = 0, size = ops.size(); i < size; i++) {
+            byAttempt.computeIfAbsent(attempts[i], k -> new ArrayList<>()).add(ops.get(i));
+        }
+        for (final Map.Entry<Integer, List<BulkOperation>> entry : byAttempt.entrySet()) {
+            scheduleRetry(entry.getValue(), entry.getKey());
+        }
+        return false;
+    }
+
+    /**
+     * Parks bulk operations that are on the same attempt until they are due to be retried.
+     *
+     * @param ops
+     *            bulk operations to retry
+     * @param attempt
+     *            attempt number of retry
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void scheduleRetry(final List<BulkOperation> ops, final int attempt) {
+        final long delayMillis = getRetryDelayMillis(attempt);
+        final long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+
+        final List<PendingRetry> retries = new ArrayList<>(ops.size());
+        for (final BulkOperation op : ops) {
+            final PendingRetry retry = new PendingRetry(op, attempt, dueNanos);
+            retries.add(retry);
+            pendingRetries.add(retry);
+        }
+
+        LOGGER.info(
+                "Retrying {} operations (attempt {}) in {}",
+                ops.size(),
+                attempt,
+                MoreStringUtils.toString(delayMillis, TimeUnit.MILLISECONDS));
+        try {
+            retryExecutor.schedule(this::submitRetries, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // indexer is shutting down; operations that were not already picked up by an earlier
+            // retry cannot be retried
+            final List<PendingRetry> lost = new ArrayList<>(retries.size());
+            for (final PendingRetry retry : retries) {
+                if (pendingRetries.remove(retry)) {
+                    lost.add(retry);
+                }
+            }
+            failRetries(lost, e);
+        }
+    }
+
+    /**
+     * Parks bulk operations from a batch that was sent in a lane, until they are due to be retried
+     * as a single batch in the same lane. The lane is held until the retry has finished.
+     *
+     * @param batch
+     *            batch that operations were sent in
+     * @param ops
+     *            bulk operations to retry
+     * @param attempts
+     *            attempt number of retry, for each operation
+     * @return true if the lane of the batch is held until the operations are retried
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private boolean scheduleLaneRetry(
+            final Batch batch,
+            final List<BulkOperation> ops,
+            final int[] attempts) {
+        // operations are retried together, so we back off according to the youngest
+        final int attempt = Ints.min(attempts);
+        final long delayMillis = getRetryDelayMillis(attempt);
+        LOGGER.info(
+                "Retrying {} operations (attempt {}) in lane {} in {}",
+                ops.size(),
+                attempt,
+                batch.lane,
+                MoreStringUtils.toString(delayMillis, TimeUnit.MILLISECONDS));
+
+        final ImmutableList<BulkOperation> retry = ImmutableList.copyOf(ops);
+        int bytes = 0;
+        for (final BulkOperation op : retry) {
+            bytes += op.getPayload().size();
+        }
+
+        final int totalBytes = bytes;
+        pendingLaneRetries.addAndGet(retry.size());
+        try {
+            retryExecutor.schedule(() -> {
+                pendingLaneRetries.addAndGet(-retry.size());
+                submitRetryBatch(
+                        new Batch(retry, totalBytes, attempts, Reason.RETRY, batch.lane, batch.settled));
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            // indexer is shutting down
+            pendingLaneRetries.addAndGet(-retry.size());
+            final IndexerListener listener = config.getListener();
+            for (final BulkOperation op : retry) {
+                failed.incrementAndGet();
+                listener.onFailure(op, e);
+                releaseBudget(op);
+            }
+            return false;
+        }
+    }
+
     /**
      * Submits a batch of bulk updates to the {@link #listeningBatchExecutor}.
      *
      * @param batch
      *            batch to be submitted
+     * @return future that represents the batch, or null if a partial retry was deferred because
+     *         executors are busy
      * @throws RejectedExecutionException
      *             if background queue is full
      */
     private ListenableFuture<BulkResponse> submitBatch(final Batch batch) throws RejectedExecutionException {
         final int maxRetries = config.getMaxPartialRetries();
         if (batch.attempt > maxRetries) {
-            throw new RejectedExecutionException(
+            final RejectedExecutionException e = new RejectedExecutionException(
                     "Bulk indexer rejected after " + maxRetries + " attempts: " + batch);
+            abandon(batch, e);
+            throw e;
         }
 
         LOGGER.info("Queuing {}", batch);
         final Stopwatch queued = Stopwatch.createStarted();
         final ListenableFuture<BulkResponse> future;
         try {
-            future = listeningBatchExecutor.submit(batch);
+            if (asyncClient != null) {
+                future = sendAsync(batch);
+            } else if (batch.lane >= 0 && !batch.isLaneRetry()) {
+                future = submitToLane(batch);
+            } else {
+                future = listeningBatchExecutor.submit(batch);
+            }
         } catch (final RejectedExecutionException e) {
+            if (SUBMITTING_RETRY.get().booleanValue() && !batchExecutor.isShutdown()) {
+                deferRetry(batch);
+                return null;
+            }
+
             // batch is lost and cannot be recovered; increase the queue size, or enable blocking
             // queue in the configuration
-            batch.failed(e);
+            abandon(batch, e);
             throw new RejectedExecutionException("Bulk indexer failed to process " + batch, e);
         }
 
-        // process responses asynchronously too
+        // process responses asynchronously too; the listener must never be rejected, since the
+        // outcome of the batch would be lost
+        SUBMITTING_RETRY.remove();
         future.addListener(new BatchListener(future, batch, queued), listeningBulkResponseExecutor);
         return future;
     }
 
+    /**
+     * Fails a batch that could not be submitted, and releases its lane.
+     *
+     * @param batch
+     *            batch that could not be submitted
+     * @param t
+     *            reason for failure
+     */
+    private void abandon(final Batch batch, final Throwable t) {
+        batch.failed(t);
+        batch.settle();
+        if (inFlight != null && batch.isLaneRetry()) {
+            // permit was handed down from the batch that held the lane
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Schedules a batch of partial retries to be submitted again after a delay, because executors
+     * were too busy to accept it. The batch keeps its attempt numbers, and its lane if any.
+     *
+     * @param batch
+     *            batch of partial retries
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void deferRetry(final Batch batch) {
+        final long delayMillis = getRetryDelayMillis(batch.attempt);
+        LOGGER.info(
+                "Executor is busy; deferring {} by {}",
+                batch,
+                MoreStringUtils.toString(delayMillis, TimeUnit.MILLISECONDS));
+
+        final int size = batch.operations.size();
+        deferredRetries.addAndGet(size);
+        try {
+            retryExecutor.schedule(() -> {
+                deferredRetries.addAndGet(-size);
+                submitRetryBatch(batch);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // indexer is shutting down, so we wait for executors instead
+            deferredRetries.addAndGet(-size);
+            SUBMITTING_RETRY.set(Boolean.FALSE);
+            submitBatch(batch);
+        }
+    }
+
+    /**
+     * Sends a batch with the {@link #asyncClient}. Payloads are built on a batch thread, which is
+     * released as soon as the request has been enqueued. A batch in a lane is not sent until the
+     * previous batch in that lane has finished.
+     *
+     * @param batch
+     *            batch to be sent
+     * @return future that represents the batch
+     * @throws RejectedExecutionException
+     *             if too many requests are in-flight (and we are not blocking), or indexer is
+     *             shutting down
+     */
+    private ListenableFuture<BulkResponse> sendAsync(final Batch batch) throws RejectedExecutionException {
+        if (batch.isLaneRetry()) {
+            // lane is held for us, and we use the permit of the batch that holds it
+            return Futures.submitAsync(batch::send, batchExecutor);
+        }
+
+        if (config.isBlockingQueue() && !SUBMITTING_RETRY.get().booleanValue()) {
+            inFlight.acquireUninterruptibly();
+        } else if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many bulk requests in-flight");
+        }
+
+        try {
+            if (batch.lane < 0) {
+                return Futures.submitAsync(batch::send, batchExecutor);
+            }
+
+            final ListenableFuture<?> previous = joinLane(batch);
+            return previous == null ? Futures.submitAsync(batch::send, batchExecutor)
+                    : Futures.whenAllComplete(previous).callAsync(batch::send, batchExecutor);
+        } catch (final RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Submits a batch to its lane, where it will be sent after all previous batches in the lane
+     * have completed.
+     *
+     * @param batch
+     *            batch to be submitted
+     * @return future that represents the batch
+     * @throws RejectedExecutionException
+     *             if lanes are full (and we are not blocking), or indexer is shutting down
+     */
+    private ListenableFuture<BulkResponse> submitToLane(final Batch batch) throws RejectedExecutionException {
+        // batches waiting in lanes are not in the executor queue, so we enforce the queue size
+        if (config.isBlockingQueue()) {
+            laneQueue.acquireUninterruptibly();
+        } else if (!laneQueue.tryAcquire()) {
+            throw new RejectedExecutionException("Lane queue is full");
+        }
+
+        final ListenableFuture<BulkResponse> future;
+        try {
+            final ListenableFuture<?> previous = joinLane(batch);
+            future = previous == null ? listeningBatchExecutor.submit(batch)
+                    : Futures.whenAllComplete(previous).callAsync(
+                            () -> listeningBatchExecutor.submit(batch),
+                            MoreExecutors.directExecutor());
+        } catch (final RejectedExecutionException e) {
+            laneQueue.release();
+            throw e;
+        }
+        future.addListener(laneQueue::release, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * Makes the given batch the most recent batch in its lane, and returns the future of the batch
+     * that it must wait for.
+     *
+     * @param batch
+     *            batch that is sent in a lane
+     * @return future that completes when the previous batch in the lane has finished, or null
+     */
+    private ListenableFuture<?> joinLane(final Batch batch) {
+        synchronized (laneTails) {
+            final ListenableFuture<?> previous = laneTails[batch.lane];
+            laneTails[batch.lane] = batch.settled;
+            return previous != null && !previous.isDone() ? previous : null;
+        }
+    }
+
+    /**
+     * Adjusts the number of concurrent bulk requests to match the adaptive controller. The permits
+     * that limit bulk requests are resized, rather than the batch thread pool, since a thread pool
+     * grows to its maximum size whenever its queue is full.
+     *
+     * Permits are not resized once the indexer is closed, so that we can wait for in-flight
+     * requests to finish.
+     */
+    private void updateConcurrency() {
+        final ResizableSemaphore permits = inFlight != null ? inFlight : batchPermits;
+        final int concurrency = adaptive.getConcurrency();
+        synchronized (permits) {
+            if (!isClosed() && permits.getPermits() != concurrency) {
+                LOGGER.debug("Adjusting bulk concurrency to {} ({})", concurrency, adaptive);
+                permits.setPermits(concurrency);
+            }
+        }
+    }
+
+    /**
+     * Runs the callbacks that are waiting for capacity.
+     *
+     * @see #addCapacityListener(Runnable)
+     */
+    private void signalCapacity() {
+        for (Runnable listener; (listener = capacityListeners.poll()) != null;) {
+            try {
+                listener.run();
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Capacity listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Submits all partial retries that are due, merged into batches that respect the batch size
+     * thresholds.
+     */
+    private void submitRetries() {
+        final List<PendingRetry> due = new ArrayList<>();
+        pendingRetries.drainTo(due);
+
+        final List<PendingRetry> merged = new ArrayList<>();
+        int bytes = 0;
+        for (final PendingRetry retry : due) {
+            final int size = retry.op.getPayload().size();
+            final boolean full = merged.size() >= config.getMaxBulkOperations()
+                    || bytes + size > getMaxBatchBytes();
+            if (!merged.isEmpty() && full) {
+                submitRetryBatch(createRetryBatch(merged, bytes));
+                merged.clear();
+                bytes = 0;
+            }
+            merged.add(retry);
+            bytes += size;
+        }
+
+        if (!merged.isEmpty()) {
+            submitRetryBatch(createRetryBatch(merged, bytes));
+        }
+    }
+
+    /**
+     * Submits a batch of partial retries from the retry thread. If executors are busy, the batch is
+     * deferred rather than sent by the retry thread, or waiting for capacity on it, either of which
+     * would hold up every other retry. Once the indexer is shutting down, and no more retries can
+     * be scheduled, we block as usual.
+     *
+     * @param batch
+     *            batch of partial retries
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void submitRetryBatch(final Batch batch) {
+        SUBMITTING_RETRY.set(Boolean.valueOf(!retryExecutor.isShutdown()));
+        try {
+            submitBatch(batch);
+        } catch (final RejectedExecutionException e) {
+            // operations have already been marked as failed
+            LOGGER.warn("Unable to retry {}", batch, e);
+        } finally {
+            SUBMITTING_RETRY.remove();
+        }
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this) //
@@ -29,7 +29,7 @@ public class BulkIndexerFailed extends IOException {
     private final BulkIndexerStats stats;
 
     public BulkIndexerFailed(final BulkIndexerStats stats) {
-        super("Bulk indexer failed, only " + stats.getSuccessful() + " of " + stats.getTotal()
+        super("Bulk indexer failed, only " + stats.getSuccessful() + " of " + stats.getExpected()
                 + " documents successfully indexed; " + stats);
         this.stats = stats;
     }
@@ -21,10 +21,18 @@ import static com.arakelian.elastic.bulk.BulkOperation.Action.DELETE;
 import static com.arakelian.elastic.bulk.BulkOperation.Action.INDEX;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 
@@ -32,6 +40,7 @@ import com.arakelian.elastic.bulk.BulkOperation.Action;
 import com.arakelian.elastic.model.BulkResponse;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -47,6 +56,15 @@ public class BulkIngester {
     /** Name of default indexer **/
     private static final String DEFAULT_INDEXER = "default";
 
+    /** Minimum size of a collection before its documents are built in parallel **/
+    private static final int MIN_PARALLEL_DOCUMENTS = 256;
+
+    /** Minimum number of documents that are built by each parallel task **/
+    private static final int MIN_DOCUMENTS_PER_TASK = 64;
+
+    /** Number of documents that a {@link BulkIngesterSubscriber} requests at a time by default **/
+    private static final int DEFAULT_REQUEST_SIZE = 100;
+
     /** Bulk indexers by name **/
     private final Map<String, BulkIndexer> bulkIndexers;
 
@@ -56,6 +74,9 @@ public class BulkIngester {
     /** Function that takes an index name and returns the indexer name that should be used **/
     private final Function<String, String> indexToIndexer;
 
+    /** Executor used to build the documents of large collections in parallel, may be null **/
+    private final Executor buildExecutor;
+
     public BulkIngester(final BulkOperationFactory factory, final BulkIndexer bulkIndexer) {
         this(factory, ImmutableMap.of(DEFAULT_INDEXER, bulkIndexer), (index) -> DEFAULT_INDEXER);
     }
@@ -64,6 +85,29 @@ public class BulkIngester {
             final BulkOperationFactory bulkOperationFactory,
             final Map<String, BulkIndexer> bulkIndexers,
             final Function<String, String> indexToIndexer) {
+        this(bulkOperationFactory, bulkIndexers, indexToIndexer, null);
+    }
+
+    /**
+     * Creates a bulk ingester that builds the documents of large collections in parallel.
+     * Operations are always submitted to each indexer in the order of the input documents.
+     *
+     * @param bulkOperationFactory
+     *            bulk operation factory, which must be thread-safe if an executor is provided
+     * @param bulkIndexers
+     *            bulk indexers by name
+     * @param indexToIndexer
+     *            function that takes an index name and returns the indexer name that should be used
+     * @param buildExecutor
+     *            executor used to build documents in parallel (e.g. {@link ForkJoinPool#commonPool()}),
+     *            or null to build documents on the calling thread
+     */
+    public BulkIngester(
+            final BulkOperationFactory bulkOperationFactory,
+            final Map<String, BulkIndexer> bulkIndexers,
+            final Function<String, String> indexToIndexer,
+            final Executor buildExecutor) {
+        this.buildExecutor = buildExecutor;
         this.bulkIndexers = Preconditions.checkNotNull(bulkIndexers, "bulkIndexers must be non-null");
         this.bulkOperationFactory = Preconditions
                 .checkNotNull(bulkOperationFactory, "bulkOperationFactory must be non-null");
@@ -109,12 +153,7 @@ public class BulkIngester {
             return ImmutableMap.of();
         }
 
-        Multimap<String, BulkOperation> batches = null;
-        for (final Object document : documents) {
-            batches = makeBatch(document, DELETE, batches);
-        }
-
-        return dispatch(batches, forceFlush);
+        return dispatch(makeBatch(documents, DELETE), forceFlush);
     }
 
     /**
@@ -174,6 +213,34 @@ public class BulkIngester {
         return bulkOperationFactory;
     }
 
+    /**
+     * Returns an estimate of the number of bulk operations that every bulk indexer can accept
+     * without blocking the caller or rejecting it. This is the smallest number of batches that an
+     * indexer can accept, multiplied by the number of operations in a full batch.
+     *
+     * @return number of bulk operations that every bulk indexer can accept
+     * @see BulkIndexer#getRemainingCapacity()
+     */
+    public long getRemainingCapacity() {
+        long remaining = Long.MAX_VALUE;
+        for (final BulkIndexer bulkIndexer : bulkIndexers.values()) {
+            final long batches = bulkIndexer.getRemainingCapacity();
+            remaining = Math.min(remaining, batches * bulkIndexer.getConfig().getMaxBulkOperations());
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns true if every bulk indexer can accept another batch without blocking the caller or
+     * rejecting it.
+     *
+     * @return true if every bulk indexer can accept another batch
+     * @see BulkIndexer#getRemainingCapacity()
+     */
+    public boolean hasCapacity() {
+        return getRemainingCapacity() != 0;
+    }
+
     /**
      * Adds a list of documents to the Elastic index without immediate flush.
      *
@@ -210,12 +277,7 @@ public class BulkIngester {
             return ImmutableMap.of();
         }
 
-        Multimap<String, BulkOperation> batches = null;
-        for (final Object document : documents) {
-            batches = makeBatch(document, INDEX, batches);
-        }
-
-        return dispatch(batches, forceFlush);
+        return dispatch(makeBatch(documents, INDEX), forceFlush);
     }
 
     /**
@@ -254,6 +316,32 @@ public class BulkIngester {
         return dispatch(makeBatch(document, INDEX, null), forceFlush);
     }
 
+    /**
+     * Returns a new {@link Flow.Subscriber} that indexes or deletes the documents it receives, and
+     * that requests documents from upstream only while the bulk indexers have capacity.
+     *
+     * @param action
+     *            action to be performed, e.g. INDEX or DELETE
+     * @return a new subscriber
+     */
+    public BulkIngesterSubscriber newSubscriber(final Action action) {
+        return newSubscriber(action, DEFAULT_REQUEST_SIZE);
+    }
+
+    /**
+     * Returns a new {@link Flow.Subscriber} that indexes or deletes the documents it receives, and
+     * that requests documents from upstream only while the bulk indexers have capacity.
+     *
+     * @param action
+     *            action to be performed, e.g. INDEX or DELETE
+     * @param requestSize
+     *            number of documents requested from upstream at a time
+     * @return a new subscriber
+     */
+    public BulkIngesterSubscriber newSubscriber(final Action action, final int requestSize) {
+        return new BulkIngesterSubscriber(this, action, requestSize);
+    }
+
     /**
      * Returns a list of {@link BulkOperation}s that needs to be performed in response to a request
      * to index/delete a document. The {@link BulkOperation}s are grouped by indexer name.
@@ -274,6 +362,10 @@ public class BulkIngester {
             return ImmutableMultimap.of();
         }
 
+        if (buildExecutor != null && documents.size() >= MIN_PARALLEL_DOCUMENTS) {
+            return makeBatchInParallel(documents, action);
+        }
+
         Multimap<String, BulkOperation> batches = null;
         for (final Object document : documents) {
             batches = makeBatch(document, action, batches);
@@ -330,20 +422,132 @@ public class BulkIngester {
         }
 
         // a document may be indexed to multiple places
-        if (!bulkOperationFactory.supports(document)) {
-            throw new IOException("Unsupported document: " + document);
-        }
+        final List<BulkOperation> ops = createBulkOperations(document, action);
 
         if (batches == null) {
             batches = LinkedListMultimap.create();
         }
 
-        final List<BulkOperation> ops = bulkOperationFactory.createBulkOperations(document, action);
+        addToBatches(ops, batches);
+        return batches;
+    }
+
+    private void addToBatches(final List<BulkOperation> ops, final Multimap<String, BulkOperation> batches) {
         for (final BulkOperation op : ops) {
             final String indexerName = indexToIndexer.apply(op.getIndex().getName());
             batches.put(indexerName, op);
         }
-        return batches;
+    }
+
+    private List<BulkOperation> createBulkOperations(final Object document, final Action action)
+            throws IOException {
+        final List<BulkOperation> ops = bulkOperationFactory
+                .createBulkOperationsIfSupported(document, action);
+        if (ops == null) {
+            throw new IOException("Unsupported document: " + document);
+        }
+        return ops;
+    }
+
+    /**
+     * Returns the bulk operations for a range of documents, in document order.
+     *
+     * @param documents
+     *            list of documents, which may contain nulls
+     * @param action
+     *            action to be performed on documents
+     * @return the bulk operations for the given documents, in document order
+     * @throws IOException
+     *             if document could not be serialized
+     */
+    private List<BulkOperation> createBulkOperations(final List<?> documents, final Action action)
+            throws IOException {
+        final List<BulkOperation> result = new ArrayList<>(documents.size());
+        for (final Object document : documents) {
+            if (document != null) {
+                result.addAll(createBulkOperations(document, action));
+            }
+        }
+        return result;
+    }
+
+    private int getBuildParallelism() {
+        if (buildExecutor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) buildExecutor).getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private List<BulkOperation> join(final CompletableFuture<List<BulkOperation>> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new IOException("Unable to create bulk operations", cause);
+        }
+    }
+
+    /**
+     * Builds the documents of a collection in parallel, by splitting the collection into ranges
+     * that are built by the build executor; the first range is built by the calling thread. Ranges
+     * are merged in order, so that operations are grouped by indexer in the order of the input
+     * documents, exactly as if they had been built sequentially.
+     *
+     * @param documents
+     *            list of documents
+     * @param action
+     *            action to be performed, e.g. INDEX or DELETE
+     * @return a list of {@link BulkOperation}s for each indexer
+     * @throws RejectedExecutionException
+     *             if the build executor rejects a task
+     * @throws IOException
+     *             if document could not be serialized
+     */
+    private Multimap<String, BulkOperation> makeBatchInParallel(
+            final Collection<?> documents,
+            final Action action) throws RejectedExecutionException, IOException {
+        final List<?> list = documents instanceof List && documents instanceof RandomAccess
+                ? (List<?>) documents
+                : new ArrayList<>(documents);
+        final int size = list.size();
+        final int tasks = Math.max(1, Math.min(getBuildParallelism() * 4, size / MIN_DOCUMENTS_PER_TASK));
+
+        final List<CompletableFuture<List<BulkOperation>>> futures = new ArrayList<>(tasks);
+        try {
+            for (int i = 1; i < tasks; i++) {
+                final List<?> range = list
+                        .subList(rangeStart(size, tasks, i), rangeStart(size, tasks, i + 1));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return createBulkOperations(range, action);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, buildExecutor));
+            }
+
+            final Multimap<String, BulkOperation> batches = LinkedListMultimap.create();
+            addToBatches(createBulkOperations(list.subList(0, rangeStart(size, tasks, 1)), action), batches);
+            for (final CompletableFuture<List<BulkOperation>> future : futures) {
+                addToBatches(join(future), batches);
+            }
+            return batches;
+        } catch (final IOException | RuntimeException e) {
+            // ranges that have not started yet are no longer needed
+            for (final CompletableFuture<List<BulkOperation>> future : futures) {
+                future.cancel(false);
+            }
+            throw e;
+        }
+    }
+
+    private static int rangeStart(final int size, final int ranges, final int range) {
+        return (int) ((long) size * range / ranges);
     }
 
     @Override
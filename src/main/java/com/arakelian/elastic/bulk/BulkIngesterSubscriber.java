@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.bulk.event.IndexerEventFlowPublisher;
+import com.arakelian.elastic.model.BulkIndexerConfig;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A {@link Flow.Subscriber} that indexes or deletes the documents it receives with a
+ * {@link BulkIngester}.
+ *
+ * Documents are requested from upstream in groups of at most {@link #getRequestSize()}, and no
+ * more than the bulk indexers have room for (see {@link BulkIngester#getRemainingCapacity()}).
+ * When the indexers are full, demand is withheld until one of them finishes a batch (see
+ * {@link BulkIndexer#addCapacityListener(Runnable)}), so that upstream is slowed down rather than
+ * callers being blocked or rejected. If an indexer is closed, the subscription is cancelled.
+ *
+ * Documents that cannot be converted into bulk operations are logged and counted, and do not stop
+ * the subscription; outcomes of bulk operations are reported to the {@link BulkIndexerConfig#getListener()}
+ * listener, e.g. an {@link IndexerEventFlowPublisher}.
+ */
+public class BulkIngesterSubscriber implements Flow.Subscriber<Object> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkIngesterSubscriber.class);
+
+    /** Bulk ingester **/
+    private final BulkIngester ingester;
+
+    /** Action performed on each document **/
+    private final Action action;
+
+    /** Number of documents requested from upstream at a time **/
+    private final int requestSize;
+
+    /** Executor that requests more documents once the indexers have capacity again **/
+    private final Executor executor;
+
+    /** True while we are waiting for the indexers to signal capacity **/
+    private final AtomicBoolean waiting = new AtomicBoolean();
+
+    /** Upstream subscription **/
+    private volatile Flow.Subscription subscription;
+
+    /** Number of documents requested from upstream that have not been received yet **/
+    private final AtomicLong outstanding = new AtomicLong();
+
+    /** Serializes requests to upstream, which may deliver documents synchronously **/
+    private final AtomicInteger requesting = new AtomicInteger();
+
+    /** Completes when upstream completes, fails, or the indexers reject documents **/
+    private final SettableFuture<Void> completion = SettableFuture.create();
+
+    /** Number of documents received **/
+    private final LongAdder received = new LongAdder();
+
+    /** Number of documents that could not be converted into bulk operations **/
+    private final LongAdder failed = new LongAdder();
+
+    public BulkIngesterSubscriber(final BulkIngester ingester, final Action action, final int requestSize) {
+        this(ingester, action, requestSize, ForkJoinPool.commonPool());
+    }
+
+    public BulkIngesterSubscriber(
+            final BulkIngester ingester,
+            final Action action,
+            final int requestSize,
+            final Executor executor) {
+        this.ingester = Preconditions.checkNotNull(ingester, "ingester must be non-null");
+        this.action = Preconditions.checkNotNull(action, "action must be non-null");
+        Preconditions.checkArgument(
+                action == Action.INDEX || action == Action.DELETE,
+                "action must be INDEX or DELETE");
+        Preconditions.checkArgument(requestSize > 0, "requestSize must be greater than 0");
+        this.requestSize = requestSize;
+        this.executor = Preconditions.checkNotNull(executor, "executor must be non-null");
+    }
+
+    /**
+     * Waits for a full indexer to finish a batch, without polling. Capacity is checked again after
+     * registering, in case the last batch finished in the meantime.
+     */
+    private void awaitCapacity() {
+        if (!waiting.compareAndSet(false, true)) {
+            return;
+        }
+        for (final BulkIndexer indexer : ingester.getBulkIndexers().values()) {
+            if (indexer.getRemainingCapacity() == 0) {
+                indexer.addCapacityListener(this::capacityAvailable);
+            }
+        }
+        if (ingester.getRemainingCapacity() != 0) {
+            capacityAvailable();
+        }
+    }
+
+    /**
+     * Called when an indexer may have capacity again. Documents are requested on our executor,
+     * since upstream may deliver them synchronously, and we must not index them on the thread of
+     * the indexer that signalled us.
+     */
+    private void capacityAvailable() {
+        if (waiting.compareAndSet(true, false)) {
+            executor.execute(this::requestMore);
+        }
+    }
+
+    /**
+     * Returns a future that completes when upstream has completed and pending bulk operations have
+     * been flushed, or that fails if upstream fails or the indexers reject documents.
+     *
+     * @return a future that completes when this subscriber is done
+     */
+    public ListenableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Returns the number of documents that could not be converted into bulk operations.
+     *
+     * @return number of documents that could not be converted into bulk operations
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of documents received from upstream.
+     *
+     * @return number of documents received from upstream
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Returns true if any of the indexers has been closed, in which case no more documents can be
+     * accepted.
+     *
+     * @return true if any of the indexers has been closed
+     */
+    private boolean isClosed() {
+        for (final BulkIndexer indexer : ingester.getBulkIndexers().values()) {
+            if (indexer.isClosed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            for (final BulkIndexer indexer : ingester.getBulkIndexers().values()) {
+                indexer.flush();
+            }
+            completion.set(null);
+        } catch (final RejectedExecutionException e) {
+            completion.setException(e);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        Preconditions.checkNotNull(t, "t must be non-null");
+        completion.setException(t);
+    }
+
+    @Override
+    public void onNext(final Object document) {
+        // required by Reactive Streams rule 2.13
+        Preconditions.checkNotNull(document, "document must be non-null");
+        if (completion.isDone()) {
+            // subscription was cancelled
+            return;
+        }
+
+        received.increment();
+        try {
+            if (action == Action.DELETE) {
+                ingester.delete(document);
+            } else {
+                ingester.index(document);
+            }
+        } catch (final RejectedExecutionException e) {
+            // indexer is closed or its queue is full; we cannot continue
+            subscription.cancel();
+            completion.setException(e);
+            return;
+        } catch (final IOException | RuntimeException e) {
+            // e.g. ElasticDocException from the document builder
+            failed.increment();
+            LOGGER.warn("Unable to {} document: {}", action, document, e);
+        }
+
+        if (outstanding.decrementAndGet() == 0) {
+            requestMore();
+        }
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        Preconditions.checkNotNull(subscription, "subscription must be non-null");
+        if (this.subscription != null) {
+            // only one subscription is allowed
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        requestMore();
+    }
+
+    /**
+     * Requests more documents from upstream if the indexers have capacity, or waits for them to
+     * signal capacity. This is only called when all requested documents have been received.
+     */
+    private void requestMore() {
+        if (requesting.getAndIncrement() != 0) {
+            // called from within request(); outer loop will request again
+            return;
+        }
+
+        int missed = 1;
+        for (;;) {
+            if (!completion.isDone() && outstanding.get() == 0) {
+                // never request more documents than the remaining batches can hold
+                final long capacity = ingester.getRemainingCapacity();
+                if (isClosed()) {
+                    subscription.cancel();
+                    completion.setException(new RejectedExecutionException("Bulk indexer is closed"));
+                } else if (capacity != 0) {
+                    final long n = Math.min(requestSize, capacity);
+                    outstanding.set(n);
+                    subscription.request(n);
+                } else {
+                    awaitCapacity();
+                }
+            }
+
+            missed = requesting.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("action", action) //
+                .add("requestSize", requestSize) //
+                .add("received", getReceived()) //
+                .add("failed", getFailed()) //
+                .toString();
+    }
+}
@@ -22,6 +22,7 @@ import org.immutables.value.Value;
 
 import com.arakelian.core.feature.Nullable;
 import com.arakelian.elastic.Views;
+import com.arakelian.elastic.doc.CompactJson;
 import com.arakelian.elastic.model.Index;
 import com.arakelian.elastic.model.VersionComponents;
 import com.arakelian.json.JsonFilter;
@@ -213,10 +214,84 @@ public abstract class BulkOperation {
         return minLength;
     }
 
+    /**
+     * Returns the number of bytes required to encode the given character sequence as UTF-8. Unpaired
+     * surrogates are encoded as '?', consistent with {@link String#getBytes(java.nio.charset.Charset)}.
+     *
+     * @param csq
+     *            character sequence
+     * @return number of bytes required to encode the given character sequence as UTF-8
+     */
+    private static int encodedLength(final CharSequence csq) {
+        int size = 0;
+        for (int i = 0, length = csq.length(); i < length; i++) {
+            final char ch = csq.charAt(i);
+            if (ch < 0x80) {
+                size++;
+            } else if (ch < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the given character sequence as UTF-8 into the given buffer, which must be large
+     * enough to hold the result.
+     *
+     * @param csq
+     *            character sequence
+     * @param bytes
+     *            output buffer
+     * @param pos
+     *            position in output buffer where we begin writing
+     * @return position in output buffer after the last byte written
+     */
+    private static int encode(final CharSequence csq, final byte[] bytes, int pos) {
+        for (int i = 0, length = csq.length(); i < length; i++) {
+            final char ch = csq.charAt(i);
+            if (ch < 0x80) {
+                bytes[pos++] = (byte) ch;
+            } else if (ch < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (ch >> 6));
+                bytes[pos++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(ch, csq.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                bytes[pos++] = '?';
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (ch >> 12));
+                bytes[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        return pos;
+    }
+
     @Value.Check
     protected void checkSource() {
         if (getAction().hasSource()) {
             final CharSequence source = getCompactSource();
+            if (source instanceof CompactJson) {
+                // compact JSON never contains newlines
+                Preconditions.checkState(
+                        ((CompactJson) source).getEncodedLength() != 0,
+                        "Source must be non-empty");
+                return;
+            }
             Preconditions.checkState(source != null && source.length() != 0, "Source must be non-empty");
             Preconditions.checkState(
                     StringUtils.indexOf(source, '\n') == -1,
@@ -236,6 +311,10 @@ public abstract class BulkOperation {
     @Value.Auxiliary
     public CharSequence getCompactSource() {
         final CharSequence source = getSource();
+        if (source instanceof CompactJson) {
+            // already compact, no need to scan it
+            return source;
+        }
         if (source != null && StringUtils.indexOf(source, '\n') != -1) {
             // never returns JSON that has newline in it
             return JsonFilter.compactQuietly(source);
@@ -267,9 +346,31 @@ public abstract class BulkOperation {
     @Value.Auxiliary
     public abstract BulkOperationListener getListener();
 
+    /**
+     * Returns the action, metadata and source of this operation, in the format expected by the
+     * Elastic bulk API.
+     *
+     * The operation is decoded from {@link #getPayload()}, which is what {@link BulkIndexer} sends
+     * to Elastic; callers that only need the size or the bytes should use that instead.
+     *
+     * @return the action, metadata and source of this operation
+     */
+    public CharSequence getOperation() {
+        return getPayload().toString();
+    }
+
+    /**
+     * Returns the UTF-8 encoded action, metadata and source of this operation, in the format
+     * expected by the Elastic bulk API.
+     *
+     * The operation is encoded exactly once, directly into a buffer of the exact size required.
+     * Sources that are already encoded as {@link CompactJson} are copied as-is.
+     *
+     * @return the UTF-8 encoded operation
+     */
     @Value.Derived
     @Value.Auxiliary
-    public CharSequence getOperation() {
+    public BulkPayload getPayload() {
         final CharSequence source;
         if (getAction().hasSource()) {
             source = getCompactSource();
@@ -277,17 +378,33 @@ public abstract class BulkOperation {
             source = null;
         }
 
-        // try to pre-allocate buffer large enough to hold operation
-        final int size = BulkIndexer.roundAllocation(128 + //
-                (source != null ? source.length() : 0));
+        // action and metadata are always ASCII, since we escape everything else
+        final StringBuilder metadata = new StringBuilder(128);
+        addActionAndMetadata(metadata);
+        final int metadataLength = metadata.length();
 
-        final StringBuilder buf = new StringBuilder(size);
-        addActionAndMetadata(buf);
+        final CompactJson json = source instanceof CompactJson ? (CompactJson) source : null;
+        final int sourceLength;
+        if (json != null) {
+            sourceLength = json.getEncodedLength() + 1;
+        } else {
+            sourceLength = source != null ? encodedLength(source) + 1 : 0;
+        }
+
+        final int size = metadataLength + sourceLength;
+        final byte[] bytes = new byte[size];
+        for (int i = 0; i < metadataLength; i++) {
+            bytes[i] = (byte) metadata.charAt(i);
+        }
 
-        if (source != null) {
-            buf.append(source).append('\n');
+        if (json != null) {
+            final int pos = json.copyTo(bytes, metadataLength);
+            bytes[pos] = '\n';
+        } else if (source != null) {
+            final int pos = encode(source, bytes, metadataLength);
+            bytes[pos] = '\n';
         }
-        return buf;
+        return BulkPayload.of(bytes);
     }
 
     /**
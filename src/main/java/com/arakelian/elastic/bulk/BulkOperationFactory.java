@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.List;
 
 import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.google.common.collect.ImmutableList;
 
 public interface BulkOperationFactory {
     /**
@@ -39,6 +40,33 @@ public interface BulkOperationFactory {
     public List<BulkOperation> createBulkOperations(final Object document, final Action action)
             throws IOException;
 
+    /**
+     * Returns a list of bulk operations to perform if this factory supports the given document, or
+     * null if it does not. This is equivalent to calling {@link #supports(Object)} followed by
+     * {@link #createBulkOperations(Object, Action)}, but evaluates {@link #supports(Object)} only
+     * once.
+     *
+     * @param document
+     *            document
+     * @param action
+     *            action to perform
+     *
+     * @return a list of bulk operations to perform, which is never null if the document is
+     *         supported, or null if the document is not supported
+     * @throws IOException
+     *             if there is an error creating bulk operations from the given document
+     */
+    public default List<BulkOperation> createBulkOperationsIfSupported(
+            final Object document,
+            final Action action) throws IOException {
+        if (!supports(document)) {
+            return null;
+        }
+        // null would be mistaken for an unsupported document
+        final List<BulkOperation> ops = createBulkOperations(document, action);
+        return ops != null ? ops : ImmutableList.of();
+    }
+
     /**
      * Returns true if this factory supports the given document.
      *
@@ -47,4 +75,16 @@ public interface BulkOperationFactory {
      * @return true if this factory supports the given document
      */
     public boolean supports(final Object document);
+
+    /**
+     * Returns false if this factory never supports documents of the given class, which allows
+     * callers to skip this factory without calling {@link #supports(Object)}.
+     *
+     * @param clazz
+     *            class of the document to be indexed
+     * @return false if this factory never supports documents of the given class
+     */
+    public default boolean supportsClass(final Class<?> clazz) {
+        return true;
+    }
 }
@@ -25,31 +25,73 @@ import org.immutables.value.Value;
 import com.arakelian.elastic.bulk.BulkOperation.Action;
 import com.google.common.collect.ImmutableList;
 
+/**
+ * Dispatches documents to the registered factories that support them.
+ *
+ * The factories that may support a document are determined once for each concrete document class,
+ * using {@link BulkOperationFactory#supportsClass(Class)}, so that dispatch does not have to scan
+ * all registered factories. Each candidate evaluates its predicate only once per document.
+ */
 @Value.Immutable
 public abstract class BulkOperationFactoryRegistry implements BulkOperationFactory {
+    /** Factories that may support documents of a given class, in registration order **/
+    private final ClassValue<ImmutableList<BulkOperationFactory>> candidates = new ClassValue<>() {
+        @Override
+        protected ImmutableList<BulkOperationFactory> computeValue(final Class<?> clazz) {
+            return getFactories().stream() //
+                    .filter(factory -> factory.supportsClass(clazz)) //
+                    .collect(ImmutableList.toImmutableList());
+        }
+    };
+
     @Override
     public List<BulkOperation> createBulkOperations(final Object document, final Action action)
             throws IOException {
+        final List<BulkOperation> ops = createBulkOperationsIfSupported(document, action);
+        return ops != null ? ops : ImmutableList.of();
+    }
+
+    @Override
+    public List<BulkOperation> createBulkOperationsIfSupported(final Object document, final Action action)
+            throws IOException {
+        boolean supported = false;
+        List<BulkOperation> first = null;
         ImmutableList.Builder<BulkOperation> list = null;
 
-        for (final BulkOperationFactory factory : getFactories()) {
-            if (!factory.supports(document)) {
+        for (final BulkOperationFactory factory : getCandidates(document)) {
+            final List<BulkOperation> ops = factory.createBulkOperationsIfSupported(document, action);
+            if (ops == null) {
+                continue;
+            }
+
+            supported = true;
+            if (ops.size() == 0) {
                 continue;
             }
 
-            final List<BulkOperation> ops = factory.createBulkOperations(document, action);
-            if (ops != null && ops.size() != 0) {
-                if (list == null) {
-                    list = ImmutableList.<BulkOperation> builder();
-                }
-                list.addAll(ops);
+            if (first == null) {
+                // most documents are handled by a single factory; builder is only needed to merge
+                first = ops;
+                continue;
             }
+
+            if (list == null) {
+                list = ImmutableList.<BulkOperation> builder().addAll(first);
+            }
+            list.addAll(ops);
         }
 
-        if (list == null) {
-            return ImmutableList.of();
+        if (!supported) {
+            return null;
+        }
+        if (list != null) {
+            return list.build();
         }
-        return list.build();
+        return first != null ? ImmutableList.copyOf(first) : ImmutableList.of();
+    }
+
+    private List<BulkOperationFactory> getCandidates(final Object document) {
+        return document != null ? candidates.get(document.getClass()) : getFactories();
     }
 
     @Value.Default
@@ -59,11 +101,16 @@ public abstract class BulkOperationFactoryRegistry implements BulkOperationFacto
 
     @Override
     public boolean supports(final Object document) {
-        for (final BulkOperationFactory factory : getFactories()) {
+        for (final BulkOperationFactory factory : getCandidates(document)) {
             if (factory.supports(document)) {
                 return true;
             }
         }
         return false;
     }
+
+    @Override
+    public boolean supportsClass(final Class<?> clazz) {
+        return !candidates.get(clazz).isEmpty();
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * UTF-8 encoded payload for the Elastic bulk API.
+ *
+ * The payload is stored as a list of byte buffers (typically one per {@link BulkOperation}, or a
+ * series of pooled direct buffers), so that a batch can be streamed to Elastic without
+ * concatenating the operations or re-encoding them. The buffers are never modified; each write
+ * uses a duplicate, so the same payload may be written more than once.
+ *
+ * This class implements {@link CharSequence} for compatibility with
+ * {@link com.arakelian.elastic.ElasticClient#bulk(CharSequence, Boolean)}; note that the character
+ * view is decoded lazily and is only intended for logging and debugging.
+ */
+public final class BulkPayload implements CharSequence {
+    public static BulkPayload of(final byte[] bytes) {
+        Preconditions.checkArgument(bytes != null, "bytes must be non-null");
+        return new BulkPayload(ImmutableList.of(ByteBuffer.wrap(bytes)), bytes.length);
+    }
+
+    public static BulkPayload of(final List<BulkOperation> operations) {
+        Preconditions.checkArgument(operations != null, "operations must be non-null");
+
+        final ImmutableList.Builder<ByteBuffer> chunks = ImmutableList
+                .builderWithExpectedSize(operations.size());
+        int size = 0;
+        for (final BulkOperation op : operations) {
+            final BulkPayload payload = op.getPayload();
+            chunks.addAll(payload.chunks);
+            size += payload.size;
+        }
+        return new BulkPayload(chunks.build(), size);
+    }
+
+    /**
+     * Returns a payload backed by the given buffers, which must be ready for reading (e.g. flipped).
+     *
+     * @param buffers
+     *            buffers containing UTF-8 encoded bytes
+     * @return a payload backed by the given buffers
+     */
+    public static BulkPayload wrap(final List<ByteBuffer> buffers) {
+        Preconditions.checkArgument(buffers != null, "buffers must be non-null");
+
+        int size = 0;
+        for (final ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        return new BulkPayload(ImmutableList.copyOf(buffers), size);
+    }
+
+    /** UTF-8 encoded chunks **/
+    private final ImmutableList<ByteBuffer> chunks;
+
+    /** Total number of bytes in all chunks **/
+    private final int size;
+
+    /** Decoded string, lazily computed **/
+    private String decoded;
+
+    private BulkPayload(final ImmutableList<ByteBuffer> chunks, final int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        return toString().charAt(index);
+    }
+
+    /**
+     * Returns true if the last byte of the payload is a newline.
+     *
+     * @return true if the last byte of the payload is a newline.
+     */
+    public boolean endsWithNewline() {
+        for (int i = chunks.size(); --i >= 0;) {
+            final ByteBuffer chunk = chunks.get(i);
+            if (chunk.hasRemaining()) {
+                return chunk.get(chunk.limit() - 1) == '\n';
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    /**
+     * Returns the number of UTF-8 encoded bytes in the payload.
+     *
+     * @return number of UTF-8 encoded bytes in the payload.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        // benign race: String is immutable and decoding is idempotent
+        String s = decoded;
+        if (s == null) {
+            final byte[] bytes = new byte[size];
+            int offset = 0;
+            for (final ByteBuffer chunk : chunks) {
+                final int remaining = chunk.remaining();
+                chunk.duplicate().get(bytes, offset, remaining);
+                offset += remaining;
+            }
+            s = new String(bytes, Charsets.UTF_8);
+            decoded = s;
+        }
+        return s;
+    }
+
+    /**
+     * Writes the payload to the given output stream, using one write per chunk.
+     *
+     * @param out
+     *            output stream
+     * @throws IOException
+     *             if payload cannot be written
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        WritableByteChannel channel = null;
+        for (final ByteBuffer chunk : chunks) {
+            if (chunk.hasArray()) {
+                out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            } else {
+                if (channel == null) {
+                    channel = Channels.newChannel(out);
+                }
+                write(chunk, channel);
+            }
+        }
+    }
+
+    /**
+     * Writes the payload to the given channel, using one write per chunk.
+     *
+     * @param channel
+     *            output channel
+     * @throws IOException
+     *             if payload cannot be written
+     */
+    public void writeTo(final WritableByteChannel channel) throws IOException {
+        for (final ByteBuffer chunk : chunks) {
+            write(chunk, channel);
+        }
+    }
+
+    private void write(final ByteBuffer chunk, final WritableByteChannel channel) throws IOException {
+        // never modify position of underlying buffer, so that payload can be written again
+        final ByteBuffer buf = chunk.duplicate();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.arakelian.elastic.model.ImmutableMemoryBudgetStats;
+import com.arakelian.elastic.model.MemoryBudgetStats;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits the total number of bytes in bulk operations that are pending, queued, in-flight or
+ * waiting to be retried. A budget may be shared by several {@link BulkIndexer}s, e.g. every
+ * indexer of a {@link BulkIngester}, so that their combined footprint is bounded.
+ *
+ * Bytes are acquired when an operation is added to an indexer, and released when the outcome of
+ * the operation is reported, or when it is collapsed into another pending operation. An operation
+ * that is larger than the budget itself is admitted when no other bytes are in use.
+ */
+public final class MemoryBudget {
+    /** Maximum number of bytes that may be in use **/
+    private final long capacity;
+
+    /** Used as synchronization lock for {@link #used} **/
+    private final Lock lock = new ReentrantLock();
+
+    /** Signalled when bytes are released **/
+    private final Condition released = lock.newCondition();
+
+    /** Number of bytes in use; guarded by {@link #lock} **/
+    private long used;
+
+    /** Largest number of bytes that were in use at once **/
+    private final AtomicLong peak = new AtomicLong();
+
+    /** Number of times a caller had to wait for bytes to be released **/
+    private final LongAdder blocked = new LongAdder();
+
+    /** Number of times a caller was rejected because the budget was exhausted **/
+    private final LongAdder rejected = new LongAdder();
+
+    public MemoryBudget(final long capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Acquires the given number of bytes, waiting until they are available.
+     *
+     * @param bytes
+     *            number of bytes
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public void acquire(final int bytes) throws InterruptedException {
+        Preconditions.checkArgument(bytes >= 0, "bytes must be non-negative");
+        lock.lockInterruptibly();
+        try {
+            if (!isAvailable(bytes)) {
+                blocked.increment();
+                do {
+                    released.await();
+                } while (!isAvailable(bytes));
+            }
+            take(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if the given number of bytes could be acquired now, without waiting. This is an
+     * estimate, since other threads may acquire or release bytes concurrently.
+     *
+     * @param bytes
+     *            number of bytes
+     * @return true if the given number of bytes could be acquired now
+     */
+    public boolean fits(final int bytes) {
+        Preconditions.checkArgument(bytes >= 0, "bytes must be non-negative");
+        lock.lock();
+        try {
+            return isAvailable(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAvailableBytes() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - used);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public MemoryBudgetStats getStats() {
+        return ImmutableMemoryBudgetStats.builder() //
+                .capacity(capacity) //
+                .usedBytes(getUsedBytes()) //
+                .peakBytes(peak.get()) //
+                .blocked(blocked.sum()) //
+                .rejected(rejected.sum()) //
+                .build();
+    }
+
+    private boolean isAvailable(final long bytes) {
+        return used == 0 || used + bytes <= capacity;
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases bytes that were previously acquired.
+     *
+     * @param bytes
+     *            number of bytes
+     */
+    public void release(final int bytes) {
+        Preconditions.checkArgument(bytes >= 0, "bytes must be non-negative");
+        lock.lock();
+        try {
+            Preconditions.checkState(used >= bytes, "Released more bytes than were acquired");
+            used -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void take(final long bytes) {
+        used += bytes;
+        if (used > peak.get()) {
+            peak.set(used);
+        }
+    }
+
+    /**
+     * Acquires the given number of bytes if they are available, without waiting.
+     *
+     * @param bytes
+     *            number of bytes
+     * @return true if the bytes were acquired
+     */
+    public boolean tryAcquire(final int bytes) {
+        Preconditions.checkArgument(bytes >= 0, "bytes must be non-negative");
+        lock.lock();
+        try {
+            if (!isAvailable(bytes)) {
+                rejected.increment();
+                return false;
+            }
+            take(bytes);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the given number of bytes, waiting up to the given timeout for them to become
+     * available.
+     *
+     * @param bytes
+     *            number of bytes
+     * @param timeout
+     *            maximum time to wait
+     * @param unit
+     *            time unit of timeout
+     * @return true if the bytes were acquired, false if the timeout elapsed first
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public boolean tryAcquire(final int bytes, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        Preconditions.checkArgument(bytes >= 0, "bytes must be non-negative");
+        Preconditions.checkArgument(unit != null, "unit must be non-null");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (!isAvailable(bytes)) {
+                blocked.increment();
+                do {
+                    if (nanos <= 0) {
+                        rejected.increment();
+                        return false;
+                    }
+                    nanos = released.awaitNanos(nanos);
+                } while (!isAvailable(bytes));
+            }
+            take(bytes);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("capacity", capacity) //
+                .add("used", getUsedBytes()) //
+                .toString();
+    }
+}
@@ -42,6 +42,25 @@ import com.google.common.collect.Lists;
 
 @Value.Immutable
 public abstract class SimpleBulkOperationFactory<T> implements BulkOperationFactory {
+    /**
+     * Default conversion of JSON text, which is recognized so that documents can bypass JSON text
+     * when the conversion has not been customized.
+     */
+    private final class BuildFromCharSequence implements Function<CharSequence, CharSequence> {
+        @Override
+        public CharSequence apply(final CharSequence document) {
+            final ElasticDocBuilder elasticDocBuilder = getElasticDocBuilder();
+            if (elasticDocBuilder == null) {
+                // if no document builder provided, we are an identity transform
+                return document;
+            }
+
+            // build document
+            final CharSequence elasticDoc = elasticDocBuilder.build(document);
+            return elasticDoc;
+        }
+    }
+
     protected BulkOperation createBulkOperation(
             final VersionComponents elasticVersion,
             final Action action,
@@ -118,13 +137,16 @@ public abstract class SimpleBulkOperationFactory<T> implements BulkOperationFact
         // document
         final CharSequence source;
         if (action.hasSource()) {
-            // should be CharSequence or JsonNode
+            // should be CharSequence or JsonNode, or an object that the document builder can convert
             final Object json = getJson().apply(document);
 
+            final ElasticDocBuilder elasticDocBuilder = getElasticDocBuilder();
             if (json instanceof CharSequence) {
                 source = getFromCharSequence().apply((CharSequence) json);
             } else if (json instanceof JsonNode) {
                 source = getFromJsonNode().apply((JsonNode) json);
+            } else if (json != null && elasticDocBuilder != null) {
+                source = elasticDocBuilder.buildFromValue(json);
             } else {
                 throw new IllegalStateException("Cannot build Elastic document from: " + json);
             }
@@ -175,17 +197,7 @@ public abstract class SimpleBulkOperationFactory<T> implements BulkOperationFact
 
     @Value.Default
     public Function<CharSequence, CharSequence> getFromCharSequence() {
-        return document -> {
-            final ElasticDocBuilder elasticDocBuilder = getElasticDocBuilder();
-            if (elasticDocBuilder == null) {
-                // if no document builder provided, we are an identity transform
-                return document;
-            }
-
-            // build document
-            final CharSequence elasticDoc = elasticDocBuilder.build(document);
-            return elasticDoc;
-        };
+        return new BuildFromCharSequence();
     }
 
     @Value.Default
@@ -207,9 +219,23 @@ public abstract class SimpleBulkOperationFactory<T> implements BulkOperationFact
 
     public abstract Index getIndex();
 
+    /**
+     * Returns a function that returns the source of a document: JSON text, a {@link JsonNode}, or
+     * any other object that the {@link ElasticDocBuilder} can convert.
+     *
+     * By default, documents are serialized to JSON text. When there is a document builder and
+     * {@link #getFromCharSequence()} has not been customized, documents are instead handed to the
+     * document builder as-is, so that they are never serialized to JSON text; the document builder
+     * serializes them with the same {@link JacksonUtils#getObjectMapper() mapper}.
+     *
+     * @return a function that returns the source of a document
+     */
     @Value.Default
     public Function<T, Object> getJson() {
         return document -> {
+            if (getElasticDocBuilder() != null && getFromCharSequence() instanceof BuildFromCharSequence) {
+                return document;
+            }
             return JacksonUtils.toStringSafe(document, false);
         };
     }
@@ -236,4 +262,9 @@ public abstract class SimpleBulkOperationFactory<T> implements BulkOperationFact
         final Class<T> clazz = getDocumentClass();
         return clazz.isInstance(document) && getPredicate().test(clazz.cast(document));
     }
+
+    @Override
+    public boolean supportsClass(final Class<?> clazz) {
+        return getDocumentClass().isAssignableFrom(clazz);
+    }
 }
@@ -17,6 +17,7 @@
 
 package com.arakelian.elastic.bulk.event;
 
+import com.arakelian.elastic.bulk.BulkOperation;
 import com.arakelian.elastic.bulk.BulkOperation.Action;
 import com.arakelian.elastic.bulk.BulkOperation.VersionType;
 import com.arakelian.elastic.model.Index;
@@ -24,7 +25,7 @@ import com.google.common.base.MoreObjects;
 
 public class IndexerEvent {
     public static enum Status {
-        FAILED, SUCCEEDED;
+        COLLAPSED, FAILED, SUCCEEDED;
     }
 
     private Action action;
@@ -35,11 +36,21 @@ public class IndexerEvent {
     private VersionType versionType;
     private Status status;
     private Integer statusCode;
+    private Throwable cause;
 
     public final Action getAction() {
         return action;
     }
 
+    /**
+     * Returns the exception that caused the bulk operation to fail, if known.
+     *
+     * @return exception that caused the bulk operation to fail, may be null
+     */
+    public final Throwable getCause() {
+        return cause;
+    }
+
     public final String getId() {
         return id;
     }
@@ -68,6 +79,49 @@ public class IndexerEvent {
         return versionType;
     }
 
+    /**
+     * Initializes this event from the given bulk operation and outcome.
+     *
+     * @param op
+     *            bulk operation
+     * @param status
+     *            outcome of bulk operation
+     * @param statusCode
+     *            HTTP status code, may be null
+     */
+    public void initialize(final BulkOperation op, final Status status, final Integer statusCode) {
+        initialize(op, status, statusCode, null);
+    }
+
+    /**
+     * Initializes this event from the given bulk operation and outcome.
+     *
+     * @param op
+     *            bulk operation
+     * @param status
+     *            outcome of bulk operation
+     * @param statusCode
+     *            HTTP status code, may be null
+     * @param cause
+     *            exception that caused the bulk operation to fail, may be null
+     */
+    public void initialize(
+            final BulkOperation op,
+            final Status status,
+            final Integer statusCode,
+            final Throwable cause) {
+        reset();
+        setStatus(status);
+        setStatusCode(statusCode);
+        setCause(cause);
+        setAction(op.getAction());
+        setId(op.getId());
+        setIndex(op.getIndex());
+        setType(op.getType());
+        setVersion(op.getVersion());
+        setVersionType(op.getVersionType());
+    }
+
     public void reset() {
         action = null;
         index = null;
@@ -77,12 +131,17 @@ public class IndexerEvent {
         versionType = null;
         status = null;
         statusCode = null;
+        cause = null;
     }
 
     public final void setAction(final Action action) {
         this.action = action;
     }
 
+    public final void setCause(final Throwable cause) {
+        this.cause = cause;
+    }
+
     public final void setId(final String id) {
         this.id = id;
     }
@@ -122,6 +181,7 @@ public class IndexerEvent {
                 .add("versionType", versionType) //
                 .add("status", status) //
                 .add("statusCode", statusCode) //
+                .add("cause", cause) //
                 .toString();
     }
 }
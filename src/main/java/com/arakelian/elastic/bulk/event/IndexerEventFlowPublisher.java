@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk.event;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+import com.arakelian.elastic.bulk.BulkOperation;
+import com.arakelian.elastic.bulk.event.IndexerEvent.Status;
+import com.arakelian.elastic.model.BulkIndexerStats;
+import com.arakelian.elastic.model.BulkResponse.BulkOperationResponse;
+import com.google.common.base.Preconditions;
+
+/**
+ * An {@link IndexerListener} that publishes the outcome of each bulk operation as a
+ * {@link Flow.Publisher}. Each outcome is a new {@link IndexerEvent}, which subscribers may keep.
+ *
+ * While there are subscribers, outcomes are never dropped: when the buffer of a subscriber is full,
+ * the indexer thread that reports the outcome blocks until the subscriber requests more, so a slow
+ * subscriber slows down the indexer. Outcomes reported before anyone subscribes, or after this
+ * publisher is closed, are discarded.
+ */
+public class IndexerEventFlowPublisher extends SubmissionPublisher<IndexerEvent> implements IndexerListener {
+    public IndexerEventFlowPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    public IndexerEventFlowPublisher(final Executor executor, final int maxBufferCapacity) {
+        super(executor, maxBufferCapacity);
+    }
+
+    @Override
+    public void closed(final BulkIndexerStats stats) {
+    }
+
+    private void publish(
+            final BulkOperation op,
+            final Status status,
+            final Integer statusCode,
+            final Throwable cause) {
+        Preconditions.checkArgument(op != null, "op must be non-null");
+        if (isClosed() || !hasSubscribers()) {
+            return;
+        }
+
+        final IndexerEvent event = new IndexerEvent();
+        event.initialize(op, status, statusCode, cause);
+        try {
+            submit(event);
+        } catch (final IllegalStateException e) {
+            // publisher was closed concurrently; outcome is no longer needed
+        }
+    }
+
+    @Override
+    public void onCollapsed(final BulkOperation op) {
+        publish(op, Status.COLLAPSED, null, null);
+    }
+
+    @Override
+    public void onFailure(final BulkOperation op, final BulkOperationResponse response) {
+        publish(op, Status.FAILED, response.getStatus(), null);
+    }
+
+    @Override
+    public void onFailure(final BulkOperation op, final Throwable t) {
+        publish(op, Status.FAILED, null, t);
+    }
+
+    @Override
+    public void onSuccess(final BulkOperation op, final int statusCode) {
+        publish(op, Status.SUCCEEDED, statusCode, null);
+    }
+}
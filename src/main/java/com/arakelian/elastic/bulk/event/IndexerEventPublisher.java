@@ -76,51 +76,36 @@ public class IndexerEventPublisher implements IndexerListener, Closeable {
     public void closed(final BulkIndexerStats stats) {
     }
 
-    private void failed(final BulkOperation op, final Integer statusCode) {
-        Preconditions.checkArgument(op != null, "op must be non-null");
-        final long sequence = ringBuffer.next();
-        try {
-            final IndexerEvent event = ringBuffer.get(sequence);
-            initialize(event, op, Status.FAILED, statusCode);
-        } finally {
-            ringBuffer.publish(sequence);
-        }
-    }
-
-    private void initialize(
-            final IndexerEvent event,
-            final BulkOperation op,
-            final Status status,
-            final Integer statusCode) {
-        // status will get set by caller
-        event.reset();
-        event.setStatus(status);
-        event.setStatusCode(statusCode);
-        event.setAction(op.getAction());
-        event.setId(op.getId());
-        event.setIndex(op.getIndex());
-        event.setType(op.getType());
-        event.setVersion(op.getVersion());
-        event.setVersionType(op.getVersionType());
+    @Override
+    public void onCollapsed(final BulkOperation op) {
+        publish(op, Status.COLLAPSED, null, null);
     }
 
     @Override
     public void onFailure(final BulkOperation op, final BulkOperationResponse response) {
-        failed(op, response.getStatus());
+        publish(op, Status.FAILED, response.getStatus(), null);
     }
 
     @Override
     public void onFailure(final BulkOperation op, final Throwable t) {
-        failed(op, null);
+        publish(op, Status.FAILED, null, t);
     }
 
     @Override
     public void onSuccess(final BulkOperation op, final int statusCode) {
+        publish(op, Status.SUCCEEDED, statusCode, null);
+    }
+
+    private void publish(
+            final BulkOperation op,
+            final Status status,
+            final Integer statusCode,
+            final Throwable cause) {
         Preconditions.checkArgument(op != null, "op must be non-null");
         final long sequence = ringBuffer.next();
         try {
             final IndexerEvent event = ringBuffer.get(sequence);
-            initialize(event, op, Status.SUCCEEDED, statusCode);
+            event.initialize(op, status, statusCode, cause);
         } finally {
             ringBuffer.publish(sequence);
         }
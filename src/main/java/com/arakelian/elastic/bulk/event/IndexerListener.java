@@ -39,6 +39,19 @@ public interface IndexerListener {
      */
     void closed(BulkIndexerStats stats);
 
+    /**
+     * Invoked when a {@code BulkOperation} is not sent to Elastic because it was collapsed into
+     * another pending operation on the same document; it was either replaced by a newer operation,
+     * or dropped because the pending operation has a higher version. The operation that is kept
+     * receives its own callback once it has been sent.
+     *
+     * @param op
+     *            bulk operation that was collapsed
+     * @see BulkIndexerConfig#isCollapseDuplicates()
+     */
+    default void onCollapsed(final BulkOperation op) {
+    }
+
     /**
      * Invoked when a {@code BulkOperation} fails individually. These operations always have a
      * status code outside the 2xx range, and they are generally not retryable because they have
@@ -36,10 +36,15 @@ public final class LoggingIndexerListener implements IndexerListener {
     public void closed(final BulkIndexerStats stats) {
         LOGGER.debug(
                 "Bulk indexer {}: {}",
-                stats.getSuccessful() == stats.getTotal() ? "successful" : "FAILED",
+                stats.getSuccessful() == stats.getExpected() ? "successful" : "FAILED",
                 stats);
     }
 
+    @Override
+    public void onCollapsed(final BulkOperation op) {
+        LOGGER.debug("Bulk operation collapsed: {}", op);
+    }
+
     @Override
     public void onFailure(final BulkOperation op, final BulkOperationResponse response) {
         LOGGER.debug("Bulk operation failed: {}", op);
@@ -31,6 +31,10 @@ public final class NullIndexerListener implements IndexerListener {
     public void closed(final BulkIndexerStats stats) {
     }
 
+    @Override
+    public void onCollapsed(final BulkOperation op) {
+    }
+
     @Override
     public void onFailure(final BulkOperation op, final BulkOperationResponse response) {
     }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A JSON document that is known to be compact, and to not contain newlines, held in its UTF-8
+ * encoding.
+ *
+ * {@link ElasticDocBuilderImpl} returns documents in this form, so that
+ * {@link com.arakelian.elastic.bulk.BulkOperation} can copy them into a bulk payload without
+ * scanning them for newlines or encoding them again. The document is only decoded into a
+ * {@link String} if it is used as a character sequence.
+ */
+public final class CompactJson implements CharSequence, Serializable {
+    /**
+     * Returns a compact JSON document, given its UTF-8 encoding. The caller is responsible for
+     * ensuring that the document is compact and does not contain newlines.
+     *
+     * @param utf8
+     *            UTF-8 encoded JSON, which is not copied
+     * @return a compact JSON document
+     */
+    public static CompactJson of(final byte[] utf8) {
+        return new CompactJson(utf8);
+    }
+
+    private final byte[] utf8;
+
+    /** Decoded document, created on demand **/
+    private transient String string;
+
+    private CompactJson(final byte[] utf8) {
+        this.utf8 = Preconditions.checkNotNull(utf8);
+    }
+
+    @Override
+    public char charAt(final int index) {
+        return toString().charAt(index);
+    }
+
+    /**
+     * Copies the UTF-8 encoded document into the given buffer.
+     *
+     * @param bytes
+     *            output buffer
+     * @param pos
+     *            position in output buffer where we begin writing
+     * @return position in output buffer after the last byte written
+     */
+    public int copyTo(final byte[] bytes, final int pos) {
+        System.arraycopy(utf8, 0, bytes, pos, utf8.length);
+        return pos + utf8.length;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactJson)) {
+            return false;
+        }
+        return Arrays.equals(utf8, ((CompactJson) obj).utf8);
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoded document.
+     *
+     * @return the number of bytes in the UTF-8 encoded document
+     */
+    public int getEncodedLength() {
+        return utf8.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(utf8);
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        // benign race: at worst, two threads decode the same string
+        String s = string;
+        if (s == null) {
+            s = new String(utf8, StandardCharsets.UTF_8);
+            string = s;
+        }
+        return s;
+    }
+}
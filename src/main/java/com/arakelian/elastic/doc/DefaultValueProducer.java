@@ -20,6 +20,9 @@ package com.arakelian.elastic.doc;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.apache.commons.lang3.BooleanUtils;
@@ -44,6 +47,46 @@ import com.google.common.io.BaseEncoding;
 
 public class DefaultValueProducer implements ValueProducer {
     protected abstract static class AbstractProducer {
+        protected static void acceptBoolean(final Consumer<Object> consumer, final boolean value) {
+            if (consumer instanceof ValueConsumer) {
+                ((ValueConsumer) consumer).acceptBoolean(value);
+            } else {
+                consumer.accept(value);
+            }
+        }
+
+        protected static void acceptDouble(final Consumer<Object> consumer, final double value) {
+            if (consumer instanceof ValueConsumer) {
+                ((ValueConsumer) consumer).acceptDouble(value);
+            } else {
+                consumer.accept(value);
+            }
+        }
+
+        protected static void acceptFloat(final Consumer<Object> consumer, final float value) {
+            if (consumer instanceof ValueConsumer) {
+                ((ValueConsumer) consumer).acceptFloat(value);
+            } else {
+                consumer.accept(value);
+            }
+        }
+
+        protected static void acceptInt(final Consumer<Object> consumer, final int value) {
+            if (consumer instanceof ValueConsumer) {
+                ((ValueConsumer) consumer).acceptInt(value);
+            } else {
+                consumer.accept(value);
+            }
+        }
+
+        protected static void acceptLong(final Consumer<Object> consumer, final long value) {
+            if (consumer instanceof ValueConsumer) {
+                ((ValueConsumer) consumer).acceptLong(value);
+            } else {
+                consumer.accept(value);
+            }
+        }
+
         protected void collect(final Field field, final JsonNode node, final Consumer<Object> consumer)
                 throws ValueException {
             if (node == null || node.isNull() || node.isMissingNode()) {
@@ -123,7 +166,7 @@ public class DefaultValueProducer implements ValueProducer {
                 throws ValueException {
             if (node.isBoolean()) {
                 final boolean value = ((BooleanNode) node).booleanValue();
-                consumer.accept(value);
+                acceptBoolean(consumer, value);
                 return;
             }
 
@@ -133,7 +176,7 @@ public class DefaultValueProducer implements ValueProducer {
                 malformed(field, node, new IllegalArgumentException("Invalid boolean: \"" + text + "\""));
                 return;
             }
-            consumer.accept(value);
+            acceptBoolean(consumer, value.booleanValue());
         }
     }
 
@@ -159,7 +202,37 @@ public class DefaultValueProducer implements ValueProducer {
         }
     }
 
+    /**
+     * Date format learned for a field. Feeds are usually consistent per field, so the parser that
+     * succeeded for the previous values of a field is tried first. Updates are not synchronized,
+     * which only affects when the format is relearned.
+     */
+    private static final class LearnedDateFormat {
+        /** True if values are parsed with {@link IsoDateParser} first **/
+        private volatile boolean iso = true;
+
+        /** Consecutive values that {@link IsoDateParser} could not parse **/
+        private int misses;
+
+        /** Values parsed by the general parser since the ISO-8601 parser was last tried **/
+        private int general;
+    }
+
     private final class DateProducer extends AbstractProducer {
+        /** Number of consecutive misses after which a field is parsed with the general parser **/
+        private static final int MAX_MISSES = 8;
+
+        /** Interval at which fields using the general parser try the ISO-8601 parser again **/
+        private static final int PROBE_INTERVAL = 64;
+
+        private final Map<String, LearnedDateFormat> formats = new ConcurrentHashMap<>();
+
+        /** Dates parsed by the ISO-8601 parser **/
+        private final LongAdder hits = new LongAdder();
+
+        /** Dates parsed by the general parser **/
+        private final LongAdder misses = new LongAdder();
+
         @Override
         protected void handleValue(final Field field, final JsonNode node, final Consumer<Object> consumer)
                 throws ValueException {
@@ -176,9 +249,17 @@ public class DefaultValueProducer implements ValueProducer {
                 return;
             }
 
+            final String text = asText(field, node);
+            final ZonedDateTime iso = parseIso(field, text);
+            if (iso != null) {
+                consumer.accept(DateUtils.toUtc(iso));
+                return;
+            }
+
             // we support a wide variety of text formats, and always encoding in UTC
+            misses.increment();
             try {
-                final ZonedDateTime value = DateUtils.toZonedDateTimeUtcChecked(asText(field, node));
+                final ZonedDateTime value = DateUtils.toZonedDateTimeUtcChecked(text);
                 if (value != null) {
                     consumer.accept(value);
                 }
@@ -186,16 +267,51 @@ public class DefaultValueProducer implements ValueProducer {
                 malformed(field, node, e);
             }
         }
+
+        private ZonedDateTime parseIso(final Field field, final String text) {
+            if (text == null) {
+                return null;
+            }
+
+            final LearnedDateFormat format = formats
+                    .computeIfAbsent(field.getName(), name -> new LearnedDateFormat());
+            if (!format.iso && ++format.general % PROBE_INTERVAL != 0) {
+                return null;
+            }
+
+            final ZonedDateTime value = IsoDateParser.parse(text);
+            if (value != null) {
+                hits.increment();
+                format.misses = 0;
+                format.iso = true;
+            } else if (format.iso && ++format.misses >= MAX_MISSES) {
+                // learn that this field has other formats
+                format.general = 0;
+                format.iso = false;
+            }
+            return value;
+        }
     }
 
     private final class DoubleProducer extends AbstractProducer {
         @Override
         protected void handleValue(final Field field, final JsonNode node, final Consumer<Object> consumer)
                 throws ValueException {
+            if (node.isDouble() || node.isIntegralNumber() && node.canConvertToLong()) {
+                // same value as parsing the text of the node
+                final double value = node.doubleValue();
+                if (Double.isFinite(value)) {
+                    acceptDouble(consumer, value);
+                } else {
+                    malformed(field, node, new NumberFormatException("Number is not finite"));
+                }
+                return;
+            }
+
             try {
                 final double value = Double.parseDouble(asText(field, node));
                 if (Double.isFinite(value)) {
-                    consumer.accept(value);
+                    acceptDouble(consumer, value);
                 } else {
                     malformed(field, node, new NumberFormatException("Number is not finite"));
                 }
@@ -209,10 +325,21 @@ public class DefaultValueProducer implements ValueProducer {
         @Override
         protected void handleValue(final Field field, final JsonNode node, final Consumer<Object> consumer)
                 throws ValueException {
+            if (node.isFloatingPointNumber() && !node.isBigDecimal()
+                    || node.isIntegralNumber() && node.canConvertToLong()) {
+                final float value = node.floatValue();
+                if (Float.isFinite(value)) {
+                    acceptFloat(consumer, value);
+                } else {
+                    malformed(field, node, new NumberFormatException("Number is not finite"));
+                }
+                return;
+            }
+
             try {
                 final float value = Float.parseFloat(asText(field, node));
                 if (Float.isFinite(value)) {
-                    consumer.accept(value);
+                    acceptFloat(consumer, value);
                 } else {
                     malformed(field, node, new NumberFormatException("Number is not finite"));
                 }
@@ -229,13 +356,13 @@ public class DefaultValueProducer implements ValueProducer {
             // we do not truncate decimal values!
             if (node.isIntegralNumber() && node.canConvertToInt()) {
                 final int value = node.intValue();
-                consumer.accept(value);
+                acceptInt(consumer, value);
                 return;
             }
 
             try {
                 final int value = Integer.parseInt(asText(field, node));
-                consumer.accept(value);
+                acceptInt(consumer, value);
             } catch (final NumberFormatException nfe) {
                 malformed(field, node, nfe);
             }
@@ -248,13 +375,13 @@ public class DefaultValueProducer implements ValueProducer {
                 throws ValueException {
             if (node.isIntegralNumber() && node.canConvertToLong()) {
                 final long value = node.longValue();
-                consumer.accept(value);
+                acceptLong(consumer, value);
                 return;
             }
 
             try {
                 final long value = Long.parseLong(asText(field, node));
-                consumer.accept(value);
+                acceptLong(consumer, value);
             } catch (final NumberFormatException nfe) {
                 malformed(field, node, nfe);
             }
@@ -364,6 +491,24 @@ public class DefaultValueProducer implements ValueProducer {
         this.mapper = Preconditions.checkNotNull(mapper);
     }
 
+    /**
+     * Returns the number of textual dates that were parsed by the ISO-8601 fast path.
+     *
+     * @return the number of textual dates that were parsed by the ISO-8601 fast path
+     */
+    public long getDateHits() {
+        return dateProducer.hits.sum();
+    }
+
+    /**
+     * Returns the number of textual dates that were given to the general date parser.
+     *
+     * @return the number of textual dates that were given to the general date parser
+     */
+    public long getDateMisses() {
+        return dateProducer.misses.sum();
+    }
+
     protected String asText(@SuppressWarnings("unused") final Field field, final JsonNode node) {
         return node.asText(null);
     }
@@ -1,9 +1,30 @@
 package com.arakelian.elastic.doc;
 
+import com.arakelian.jackson.utils.JacksonUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 
 public interface ElasticDocBuilder {
     public CharSequence build(final CharSequence json) throws ElasticDocException;
 
     public CharSequence build(final JsonNode root) throws ElasticDocException;
+
+    /**
+     * Builds an Elastic document from an object (e.g. a POJO) without first serializing the object
+     * to JSON text.
+     *
+     * @param value
+     *            source object
+     * @return Elastic document
+     * @throws ElasticDocException
+     *             if the document cannot be built
+     */
+    public default CharSequence buildFromValue(final Object value) throws ElasticDocException {
+        final JsonNode root;
+        try {
+            root = JacksonUtils.getObjectMapper().valueToTree(value);
+        } catch (final IllegalArgumentException e) {
+            throw new ElasticDocException("Unable to convert source document", e);
+        }
+        return build(root);
+    }
 }
@@ -23,8 +23,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.commons.lang3.StringUtils;
@@ -34,12 +32,22 @@ import com.arakelian.elastic.doc.plugins.ElasticDocBuilderPlugin;
 import com.arakelian.elastic.model.ElasticDocConfig;
 import com.arakelian.elastic.model.Field;
 import com.arakelian.elastic.model.JsonSelector;
+import com.arakelian.elastic.model.JsonSelectorPlan;
 import com.arakelian.elastic.model.Mapping;
 import com.arakelian.elastic.utils.JsonNodeUtils;
+import com.arakelian.elastic.utils.JsonPathMatcher;
 import com.arakelian.json.JsonFilter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
@@ -56,16 +64,111 @@ import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
  * Builds an Elasticsearch document. Elasticsearch documents are simple (flat) maps that have string
  * keys and either string or List&lt;String&gt; values.
  *
- * This class is not thread-safe.
+ * This class is thread-safe, provided that the configured plugins and token filters are; a single
+ * instance may be shared by all threads. The state of each build is kept in an
+ * {@link ElasticDocImpl} that is confined to the building thread, and reused by later builds on
+ * that thread.
  */
 public class ElasticDocBuilderImpl implements ElasticDocBuilder {
-    private final class ElasticDocImpl implements ElasticDoc {
+    /**
+     * The Elastic document that is being built, along with attributes used by plugins.
+     */
+    protected final class ElasticDocImpl implements ElasticDoc {
+        /** The Elastic document we're building. Duplicate values are not stored. **/
+        private final LinkedHashMultimap<String, Object> document = LinkedHashMultimap.create();
+
+        /** Attributes used by plugins **/
+        private final LinkedHashMultimap<String, Object> attributes = LinkedHashMultimap.create();
+
+        /** Context of the build that was interrupted by this one, or null **/
+        private final ElasticDocImpl parent;
+
+        /** True while a build is using this context **/
+        private boolean inUse;
+
+        /** Receives compact JSON from the generator; reused between builds **/
+        private ByteArrayBuilder output;
+
+        /** Writes compact JSON; reused between builds, and discarded if a write fails **/
+        private JsonGenerator generator;
+
+        /** Primitive values of fields that have no values in the document; reused between builds **/
+        private final Map<String, PrimitiveValues> primitives = Maps.newHashMap();
+
+        /** Number of fields that have primitive values **/
+        private int primitiveFields;
+
+        /** Receives values from the value producer, including primitives **/
+        private final FieldConsumer consumer = new FieldConsumer(this);
+
+        private ElasticDocImpl(final ElasticDocImpl parent) {
+            this.parent = parent;
+        }
+
+        private void box(final String field, final PrimitiveValues values) {
+            for (int i = 0; i < values.size; i++) {
+                document.put(field, values.get(i));
+            }
+            values.size = 0;
+            primitiveFields--;
+        }
+
+        /**
+         * Moves all primitive values into the document, for code that reads the document directly.
+         */
+        private void boxPrimitives() {
+            if (primitiveFields == 0) {
+                return;
+            }
+            for (final Map.Entry<String, PrimitiveValues> entry : primitives.entrySet()) {
+                final PrimitiveValues values = entry.getValue();
+                if (values.size != 0) {
+                    box(entry.getKey(), values);
+                }
+            }
+        }
+
+        private void clear() {
+            document.clear();
+            attributes.clear();
+            if (primitiveFields != 0) {
+                for (final PrimitiveValues values : primitives.values()) {
+                    values.size = 0;
+                }
+                primitiveFields = 0;
+            }
+        }
+
+        private JsonGenerator getGenerator() throws IOException {
+            if (generator == null) {
+                output = new ByteArrayBuilder();
+                generator = mapper.createGenerator(output, JsonEncoding.UTF8);
+                generator.setPrettyPrinter(null);
+
+                // successive documents are not separated by whitespace
+                generator.setRootValueSeparator(null);
+            }
+            return generator;
+        }
+
+        private PrimitiveValues getPrimitives(final String field) {
+            if (primitiveFields == 0) {
+                return null;
+            }
+            final PrimitiveValues values = primitives.get(field);
+            return values != null && values.size != 0 ? values : null;
+        }
+
         @Override
         public Collection<Object> get(final String field) {
             Preconditions.checkArgument(
                     config.getMapping().hasField(field),
                     "Field \"%s\" is not part of mapping",
                     field);
+            final PrimitiveValues values = getPrimitives(field);
+            if (values != null) {
+                box(field, values);
+            }
             return Collections.unmodifiableCollection(document.get(field));
         }
 
@@ -82,13 +185,16 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         @Override
         public Map<String, Object> getDocumentAsMap() {
             // modification should be via 'put'
-            return Collections.unmodifiableMap(ElasticDocBuilderImpl.this.getDocumentAsMap());
+            return Collections.unmodifiableMap(
+                    isCurrent() ? ElasticDocBuilderImpl.this.getDocumentAsMap()
+                            : ElasticDocBuilderImpl.this.getDocumentAsMap(this));
         }
 
         @Override
         public Set<String> getFields() {
             // we make a copy so that if client loops over it, and make modifications to document,
             // that we don't get a ConcurrentModificationException
+            boxPrimitives();
             return ImmutableSet.copyOf(document.keySet());
         }
 
@@ -97,6 +203,17 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
             return config.getMapping().hasField(name);
         }
 
+        /**
+         * Returns true if this is the document that the current thread is building, which the
+         * protected methods of the builder operate on.
+         *
+         * @return true if this is the document that the current thread is building
+         */
+        private boolean isCurrent() {
+            return contexts.get() == this && inUse;
+        }
+
+
         @Override
         public void put(final Field field, final Object value) {
             Preconditions.checkArgument(field != null, "field must be non-null");
@@ -112,6 +229,35 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
             attributes.put(name, value);
         }
 
+        /**
+         * Stores a primitive value, which is boxed only if the field already has values that are not
+         * primitives of the same kind.
+         */
+        private void putPrimitive(final String field, final Primitive kind, final long value) {
+            if (!document.containsKey(field)) {
+                final PrimitiveValues values = primitives
+                        .computeIfAbsent(field, key -> new PrimitiveValues());
+                final boolean empty = values.size == 0;
+                if (values.add(kind, value)) {
+                    if (empty) {
+                        primitiveFields++;
+                    }
+                    return;
+                }
+                box(field, values);
+            }
+            document.put(field, PrimitiveValues.box(kind, value));
+        }
+
+        private void putValue(final String field, final Object value) {
+            final PrimitiveValues values = getPrimitives(field);
+            if (values != null) {
+                // keep values in the order they were added
+                box(field, values);
+            }
+            document.put(field, value);
+        }
+
         @Override
         public Set<Object> removeAttribute(final String name) {
             return attributes.removeAll(name);
@@ -119,7 +265,157 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
 
         @Override
         public CharSequence writeDocumentAsJson() {
-            return ElasticDocBuilderImpl.this.writeDocumentAsJson(false);
+            return isCurrent() ? ElasticDocBuilderImpl.this.writeDocumentAsJson(false)
+                    : ElasticDocBuilderImpl.this.writeDocumentAsJson(this, false);
+        }
+    }
+
+    /**
+     * Receives the values of a field from the value producer. Primitive values are stored without
+     * boxing, which is only done when nothing else can observe them as objects.
+     */
+    private final class FieldConsumer implements ValueConsumer {
+        private final ElasticDocImpl doc;
+
+        /** Field that is receiving values **/
+        private Field field;
+
+        /** True if primitive values are stored without boxing **/
+        private boolean primitive;
+
+        private FieldConsumer(final ElasticDocImpl doc) {
+            this.doc = doc;
+        }
+
+        @Override
+        public void accept(final Object value) {
+            put(doc, field, value);
+        }
+
+        @Override
+        public void acceptBoolean(final boolean value) {
+            if (primitive) {
+                doc.putPrimitive(field.getName(), Primitive.BOOLEAN, value ? 1 : 0);
+            } else {
+                put(doc, field, value);
+            }
+        }
+
+        @Override
+        public void acceptDouble(final double value) {
+            if (primitive) {
+                doc.putPrimitive(field.getName(), Primitive.DOUBLE, Double.doubleToLongBits(value));
+            } else {
+                put(doc, field, value);
+            }
+        }
+
+        @Override
+        public void acceptFloat(final float value) {
+            if (primitive) {
+                doc.putPrimitive(field.getName(), Primitive.FLOAT, Float.floatToIntBits(value));
+            } else {
+                put(doc, field, value);
+            }
+        }
+
+        @Override
+        public void acceptInt(final int value) {
+            if (primitive) {
+                doc.putPrimitive(field.getName(), Primitive.INT, value);
+            } else {
+                put(doc, field, value);
+            }
+        }
+
+        @Override
+        public void acceptLong(final long value) {
+            if (primitive) {
+                doc.putPrimitive(field.getName(), Primitive.LONG, value);
+            } else {
+                put(doc, field, value);
+            }
+        }
+    }
+
+    /** Kind of value stored in {@link PrimitiveValues} **/
+    private enum Primitive {
+        BOOLEAN, INT, LONG, FLOAT, DOUBLE;
+    }
+
+    /**
+     * Primitive values of a single field, of a single kind. Values are stored as bits, and like the
+     * values in the document, duplicates are not stored.
+     */
+    private static final class PrimitiveValues {
+        /** Beyond this many values, checking for duplicates is no longer cheap **/
+        private static final int MAX_SIZE = 16;
+
+        private static Object box(final Primitive kind, final long value) {
+            switch (kind) {
+            case BOOLEAN:
+                return Boolean.valueOf(value != 0);
+            case INT:
+                return Integer.valueOf((int) value);
+            case LONG:
+                return Long.valueOf(value);
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int) value));
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(value));
+            default:
+                throw new IllegalStateException("Unsupported primitive: " + kind);
+            }
+        }
+
+        private final long[] values = new long[MAX_SIZE];
+
+        private Primitive kind;
+
+        private int size;
+
+        private boolean add(final Primitive kind, final long value) {
+            if (size != 0 && this.kind != kind) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            if (size == MAX_SIZE) {
+                return false;
+            }
+            this.kind = kind;
+            values[size++] = value;
+            return true;
+        }
+
+        private Object get(final int index) {
+            return box(kind, values[index]);
+        }
+
+        private void write(final JsonGenerator generator, final int index) throws IOException {
+            final long value = values[index];
+            switch (kind) {
+            case BOOLEAN:
+                generator.writeBoolean(value != 0);
+                break;
+            case INT:
+                generator.writeNumber((int) value);
+                break;
+            case LONG:
+                generator.writeNumber(value);
+                break;
+            case FLOAT:
+                generator.writeNumber(Float.intBitsToFloat((int) value));
+                break;
+            case DOUBLE:
+                generator.writeNumber(Double.longBitsToDouble(value));
+                break;
+            default:
+                throw new IllegalStateException("Unsupported primitive: " + kind);
+            }
         }
     }
 
@@ -131,78 +427,152 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
     /** Elastic document configuration **/
     protected final ElasticDocConfig config;
 
-    /** The Elastic document we're building. Duplicate values are not stored. **/
-    protected final LinkedHashMultimap<String, Object> document;
-
-    /** Attributes used by plugins **/
-    protected final LinkedHashMultimap<String, Object> attributes;
-
-    /** Can only build one document at a time **/
-    private final Lock lock;
-
     /** Object writer for document serialization **/
     protected final ObjectMapper mapper;
 
+    /** Writes field values that are not strings when streaming compact JSON **/
+    private final ObjectWriter compactWriter;
+
     /** JsonPath configuration **/
-    private Configuration jsonPathConfig;
+    private final Configuration jsonPathConfig;
+
+    /** Matches source paths while parsing, or null if the entire source document is required **/
+    private final JsonPathMatcher sourceMatcher;
+
+    /**
+     * True if primitive values may be stored without boxing. Subclasses may override put, so they
+     * receive every value through put, or through its primitive overloads.
+     **/
+    private final boolean storePrimitives;
+
+    /** Build context of each thread, which is reused between builds **/
+    private final ThreadLocal<ElasticDocImpl> contexts = ThreadLocal
+            .withInitial(() -> new ElasticDocImpl(null));
 
     public ElasticDocBuilderImpl(final ElasticDocConfig config) {
-        this.lock = new ReentrantLock();
         this.config = Preconditions.checkNotNull(config);
-        this.document = LinkedHashMultimap.create();
-        this.attributes = LinkedHashMultimap.create();
         this.mapper = config.getObjectMapper();
+        this.compactWriter = mapper.writer() //
+                .without(SerializationFeature.INDENT_OUTPUT, SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.jsonPathConfig = Configuration.builder() //
+                .jsonProvider(new JacksonJsonNodeJsonProvider(mapper)) //
+                .mappingProvider(new JacksonMappingProvider(mapper)) //
+                .build();
+        this.sourceMatcher = createSourceMatcher(config);
+        this.storePrimitives = getClass() == ElasticDocBuilderImpl.class;
+    }
+
+    /**
+     * Returns a matcher for the paths that are read by the configured selectors, or null if the
+     * entire source document must be parsed. This is the case when a selector uses JsonPath, or
+     * when a plugin requires the source document.
+     *
+     * @param config
+     *            document configuration
+     * @return a matcher for the paths that are read by the configured selectors, or null
+     */
+    private static JsonPathMatcher createSourceMatcher(final ElasticDocConfig config) {
+        for (final ElasticDocBuilderPlugin plugin : config.getPlugins()) {
+            if (plugin.isSourceRequired()) {
+                return null;
+            }
+        }
+
+        final List<List<String>> paths = Lists.newArrayList();
+        try {
+            for (final JsonSelector selector : config.getSourcePaths()) {
+                switch (selector.getType()) {
+                case PATH:
+                    paths.add(selector.getPath());
+                    break;
+                case CONCAT:
+                case FUNCTION:
+                    // arguments are simple paths
+                    paths.addAll(selector.getArguments().values());
+                    break;
+                default:
+                    return null;
+                }
+            }
+        } catch (final IllegalStateException e) {
+            // invalid selectors are reported when documents are built
+            return null;
+        }
+        return JsonPathMatcher.compile(paths);
+    }
+
+    /**
+     * Returns the build context of the current thread. If the context is already in use, which
+     * happens when a plugin builds another document, a new context is returned; it remains the
+     * current context until it is released.
+     *
+     * @return an empty build context
+     */
+    private ElasticDocImpl acquireContext() {
+        final ElasticDocImpl context = contexts.get();
+        if (!context.inUse) {
+            context.inUse = true;
+            return context;
+        }
+        final ElasticDocImpl nested = new ElasticDocImpl(context);
+        nested.inUse = true;
+        contexts.set(nested);
+        return nested;
     }
 
     @Override
     public CharSequence build(final CharSequence json) throws ElasticDocException {
-        final JsonNode node = readValue(json);
+        final JsonNode node = sourceMatcher != null ? readSourcePaths(json) : readValue(json);
+        return build(node);
+    }
+
+    @Override
+    public CharSequence buildFromValue(final Object value) throws ElasticDocException {
+        final JsonNode node = readObject(value);
         return build(node);
     }
 
     @Override
     public CharSequence build(final JsonNode root) throws ElasticDocException {
-        lock.lock();
+        final ElasticDocImpl doc = acquireContext();
+        final List<ElasticDocBuilderPlugin> plugins = config.getPlugins();
         try {
-            final ElasticDocImpl doc = new ElasticDocImpl();
-            final List<ElasticDocBuilderPlugin> plugins = config.getPlugins();
-            try {
-                // give plugins a chance to modify raw JSON, or initialize document
-                for (final ElasticDocBuilderPlugin plugin : plugins) {
-                    plugin.before(root, doc);
-                }
-
-                // map document fields to one or more index fields
-                for (final JsonSelector sourcePath : config.getSourcePaths()) {
-                    final JsonNode node = read(sourcePath, root);
+            // give plugins a chance to modify raw JSON, or initialize document
+            for (final ElasticDocBuilderPlugin plugin : plugins) {
+                plugin.before(root, doc);
+            }
 
-                    // we've arrived at path! put values into document
-                    final Collection<Field> targets = config.getFieldsTargetedBy(sourcePath);
-                    for (final Field field : targets) {
-                        putNode(doc, field, node);
-                    }
-                }
+            // map document fields to one or more index fields; path selectors are read together
+            final JsonSelectorPlan plan = config.getSelectorPlan();
+            final JsonNode[] values = plan.read(root);
+            for (int i = 0; i < values.length; i++) {
+                final JsonNode node = values[i] != null ? values[i] : read(plan.getSelectors().get(i), root);
 
-                // give plugins a chance to augment document
-                for (final ElasticDocBuilderPlugin plugin : plugins) {
-                    plugin.after(root, doc);
+                // we've arrived at path! put values into document
+                for (final Field field : plan.getTargets(i)) {
+                    putNode(doc, field, node);
                 }
+            }
 
-                final CharSequence json = writeDocumentAsJson(config.isCompact());
-                return json;
-            } catch (final IllegalArgumentException | IllegalStateException e) {
-                throw new ElasticDocException("Unable to build document", e);
-            } finally {
-                document.clear();
-                attributes.clear();
+            // give plugins a chance to augment document
+            for (final ElasticDocBuilderPlugin plugin : plugins) {
+                plugin.after(root, doc);
             }
+
+            final CharSequence json = writeDocumentAsJson(config.isCompact());
+            return json;
+        } catch (final IllegalArgumentException | IllegalStateException e) {
+            throw new ElasticDocException("Unable to build document", e);
         } finally {
-            lock.unlock();
+            releaseContext(doc);
         }
     }
 
-    private void buildDocumentMap(final String fieldName, final Map<String, Object> map) {
-        final Object values = getFieldValues(fieldName);
+    private void buildDocumentMap(
+            final ElasticDocImpl doc,
+            final String fieldName,
+            final Map<String, Object> map) {
+        final Object values = getFieldValues(doc, fieldName);
         if (values != null) {
             map.put(fieldName, values);
         }
@@ -247,9 +617,13 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
      * Field names are will be ordered as they are in the mapping, and values are listed in the
      * order they were added to the document.
      *
+     * @param doc
+     *            elastic document
      * @return the document as a simple map.
      */
-    protected Map<String, Object> getDocumentAsMap() {
+    private Map<String, Object> getDocumentAsMap(final ElasticDocImpl doc) {
+        doc.boxPrimitives();
+        final LinkedHashMultimap<String, Object> document = doc.document;
         final Map<String, Object> map = Maps.newLinkedHashMap();
 
         // add fields in the order that they appear in the mapping
@@ -257,22 +631,22 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         final Set<String> mappingFields = properties.keySet();
         for (final String fieldName : mappingFields) {
             if (document.containsKey(fieldName)) {
-                buildDocumentMap(fieldName, map);
+                buildDocumentMap(doc, fieldName, map);
             }
         }
 
         // add fields that do not appear in mapping
         for (final String fieldName : document.keys()) {
             if (!mappingFields.contains(fieldName)) {
-                buildDocumentMap(fieldName, map);
+                buildDocumentMap(doc, fieldName, map);
             }
         }
 
         return map;
     }
 
-    private Object getFieldValues(final String fieldName) {
-        final Collection<Object> values = document.get(fieldName);
+    private Object getFieldValues(final ElasticDocImpl doc, final String fieldName) {
+        final Collection<Object> values = doc.document.get(fieldName);
         if (values.size() == 0) {
             // don't output empty values
             return null;
@@ -352,14 +726,62 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         return sorted;
     }
 
-    private JsonNode jsonPath(final JsonSelector selector, final JsonNode node) {
-        if (jsonPathConfig == null) {
-            jsonPathConfig = Configuration.builder() //
-                    .jsonProvider(new JacksonJsonNodeJsonProvider(mapper)) //
-                    .mappingProvider(new JacksonMappingProvider(mapper)) //
-                    .build();
-        }
+    /**
+     * Returns the build context of the current thread.
+     *
+     * @return the build context of the current thread
+     * @throws IllegalStateException
+     *             if the current thread is not building a document
+     */
+    private ElasticDocImpl getContext() {
+        final ElasticDocImpl context = contexts.get();
+        Preconditions.checkState(context.inUse, "Document is not being built by current thread");
+        return context;
+    }
+
+    /**
+     * Returns the attributes used by plugins of the document that is being built by the current
+     * thread.
+     *
+     * @return the attributes used by plugins
+     * @deprecated attributes belong to the document that is being built; use
+     *             {@link ElasticDoc#getAttribute(String)}
+     */
+    @Deprecated
+    protected LinkedHashMultimap<String, Object> getAttributes() {
+        return getContext().attributes;
+    }
 
+    /**
+     * Returns the document that is being built by the current thread.
+     *
+     * @return the document that is being built
+     * @deprecated values belong to the document that is being built; use
+     *             {@link ElasticDoc#get(String)}
+     */
+    @Deprecated
+    protected LinkedHashMultimap<String, Object> getDocument() {
+        final ElasticDocImpl doc = getContext();
+        doc.boxPrimitives();
+        return doc.document;
+    }
+
+    /**
+     * Returns the document that is being built by the current thread as a simple map.
+     *
+     * Field names are will be ordered as they are in the mapping, and values are listed in the
+     * order they were added to the document.
+     *
+     * Compact documents are streamed by {@link #writeDocumentAsCompactJson(ElasticDocImpl)} without
+     * calling this method; subclasses that change the map should also override that method.
+     *
+     * @return the document as a simple map.
+     */
+    protected Map<String, Object> getDocumentAsMap() {
+        return getDocumentAsMap(getContext());
+    }
+
+    private JsonNode jsonPath(final JsonSelector selector, final JsonNode node) {
         // traverse node using JsonPath and return value
         return selector.getJsonPath().read(node, jsonPathConfig);
     }
@@ -380,6 +802,81 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         put(doc, field, obj, visited, field);
     }
 
+    /**
+     * Adds a boolean value to an Elasticsearch document. By default, the value is boxed and passed to
+     * {@link #put(ElasticDoc, Field, Object)}.
+     *
+     * @param doc
+     *            elastic document
+     * @param field
+     *            field
+     * @param value
+     *            value
+     */
+    protected void put(final ElasticDoc doc, final Field field, final boolean value) {
+        put(doc, field, (Object) Boolean.valueOf(value));
+    }
+
+    /**
+     * Adds a double value to an Elasticsearch document. By default, the value is boxed and passed to
+     * {@link #put(ElasticDoc, Field, Object)}.
+     *
+     * @param doc
+     *            elastic document
+     * @param field
+     *            field
+     * @param value
+     *            value
+     */
+    protected void put(final ElasticDoc doc, final Field field, final double value) {
+        put(doc, field, (Object) Double.valueOf(value));
+    }
+
+    /**
+     * Adds a float value to an Elasticsearch document. By default, the value is boxed and passed to
+     * {@link #put(ElasticDoc, Field, Object)}.
+     *
+     * @param doc
+     *            elastic document
+     * @param field
+     *            field
+     * @param value
+     *            value
+     */
+    protected void put(final ElasticDoc doc, final Field field, final float value) {
+        put(doc, field, (Object) Float.valueOf(value));
+    }
+
+    /**
+     * Adds an int value to an Elasticsearch document. By default, the value is boxed and passed to
+     * {@link #put(ElasticDoc, Field, Object)}.
+     *
+     * @param doc
+     *            elastic document
+     * @param field
+     *            field
+     * @param value
+     *            value
+     */
+    protected void put(final ElasticDoc doc, final Field field, final int value) {
+        put(doc, field, (Object) Integer.valueOf(value));
+    }
+
+    /**
+     * Adds a long value to an Elasticsearch document. By default, the value is boxed and passed to
+     * {@link #put(ElasticDoc, Field, Object)}.
+     *
+     * @param doc
+     *            elastic document
+     * @param field
+     *            field
+     * @param value
+     *            value
+     */
+    protected void put(final ElasticDoc doc, final Field field, final long value) {
+        put(doc, field, (Object) Long.valueOf(value));
+    }
+
     @SuppressWarnings("ReferenceEquality")
     protected void put(
             final ElasticDoc doc,
@@ -387,6 +884,7 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
             final Object val,
             final Set<Field> visited,
             final Field originalField) {
+        final ElasticDocImpl impl = toImpl(doc);
         if (visited != null) {
             if (visited.contains(field)) {
                 return;
@@ -411,15 +909,17 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
             // apply token filters
             final CharSequence csq = (CharSequence) value;
             final TokenFilter tokenFilter = mapping.getFieldTokenFilter(field.getName());
-            tokenFilter.execute(csq, token -> {
-                document.put(field.getName(), token);
+            tokenFilter.executeBuffered(csq, buf -> {
+                // token filters may reuse their buffers, so this is where the string is created
+                final String token = buf.toString();
+                impl.putValue(field.getName(), token);
                 for (final ElasticDocBuilderPlugin plugin : config.getPlugins()) {
                     plugin.put(doc, field, token, originalField, value);
                 }
             });
         } else {
             // store object
-            document.put(field.getName(), value);
+            impl.putValue(field.getName(), value);
             for (final ElasticDocBuilderPlugin plugin : config.getPlugins()) {
                 plugin.put(doc, field, value, originalField, value);
             }
@@ -453,9 +953,26 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
      */
     protected void putNode(final ElasticDoc doc, final Field field, final JsonNode node) {
         // pipeline: deserialize to object -> token filters for textual data
-        config.getValueProducer().traverse(field, node, obj -> {
-            put(doc, field, obj);
-        });
+        final FieldConsumer consumer = toImpl(doc).consumer;
+        if (consumer.field != null) {
+            // value producer is putting values into another field
+            config.getValueProducer().traverse(field, node, obj -> {
+                put(doc, field, obj);
+            });
+            return;
+        }
+
+        // primitives are not boxed unless a plugin or another field could receive them
+        consumer.field = field;
+        consumer.primitive = storePrimitives //
+                && config.getPlugins().size() == 0 //
+                && field.getAdditionalTargets().size() == 0 //
+                && config.getMapping().getProperties().containsKey(field.getName());
+        try {
+            config.getValueProducer().traverse(field, node, consumer);
+        } finally {
+            consumer.field = null;
+        }
     }
 
     private JsonNode read(final JsonSelector selector, final JsonNode node) {
@@ -473,6 +990,68 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         }
     }
 
+    /**
+     * Clears the given build context so that it can be reused by the next build on this thread, and
+     * makes the context it interrupted current again.
+     *
+     * @param doc
+     *            build context
+     */
+    private void releaseContext(final ElasticDocImpl doc) {
+        doc.clear();
+        doc.inUse = false;
+        if (doc.parent != null) {
+            contexts.set(doc.parent);
+        }
+    }
+
+    /**
+     * Converts the source object into a tree by serializing it into a {@link TokenBuffer} and reading
+     * the buffered tokens back, so that no intermediate JSON text is produced. When possible, only the
+     * values that are read by the configured selectors are kept.
+     *
+     * The object is serialized with the configured {@link ElasticDocConfig#getObjectMapper()}, so
+     * that its modules and features are applied.
+     *
+     * @param value
+     *            source object
+     * @return a tree representation of the source object
+     */
+    protected JsonNode readObject(final Object value) {
+        final TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            mapper.writeValue(buffer, value);
+            try (final JsonParser parser = buffer.asParser(mapper)) {
+                if (sourceMatcher != null) {
+                    return sourceMatcher.read(mapper, parser);
+                }
+                final JsonNode node = mapper.readTree(parser);
+                return node != null ? node : MissingNode.getInstance();
+            }
+        } catch (final IllegalArgumentException | IllegalStateException | IOException e) {
+            throw new ElasticDocException("Unable to convert source document", e);
+        }
+    }
+
+    /**
+     * Parses the source document, keeping only the values that are read by the configured
+     * selectors. Subtrees that no selector reads are skipped without creating nodes.
+     *
+     * @param json
+     *            source document
+     * @return a tree that contains only the values read by the configured selectors
+     */
+    protected JsonNode readSourcePaths(final CharSequence json) {
+        Preconditions.checkArgument(json != null, "json must be non-null");
+        Preconditions.checkState(sourceMatcher != null, "source document must be read in full");
+
+        try (final JsonParser parser = mapper.createParser(new CharSequenceReader(json))) {
+            return sourceMatcher.read(mapper, parser);
+        } catch (final IllegalArgumentException | IllegalStateException | IOException e) {
+            throw new ElasticDocException("Unable to parse source document", e);
+        }
+    }
+
     public JsonNode readValue(final CharSequence json) {
         Preconditions.checkArgument(json != null, "json must be non-null");
 
@@ -485,12 +1064,89 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
         return node;
     }
 
+    private ElasticDocImpl toImpl(final ElasticDoc doc) {
+        Preconditions.checkArgument(doc instanceof ElasticDocImpl, "doc must be created by this builder");
+        return (ElasticDocImpl) doc;
+    }
+
+    /**
+     * Writes the document as compact JSON straight from the document state, without building an
+     * intermediate map or string. Fields are written in the order that they appear in the mapping.
+     *
+     * @param doc
+     *            elastic document
+     * @return compact JSON document, which does not contain newlines
+     * @throws IOException
+     *             if the document cannot be written
+     */
+    protected CompactJson writeDocumentAsCompactJson(final ElasticDocImpl doc) throws IOException {
+        final JsonGenerator generator = doc.getGenerator();
+        boolean written = false;
+        try {
+            generator.writeStartObject();
+
+            // add fields in the order that they appear in the mapping
+            final LinkedHashMultimap<String, Object> document = doc.document;
+            final Set<String> mappingFields = config.getMapping().getProperties().keySet();
+            for (final String fieldName : mappingFields) {
+                if (document.containsKey(fieldName)) {
+                    writeField(doc, generator, fieldName);
+                } else {
+                    final PrimitiveValues values = doc.getPrimitives(fieldName);
+                    if (values != null) {
+                        writePrimitives(doc, generator, fieldName, values);
+                    }
+                }
+            }
+
+            // add fields that do not appear in mapping
+            for (final String fieldName : document.keySet()) {
+                if (!mappingFields.contains(fieldName)) {
+                    writeField(doc, generator, fieldName);
+                }
+            }
+
+            generator.writeEndObject();
+            generator.flush();
+            written = true;
+            return CompactJson.of(doc.output.toByteArray());
+        } finally {
+            doc.output.reset();
+            if (!written) {
+                // generator may be left in the middle of the document
+                doc.generator = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the document that is being built by the current thread as JSON.
+     *
+     * @param compact
+     *            true if JSON should be compact
+     * @return the document as JSON
+     * @throws ElasticDocException
+     *             if the document cannot be serialized
+     */
     protected CharSequence writeDocumentAsJson(final boolean compact) throws ElasticDocException {
+        return writeDocumentAsJson(getContext(), compact);
+    }
+
+    private CharSequence writeDocumentAsJson(final ElasticDocImpl doc, final boolean compact)
+            throws ElasticDocException {
+        if (compact && !mapper.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)) {
+            try {
+                return writeDocumentAsCompactJson(doc);
+            } catch (final IOException e) {
+                // e.g. unpaired surrogates, which the string form tolerates
+            }
+        }
+
         try {
             // note: we convert document to a "regular" map so that single-value fields are not
             // rendered as arrays; for cosmetic purposes, we also rearrange the map keys to align
             // with the ordering specified in the index mapping.
-            final Map<String, Object> map = getDocumentAsMap();
+            final Map<String, Object> map = doc.isCurrent() ? getDocumentAsMap() : getDocumentAsMap(doc);
 
             // return JSON
             final String json = mapper.writeValueAsString(map);
@@ -502,4 +1158,59 @@ public class ElasticDocBuilderImpl implements ElasticDocBuilder {
             throw new ElasticDocException("Unable to serialize Elastic document", e);
         }
     }
+
+    private void writeField(final ElasticDocImpl doc, final JsonGenerator generator, final String fieldName)
+            throws IOException {
+        final Object values = getFieldValues(doc, fieldName);
+        if (values == null) {
+            return;
+        }
+
+        generator.writeFieldName(fieldName);
+        if (values instanceof Collection) {
+            generator.writeStartArray();
+            for (final Object value : (Collection<?>) values) {
+                writeValue(generator, value);
+            }
+            generator.writeEndArray();
+        } else {
+            writeValue(generator, values);
+        }
+    }
+
+    private void writePrimitives(
+            final ElasticDocImpl doc,
+            final JsonGenerator generator,
+            final String fieldName,
+            final PrimitiveValues values) throws IOException {
+        if (values.size == 1) {
+            generator.writeFieldName(fieldName);
+            values.write(generator, 0);
+            return;
+        }
+
+        final Boolean sortTokens = config.getMapping().getField(fieldName).isSortTokens();
+        if (sortTokens != null && sortTokens.booleanValue()) {
+            // sorting is rare, so we box the values and sort them like any other field
+            doc.box(fieldName, values);
+            writeField(doc, generator, fieldName);
+            return;
+        }
+
+        generator.writeFieldName(fieldName);
+        generator.writeStartArray();
+        for (int i = 0; i < values.size; i++) {
+            values.write(generator, i);
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeValue(final JsonGenerator generator, final Object value) throws IOException {
+        if (value instanceof String) {
+            // most values are tokens
+            generator.writeString((String) value);
+        } else {
+            compactWriter.writeValue(generator, value);
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.doc;
+
+import java.time.DateTimeException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Hand-written parser for the common ISO-8601 layouts of a date and time with an offset, e.g.
+ * <code>2016-12-21T16:46:39.830Z</code> or <code>2016-12-21T16:46:39+05:00</code>.
+ *
+ * Text that does not have one of these layouts is not parsed, and should be given to a general
+ * date parser instead. Dates without an offset are never parsed here, since their time zone is a
+ * matter of interpretation.
+ */
+final class IsoDateParser {
+    private static final int[] NANO_SCALE = { 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000,
+            1_000, 100, 10, 1 };
+
+    private static int digits(final String text, final int start, final int count) {
+        int value = 0;
+        for (int i = start, end = start + count; i < end; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the date and time represented by the given text, or null if the text does not have a
+     * supported layout or is not a valid date.
+     *
+     * Supported layouts are <code>yyyy-MM-dd'T'HH:mm[:ss[.S{1,9}]]</code> followed by either
+     * <code>Z</code>, <code>+HH:mm</code>, <code>+HHmm</code> or <code>+HH</code>.
+     *
+     * @param text
+     *            text to parse
+     * @return the date and time represented by the given text, with its original offset, or null
+     */
+    static ZonedDateTime parse(final String text) {
+        final int length = text.length();
+        if (length < 17 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':') {
+            return null;
+        }
+
+        final int year = digits(text, 0, 4);
+        final int month = digits(text, 5, 2);
+        final int day = digits(text, 8, 2);
+        final int hour = digits(text, 11, 2);
+        final int minute = digits(text, 14, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0) {
+            return null;
+        }
+
+        // optional seconds and fraction
+        int pos = 16;
+        int second = 0;
+        int nano = 0;
+        if (text.charAt(pos) == ':') {
+            if (length < 20 || (second = digits(text, 17, 2)) < 0) {
+                return null;
+            }
+            pos = 19;
+            if (text.charAt(pos) == '.') {
+                final int start = ++pos;
+                while (pos < length && pos - start < 9) {
+                    final int digit = text.charAt(pos) - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    nano = nano * 10 + digit;
+                    pos++;
+                }
+                if (pos == start || pos == length) {
+                    return null;
+                }
+                nano *= NANO_SCALE[pos - start - 1];
+            }
+        }
+
+        // offset is required
+        final ZoneOffset offset;
+        final char sign = text.charAt(pos);
+        final int remaining = length - pos - 1;
+        if (sign == 'Z' && remaining == 0) {
+            offset = ZoneOffset.UTC;
+        } else if (sign == '+' || sign == '-') {
+            final int hours = remaining >= 2 ? digits(text, pos + 1, 2) : -1;
+            final int minutes;
+            if (remaining == 2) {
+                minutes = 0;
+            } else if (remaining == 4) {
+                minutes = digits(text, pos + 3, 2);
+            } else if (remaining == 5 && text.charAt(pos + 3) == ':') {
+                minutes = digits(text, pos + 4, 2);
+            } else {
+                return null;
+            }
+            if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > 18 * 60) {
+                return null;
+            }
+            final int seconds = hours * 3600 + minutes * 60;
+            offset = ZoneOffset.ofTotalSeconds(sign == '-' ? -seconds : seconds);
+        } else {
+            return null;
+        }
+
+        try {
+            return ZonedDateTime.of(year, month, day, hour, minute, second, nano, offset);
+        } catch (final DateTimeException e) {
+            // e.g. February 30th
+            return null;
+        }
+    }
+
+    private IsoDateParser() {
+        // utility class
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.doc;
+
+import java.util.function.Consumer;
+
+/**
+ * Consumer of the values produced by a {@link ValueProducer}, which can also receive numeric and
+ * boolean values without boxing. The default methods box the value and pass it to
+ * {@link #accept(Object)}.
+ */
+public interface ValueConsumer extends Consumer<Object> {
+    public default void acceptBoolean(final boolean value) {
+        accept(Boolean.valueOf(value));
+    }
+
+    public default void acceptDouble(final double value) {
+        accept(Double.valueOf(value));
+    }
+
+    public default void acceptFloat(final float value) {
+        accept(Float.valueOf(value));
+    }
+
+    public default void acceptInt(final int value) {
+        accept(Integer.valueOf(value));
+    }
+
+    public default void acceptLong(final long value) {
+        accept(Long.valueOf(value));
+    }
+}
@@ -20,7 +20,10 @@ package com.arakelian.elastic.doc.filters;
 import java.io.Serializable;
 import java.util.function.Consumer;
 
-public abstract class AbstractCharFilter implements CharFilter, TokenFilter, Serializable {
+import org.apache.commons.lang3.StringUtils;
+
+public abstract class AbstractCharFilter
+        implements CharFilter, CharBufferFilter, TokenFilter, Serializable {
     @Override
     public final <T extends Consumer<String>> T accept(final String value, final T output) {
         if (value == null) {
@@ -34,4 +37,40 @@ public abstract class AbstractCharFilter implements CharFilter, TokenFilter, Ser
         }
         return output;
     }
+
+    @Override
+    public void execute(final CharSequence csq, final Consumer<CharSequence> consumer) {
+        // char filters never buffer, so there is nothing to flush
+        final String newVal = apply(csq != null ? csq.toString() : StringUtils.EMPTY);
+        if (newVal != null && newVal.length() != 0) {
+            consumer.accept(newVal);
+        }
+    }
+
+    @Override
+    public void executeBuffered(final CharSequence csq, final Consumer<CharSequence> consumer) {
+        TokenBuffers.execute(this, csq, consumer);
+    }
+
+    /**
+     * Rewrites the token held by the given buffer. Subclasses that can rewrite tokens in place
+     * should override this method; by default, the token is passed through {@link #apply(String)}.
+     *
+     * @param token
+     *            buffer holding the token
+     * @return false if the token should be discarded
+     */
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        final String value = token.toString();
+        final String newVal = apply(value);
+        if (newVal == null) {
+            return false;
+        }
+        if (newVal != value) {
+            token.setLength(0);
+            token.append(newVal);
+        }
+        return true;
+    }
 }
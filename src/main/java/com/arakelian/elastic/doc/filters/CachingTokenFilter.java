@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.doc.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.base.Preconditions;
+
+/**
+ * Remembers the tokens that a {@link TokenFilter} produces for recently seen values, so that
+ * values which repeat across documents (e.g. state codes or product codes) do not run through the
+ * filter again.
+ *
+ * Only complete executions are cached; tokens passed to
+ * {@link #accept(String, TokenContext, Consumer)} are always given to the underlying filter.
+ */
+public class CachingTokenFilter implements TokenFilter {
+    /** Weight of each cached token, in addition to its length **/
+    private static final int TOKEN_WEIGHT = 16;
+
+    private static int weigh(final String value, final String[] tokens) {
+        int weight = value.length();
+        for (final String token : tokens) {
+            weight += TOKEN_WEIGHT + token.length();
+        }
+        return weight;
+    }
+
+    private final TokenFilter filter;
+
+    private final Cache<String, String[]> cache;
+
+    /**
+     * Creates a cache of the tokens produced by the given filter. Either the number of cached
+     * values, or their total weight in characters, is bounded.
+     *
+     * @param filter
+     *            token filter
+     * @param maximumSize
+     *            maximum number of cached values, or null if weight is bounded instead
+     * @param maximumWeight
+     *            maximum total length of cached values and their tokens, or null if size is
+     *            bounded instead
+     */
+    public CachingTokenFilter(final TokenFilter filter, final Integer maximumSize, final Long maximumWeight) {
+        this.filter = Preconditions.checkNotNull(filter);
+        Preconditions.checkArgument(
+                maximumSize == null ^ maximumWeight == null,
+                "Exactly one of token cache size or weight must be specified");
+        Preconditions.checkArgument(
+                maximumSize == null || maximumSize.intValue() > 0,
+                "Token cache size must be greater than 0");
+        Preconditions.checkArgument(
+                maximumWeight == null || maximumWeight.longValue() > 0,
+                "Token cache weight must be greater than 0");
+
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder() //
+                .recordStats();
+        if (maximumSize != null) {
+            cache = builder.maximumSize(maximumSize.longValue()).build();
+        } else {
+            cache = builder //
+                    .maximumWeight(maximumWeight.longValue()) //
+                    .weigher(CachingTokenFilter::weigh) //
+                    .build();
+        }
+    }
+
+    @Override
+    public <T extends Consumer<String>> T accept(final String value, final T output) {
+        return filter.accept(value, output);
+    }
+
+    @Override
+    public <T extends Consumer<String>> T accept(
+            final String value,
+            final TokenContext context,
+            final T output) {
+        return filter.accept(value, context, output);
+    }
+
+    @Override
+    public void execute(final CharSequence csq, final Consumer<CharSequence> consumer) {
+        final String value = csq != null ? csq.toString() : StringUtils.EMPTY;
+
+        // concurrent misses for the same value run the filter only once
+        final String[] tokens = cache.get(value, key -> {
+            final List<String> list = new ArrayList<>();
+            filter.executeBuffered(key, token -> {
+                list.add(token.toString());
+            });
+            return list.toArray(new String[list.size()]);
+        });
+
+        for (final String token : tokens) {
+            consumer.accept(token);
+        }
+    }
+
+    public TokenFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns hit and miss statistics of the cache.
+     *
+     * @return hit and miss statistics of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingTokenFilter[" + filter + "]";
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A run of {@link AbstractCharFilter}s that rewrite a token, one after another, in a single
+ * buffer.
+ *
+ * Consecutive filters that map each character independently of the others (case conversion,
+ * stripping whitespace and replacing control characters) are composed into a single lookup table,
+ * and applied with one scan over the token. When such filters are mixed with filters that trim or
+ * reduce whitespace, or truncate the token, the whole run is fused into a single scan that passes
+ * each character through every filter in turn, and stops as soon as the token has been truncated.
+ * The output is always identical to that of the original filters; fused passes only handle ASCII
+ * tokens whose only whitespace is the space character, and other tokens are passed through the
+ * original filters one after another.
+ */
+public class CharBufferChain extends AbstractCharFilter {
+    /**
+     * Filters that map characters independently of each other, composed into a lookup table.
+     */
+    private static final class CharMap implements CharBufferFilter {
+        /** Original filters **/
+        private final List<AbstractCharFilter> filters;
+
+        /** Result of filters for each ASCII character **/
+        private final int[] table;
+
+        /** True if filters convert case, which depends on default locale **/
+        private final boolean caseSensitive;
+
+        private CharMap(final List<AbstractCharFilter> filters) {
+            this.filters = ImmutableList.copyOf(filters);
+
+            boolean caseSensitive = false;
+            for (final AbstractCharFilter filter : filters) {
+                caseSensitive |= filter instanceof Lowercase || filter instanceof Uppercase;
+            }
+            this.caseSensitive = caseSensitive;
+            this.table = createTable(filters);
+        }
+
+        @Override
+        public boolean rewrite(final StringBuilder token) {
+            final int length = token.length();
+
+            // find first character that is changed
+            int i = 0;
+            while (i < length) {
+                final char ch = token.charAt(i);
+                if (ch >= 0x80 || table[ch] != ch) {
+                    break;
+                }
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+
+            // make sure that remaining characters can be mapped, before we change any of them
+            if (caseSensitive && TokenBuffers.isLocaleSensitiveCase()) {
+                return CharBufferChain.rewrite(filters, token);
+            }
+            for (int j = i; j < length; j++) {
+                final char ch = token.charAt(j);
+                if (ch >= 0x80 || table[ch] == FALLBACK) {
+                    return CharBufferChain.rewrite(filters, token);
+                }
+            }
+
+            int n = i;
+            for (; i < length; i++) {
+                final char ch = token.charAt(i);
+                final int c = table[ch];
+                if (c == DROP) {
+                    continue;
+                }
+                if (c != ch || n != i) {
+                    token.setCharAt(n, (char) c);
+                }
+                n++;
+            }
+            token.setLength(n);
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "CharMap" + filters;
+        }
+    }
+
+    /**
+     * A run of filters that map characters, trim or reduce whitespace, or truncate the token, fused
+     * into a single scan over the token.
+     */
+    private static final class Scan implements CharBufferFilter {
+        /** Stage: characters are mapped with a lookup table **/
+        private static final int MAP = 0;
+
+        /** Stage: leading and trailing spaces are removed **/
+        private static final int TRIM = 1;
+
+        /** Stage: leading and trailing spaces are removed, and runs of spaces reduced to one **/
+        private static final int REDUCE = 2;
+
+        /** Stage: characters beyond a maximum length are removed **/
+        private static final int TRUNCATE = 3;
+
+        /** Original filters **/
+        private final List<AbstractCharFilter> filters;
+
+        /** Kind of each stage **/
+        private final int[] kinds;
+
+        /** Lookup table of each {@link #MAP} stage **/
+        private final int[][] tables;
+
+        /** Maximum length of each {@link #TRUNCATE} stage **/
+        private final int[] lengths;
+
+        /** True for each ASCII character that every stage handles without the original filters **/
+        private final boolean[] valid = new boolean[0x80];
+
+        /** True if filters convert case, which depends on default locale **/
+        private final boolean caseSensitive;
+
+        private Scan(final List<AbstractCharFilter> filters) {
+            this.filters = ImmutableList.copyOf(filters);
+
+            final List<Integer> kinds = new ArrayList<>();
+            final List<int[]> tables = new ArrayList<>();
+            final List<Integer> lengths = new ArrayList<>();
+            final List<AbstractCharFilter> maps = new ArrayList<>();
+            boolean caseSensitive = false;
+            for (final AbstractCharFilter filter : filters) {
+                caseSensitive |= filter instanceof Lowercase || filter instanceof Uppercase;
+                if (isCharMap(filter)) {
+                    maps.add(filter);
+                    continue;
+                }
+                if (maps.size() != 0) {
+                    kinds.add(MAP);
+                    tables.add(createTable(maps));
+                    lengths.add(0);
+                    maps.clear();
+                }
+                kinds.add(
+                        filter instanceof TrimWhitespace ? TRIM
+                                : filter instanceof ReduceWhitespace ? REDUCE : TRUNCATE);
+                tables.add(null);
+                lengths.add(filter instanceof Truncate ? ((Truncate) filter).getLength() : 0);
+            }
+            if (maps.size() != 0) {
+                kinds.add(MAP);
+                tables.add(createTable(maps));
+                lengths.add(0);
+            }
+            this.caseSensitive = caseSensitive;
+            this.kinds = kinds.stream().mapToInt(Integer::intValue).toArray();
+            this.tables = tables.toArray(new int[tables.size()][]);
+            this.lengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+
+            for (char ch = 0; ch < valid.length; ch++) {
+                valid[ch] = isValid(ch);
+            }
+        }
+
+        @Override
+        public boolean rewrite(final StringBuilder token) {
+            // make sure that every character can be handled, before we change any of them
+            if (caseSensitive && TokenBuffers.isLocaleSensitiveCase()) {
+                return CharBufferChain.rewrite(filters, token);
+            }
+            final int length = token.length();
+            for (int i = 0; i < length; i++) {
+                final char ch = token.charAt(i);
+                if (ch >= 0x80 || !valid[ch]) {
+                    return CharBufferChain.rewrite(filters, token);
+                }
+            }
+
+            // state of each stage, followed by the length of the output; since no stage emits more
+            // characters than it receives, output never overtakes the characters still to be read
+            final int[] state = new int[kinds.length + 1];
+            for (int i = 0; i < length; i++) {
+                if (!push(token, state, 0, token.charAt(i))) {
+                    // token has been truncated, remaining characters cannot change it
+                    break;
+                }
+            }
+            token.setLength(state[kinds.length]);
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Scan" + filters;
+        }
+
+        /**
+         * Returns true if the given character, and anything it is mapped to, can be passed
+         * through every stage; positional stages only recognize the space character as whitespace.
+         *
+         * @param ch
+         *            ASCII character
+         * @return true if the given character can be passed through every stage
+         */
+        private boolean isValid(final char ch) {
+            int c = ch;
+            for (int i = 0; i < kinds.length; i++) {
+                if (kinds[i] == MAP) {
+                    c = tables[i][c];
+                    if (c == DROP) {
+                        return true;
+                    } else if (c == FALLBACK) {
+                        return false;
+                    }
+                } else if (c < ' ') {
+                    // control characters, tabs and line breaks
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Passes a character through the stages of the scan, starting with the given stage, and
+         * appends whatever comes out of the last stage to the output.
+         *
+         * @param token
+         *            token being rewritten
+         * @param state
+         *            state of each stage, followed by the length of the output
+         * @param stage
+         *            first stage
+         * @param ch
+         *            character
+         * @return false if the character reached a stage that has truncated the token
+         */
+        private boolean push(final StringBuilder token, final int[] state, final int stage, final char ch) {
+            int c = ch;
+            for (int i = stage; i < kinds.length; i++) {
+                switch (kinds[i]) {
+                case MAP:
+                    c = tables[i][c];
+                    if (c == DROP) {
+                        return true;
+                    }
+                    break;
+                case TRIM:
+                    // state is zero before first non-space, otherwise one more than pending spaces
+                    if (c == ' ') {
+                        if (state[i] != 0) {
+                            state[i]++;
+                        }
+                        return true;
+                    }
+                    while (state[i] > 1) {
+                        state[i]--;
+                        if (!push(token, state, i + 1, ' ')) {
+                            return false;
+                        }
+                    }
+                    state[i] = 1;
+                    break;
+                case REDUCE:
+                    // state is zero before first non-space, and two when a space is pending
+                    if (c == ' ') {
+                        if (state[i] != 0) {
+                            state[i] = 2;
+                        }
+                        return true;
+                    }
+                    if (state[i] == 2 && !push(token, state, i + 1, ' ')) {
+                        return false;
+                    }
+                    state[i] = 1;
+                    break;
+                default:
+                    if (state[i] >= lengths[i]) {
+                        return false;
+                    }
+                    state[i]++;
+                    break;
+                }
+            }
+            token.setCharAt(state[kinds.length]++, (char) c);
+            return true;
+        }
+    }
+
+    /** Result of mapping: character is removed **/
+    private static final int DROP = -1;
+
+    /** Result of mapping: token must be passed through the original filters **/
+    private static final int FALLBACK = -2;
+
+    private static void addRun(
+            final ImmutableList.Builder<CharBufferFilter> passes,
+            final List<AbstractCharFilter> run) {
+        if (run.size() == 1) {
+            // a single filter scans the token once anyway
+            passes.add(run.get(0));
+        } else if (run.size() > 1) {
+            boolean positional = false;
+            for (final AbstractCharFilter filter : run) {
+                positional |= isPositional(filter);
+            }
+            passes.add(positional ? new Scan(run) : new CharMap(run));
+        }
+        run.clear();
+    }
+
+    private static int[] createTable(final List<AbstractCharFilter> filters) {
+        final int[] table = new int[0x80];
+        for (char ch = 0; ch < table.length; ch++) {
+            int c = ch;
+            for (int i = 0, size = filters.size(); i < size && c >= 0; i++) {
+                c = map(filters.get(i), (char) c);
+            }
+            table[ch] = c;
+        }
+        return table;
+    }
+
+    /**
+     * Returns true if the given filter maps each character independently of the others, and can
+     * therefore be composed into a lookup table.
+     *
+     * @param filter
+     *            token filter
+     * @return true if the given filter can be composed into a lookup table
+     */
+    private static boolean isCharMap(final TokenFilter filter) {
+        return filter instanceof Lowercase || filter instanceof Uppercase
+                || filter instanceof StripWhitespace || filter instanceof ReplaceControlCharacters;
+    }
+
+    /**
+     * Returns true if the given filter trims, reduces or truncates the token, and can therefore be
+     * fused into a single scan with character mapping filters.
+     *
+     * @param filter
+     *            token filter
+     * @return true if the given filter can be fused into a single scan
+     */
+    private static boolean isPositional(final TokenFilter filter) {
+        return filter instanceof TrimWhitespace || filter instanceof ReduceWhitespace
+                || filter instanceof Truncate;
+    }
+
+    private static int map(final AbstractCharFilter filter, final char c) {
+        if (filter instanceof Lowercase) {
+            return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+        } else if (filter instanceof Uppercase) {
+            return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+        } else if (filter instanceof StripWhitespace) {
+            return Character.isWhitespace(c) ? DROP : c;
+        } else if (filter instanceof ReplaceControlCharacters) {
+            // let replaceNonPrintableControlCharacters decide what is printable
+            return c >= ' ' && c <= '~' || Character.isLetterOrDigit(c) ? c : FALLBACK;
+        }
+        throw new IllegalArgumentException("Cannot map " + filter);
+    }
+
+    private static boolean rewrite(
+            final List<? extends CharBufferFilter> filters,
+            final StringBuilder token) {
+        for (int i = 0, size = filters.size(); i < size; i++) {
+            if (!filters.get(i).rewrite(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final List<AbstractCharFilter> filters;
+
+    /** Filters, with runs of character mapping and positional filters fused into single scans **/
+    private final List<CharBufferFilter> passes;
+
+    public CharBufferChain(final List<? extends AbstractCharFilter> filters) {
+        Preconditions.checkArgument(filters != null && filters.size() != 0, "filters must be non-empty");
+        this.filters = ImmutableList.copyOf(filters);
+
+        final ImmutableList.Builder<CharBufferFilter> passes = ImmutableList.builder();
+        final List<AbstractCharFilter> run = new ArrayList<>();
+        for (final AbstractCharFilter filter : this.filters) {
+            if (isCharMap(filter) || isPositional(filter)) {
+                run.add(filter);
+                continue;
+            }
+            addRun(passes, run);
+            passes.add(filter);
+        }
+        addRun(passes, run);
+        this.passes = passes.build();
+    }
+
+    @Override
+    public String apply(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final StringBuilder token = TokenBuffers.acquire();
+        try {
+            token.append(value);
+            return rewrite(token) ? token.toString() : null;
+        } finally {
+            TokenBuffers.release(token);
+        }
+    }
+
+    public List<AbstractCharFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        return rewrite(passes, token);
+    }
+
+    @Override
+    public String toString() {
+        return "CharBufferChain" + filters;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+/**
+ * A filter that rewrites a token in place, in a reusable character buffer, rather than creating a
+ * new {@link String} for every token it sees.
+ *
+ * Runs of these filters share a single buffer (see {@link CharBufferChain}), and a {@link String}
+ * is only created when the filtered token is handed to its final consumer.
+ */
+@FunctionalInterface
+public interface CharBufferFilter {
+    /**
+     * Rewrites the token held by the given buffer.
+     *
+     * @param token
+     *            buffer holding the token; on return, holds the filtered token
+     * @return false if the token should be discarded
+     */
+    public boolean rewrite(StringBuilder token);
+}
@@ -34,4 +34,19 @@ public abstract class Lowercase extends AbstractCharFilter {
         // nulls return null, otherwise always non-null
         return StringUtils.lowerCase(value);
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        if (TokenBuffers.isLocaleSensitiveCase() || !TokenBuffers.isAscii(token)) {
+            // non-ASCII case conversion may change length, e.g. dotted capital I
+            return super.rewrite(token);
+        }
+        for (int i = 0, length = token.length(); i < length; i++) {
+            final char ch = token.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                token.setCharAt(i, (char) (ch + ('a' - 'A')));
+            }
+        }
+        return true;
+    }
 }
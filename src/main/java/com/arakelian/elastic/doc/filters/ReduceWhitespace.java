@@ -82,4 +82,51 @@ public abstract class ReduceWhitespace extends AbstractCharFilter {
         // return reduction
         return buf.toString();
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        final int length = token.length();
+        int end = length;
+        int start = 0;
+        while (start < end && Character.isWhitespace(token.charAt(start))) {
+            start++;
+        }
+        while (start < end && Character.isWhitespace(token.charAt(end - 1))) {
+            end--;
+        }
+
+        // do we have a run of whitespace?
+        boolean reduce = false;
+        for (int i = start + 1; i < end; i++) {
+            if (Character.isWhitespace(token.charAt(i)) && Character.isWhitespace(token.charAt(i - 1))) {
+                reduce = true;
+                break;
+            }
+        }
+
+        if (!reduce) {
+            // like apply, isolated whitespace characters are left alone
+            token.setLength(end);
+            token.delete(0, start);
+            return true;
+        }
+
+        // compact runs of whitespace to a single space, towards the front of the buffer
+        int j = 0;
+        boolean space = false;
+        for (int i = start; i < end; i++) {
+            final char ch = token.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                space = true;
+            } else {
+                if (space) {
+                    token.setCharAt(j++, ' ');
+                    space = false;
+                }
+                token.setCharAt(j++, ch);
+            }
+        }
+        token.setLength(j);
+        return true;
+    }
 }
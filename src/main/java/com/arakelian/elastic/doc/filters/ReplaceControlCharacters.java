@@ -34,4 +34,17 @@ public abstract class ReplaceControlCharacters extends AbstractCharFilter {
         // nulls return null, otherwise always non-null
         return MoreStringUtils.replaceNonPrintableControlCharacters(value);
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        for (int i = 0, length = token.length(); i < length; i++) {
+            final char ch = token.charAt(i);
+            if ((ch < ' ' || ch > '~') && !Character.isLetterOrDigit(ch)) {
+                // let replaceNonPrintableControlCharacters decide what is printable
+                return super.rewrite(token);
+            }
+        }
+        // printable ASCII, letters and digits are never replaced
+        return true;
+    }
 }
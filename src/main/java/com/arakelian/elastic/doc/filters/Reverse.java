@@ -34,4 +34,11 @@ public abstract class Reverse extends AbstractCharFilter {
         // nulls return null, otherwise always non-null
         return StringUtils.reverse(value);
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        // surrogate pairs are kept in order, as with String
+        token.reverse();
+        return true;
+    }
 }
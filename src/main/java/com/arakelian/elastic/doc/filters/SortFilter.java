@@ -18,6 +18,7 @@
 package com.arakelian.elastic.doc.filters;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
@@ -27,29 +28,34 @@ import org.immutables.value.Value;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.google.common.collect.Lists;
 
 @Value.Immutable(singleton = true)
 @JsonSerialize(as = ImmutableSortFilter.class)
 @JsonDeserialize(builder = ImmutableSortFilter.Builder.class)
 @JsonTypeName(TokenFilter.SORT)
 public abstract class SortFilter implements TokenFilter, Serializable {
-    private final List<String> values = Lists.newArrayList();
-
     @Override
     public <T extends Consumer<String>> T accept(final String value, final T output) {
+        return accept(value, TokenContext.forThread(), output);
+    }
+
+    @Override
+    public <T extends Consumer<String>> T accept(
+            final String value,
+            final TokenContext context,
+            final T output) {
         if (value == null) {
-            try {
+            // make sure we always reset, no matter what
+            final List<String> values = context.removeState(this);
+            if (values != null) {
                 // flush sorted values
                 Collections.sort(values, String.CASE_INSENSITIVE_ORDER);
                 for (final String v : values) {
                     output.accept(v);
                 }
-            } finally {
-                // make sure we always reset, no matter what
-                values.clear();
             }
         } else {
+            final List<String> values = context.getState(this, ArrayList::new);
             values.add(value);
         }
 
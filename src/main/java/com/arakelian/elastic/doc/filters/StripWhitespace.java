@@ -67,4 +67,22 @@ public abstract class StripWhitespace extends AbstractCharFilter {
         // return reduction
         return buf != null ? buf.toString() : StringUtils.EMPTY;
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        // compact non-whitespace characters towards the front of the buffer
+        final int length = token.length();
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = token.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                if (i != j) {
+                    token.setCharAt(j, ch);
+                }
+                j++;
+            }
+        }
+        token.setLength(j);
+        return true;
+    }
 }
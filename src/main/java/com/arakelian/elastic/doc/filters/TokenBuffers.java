@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Thread-confined character buffers used by {@link CharBufferFilter}s.
+ */
+final class TokenBuffers {
+    /** Buffers that grow beyond this capacity are not kept for reuse **/
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<TokenBuffers> BUFFERS = ThreadLocal
+            .withInitial(() -> new TokenBuffers());
+
+    /**
+     * Returns a buffer for the current thread. Buffers must be returned with
+     * {@link #release(StringBuilder)}; a nested request on the same thread receives a new buffer.
+     *
+     * @return an empty buffer
+     */
+    static StringBuilder acquire() {
+        final TokenBuffers buffers = BUFFERS.get();
+        if (buffers.inUse) {
+            return new StringBuilder();
+        }
+        buffers.inUse = true;
+        return buffers.buf;
+    }
+
+    /**
+     * Passes a token through the given filter, using a buffer for the current thread. The consumer
+     * receives the buffer itself, and must copy the token if it needs to keep it; see
+     * {@link TokenFilter#executeBuffered(CharSequence, Consumer)}.
+     *
+     * @param filter
+     *            filter to execute
+     * @param csq
+     *            token
+     * @param consumer
+     *            receives the filtered token, if it is not empty
+     */
+    static void execute(
+            final CharBufferFilter filter,
+            final CharSequence csq,
+            final Consumer<CharSequence> consumer) {
+        final StringBuilder token = acquire();
+        try {
+            if (csq != null) {
+                token.append(csq);
+            }
+            // we only store non-empty strings in document
+            if (filter.rewrite(token) && token.length() != 0) {
+                consumer.accept(token);
+            }
+        } finally {
+            release(token);
+        }
+    }
+
+    /**
+     * Returns true if the given token only contains ASCII characters.
+     *
+     * @param token
+     *            token
+     * @return true if the given token only contains ASCII characters
+     */
+    static boolean isAscii(final CharSequence token) {
+        for (int i = 0, length = token.length(); i < length; i++) {
+            if (token.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if case conversion of ASCII characters in the default locale does not match
+     * {@link Locale#ROOT}, as is the case for the dotted and dotless i of Turkish and Azeri.
+     *
+     * @return true if ASCII case conversion depends on the default locale
+     */
+    static boolean isLocaleSensitiveCase() {
+        final String language = Locale.getDefault().getLanguage();
+        return "tr".equals(language) || "az".equals(language);
+    }
+
+    /**
+     * Returns a buffer acquired with {@link #acquire()}.
+     *
+     * @param token
+     *            buffer
+     */
+    static void release(final StringBuilder token) {
+        final TokenBuffers buffers = BUFFERS.get();
+        if (token != buffers.buf) {
+            return;
+        }
+        if (token.capacity() > MAX_RETAINED_CAPACITY) {
+            buffers.buf = new StringBuilder();
+        } else {
+            token.setLength(0);
+        }
+        buffers.inUse = false;
+    }
+
+    private StringBuilder buf = new StringBuilder();
+    private boolean inUse;
+
+    private TokenBuffers() {
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.arakelian.elastic.doc.filters;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -28,16 +29,38 @@ public class TokenChain implements TokenFilter {
             return ImmutableNullFilter.of();
         }
 
-        final int length = filters.size();
-        TokenFilter next = filters.get(length - 1);
+        // runs of char filters rewrite a single buffer, instead of creating a string per filter
+        final List<TokenFilter> stages = new ArrayList<>(filters.size());
+        final List<AbstractCharFilter> run = new ArrayList<>();
+        for (final TokenFilter filter : filters) {
+            if (filter instanceof AbstractCharFilter) {
+                run.add((AbstractCharFilter) filter);
+            } else {
+                addRun(stages, run);
+                stages.add(filter);
+            }
+        }
+        addRun(stages, run);
+
+        final int length = stages.size();
+        TokenFilter next = stages.get(length - 1);
 
         for (int i = length - 2; i >= 0; i--) {
-            final TokenFilter filter = filters.get(i);
+            final TokenFilter filter = stages.get(i);
             next = new TokenChain(filter, next);
         }
         return next;
     }
 
+    private static void addRun(final List<TokenFilter> stages, final List<AbstractCharFilter> run) {
+        if (run.size() == 1) {
+            stages.add(run.get(0));
+        } else if (run.size() > 1) {
+            stages.add(new CharBufferChain(run));
+        }
+        run.clear();
+    }
+
     private final TokenFilter filter;
     private final TokenFilter next;
 
@@ -48,9 +71,19 @@ public class TokenChain implements TokenFilter {
 
     @Override
     public <T extends Consumer<String>> T accept(final String value, final T output) {
-        filter.accept(value, out -> {
+        return accept(value, TokenContext.forThread(), output);
+    }
+
+    @Override
+    public <T extends Consumer<String>> T accept(
+            final String value,
+            final TokenContext context,
+            final T output) {
+        // context is passed down the chain, so that buffering filters do not share state between
+        // executions
+        filter.accept(value, context, out -> {
             if (next != null) {
-                next.accept(out, output);
+                next.accept(out, context, output);
             } else {
                 output.accept(out);
             }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * State of a single execution of a {@link TokenFilter} chain.
+ *
+ * Filters that buffer tokens until they are flushed (see {@link SortFilter}) keep their buffers
+ * here rather than in fields, so that a filter chain can be executed by several threads at once.
+ * A context must only be used by one execution at a time.
+ */
+public final class TokenContext {
+    /** Context used by callers that drive the flush protocol without a context of their own **/
+    private static final ThreadLocal<TokenContext> THREAD_CONTEXT = ThreadLocal
+            .withInitial(() -> new TokenContext());
+
+    /**
+     * Returns a context that is confined to the current thread. This is used by
+     * {@link TokenFilter#accept(String, Consumer)}, which does not have a context of its own.
+     *
+     * @return a context that is confined to the current thread
+     */
+    public static TokenContext forThread() {
+        return THREAD_CONTEXT.get();
+    }
+
+    /** Filter state, keyed by filter identity; allocated on first use **/
+    private Map<TokenFilter, Object> state;
+
+    /**
+     * Discards all filter state.
+     */
+    public void clear() {
+        if (state != null) {
+            state.clear();
+        }
+    }
+
+    /**
+     * Returns the state of the given filter, creating it if necessary.
+     *
+     * @param filter
+     *            filter that owns state
+     * @param factory
+     *            creates state if filter does not have any
+     * @param <S>
+     *            type of state
+     * @return the state of the given filter
+     */
+    @SuppressWarnings("unchecked")
+    public <S> S getState(final TokenFilter filter, final Supplier<S> factory) {
+        if (state == null) {
+            state = new IdentityHashMap<>();
+        }
+        return (S) state.computeIfAbsent(filter, f -> factory.get());
+    }
+
+    /**
+     * Removes and returns the state of the given filter.
+     *
+     * @param filter
+     *            filter that owns state
+     * @param <S>
+     *            type of state
+     * @return the state of the given filter, or null if filter does not have any
+     */
+    @SuppressWarnings("unchecked")
+    public <S> S removeState(final TokenFilter filter) {
+        return state != null ? (S) state.remove(filter) : null;
+    }
+}
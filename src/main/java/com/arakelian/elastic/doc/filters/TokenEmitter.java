@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.function.Consumer;
+
+/**
+ * Passes non-empty tokens from a {@link TokenFilter} to a consumer, and remembers whether any
+ * were emitted, so that {@link TokenFilter#execute(CharSequence, Consumer)} knows when buffering
+ * filters have been flushed.
+ */
+final class TokenEmitter implements Consumer<String> {
+    private final Consumer<CharSequence> consumer;
+    private boolean emitted;
+
+    TokenEmitter(final Consumer<CharSequence> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void accept(final String token) {
+        // we only store non-empty strings in document
+        if (token != null && token.length() != 0) {
+            consumer.accept(token);
+            emitted = true;
+        }
+    }
+
+    boolean reset() {
+        final boolean result = emitted;
+        emitted = false;
+        return result;
+    }
+}
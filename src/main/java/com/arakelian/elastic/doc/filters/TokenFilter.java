@@ -19,7 +19,6 @@ package com.arakelian.elastic.doc.filters;
 
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +73,31 @@ public interface TokenFilter {
 
     public <T extends Consumer<String>> T accept(String value, T output);
 
+    /**
+     * Passes a token through this filter. A null token signals the end of input, and asks filters
+     * that buffer tokens to flush them.
+     *
+     * Filters that buffer tokens must override this method, and keep their buffers in the given
+     * context rather than in fields, so that the filter can be executed by several threads at
+     * once. Other filters need not override it.
+     *
+     * @param value
+     *            token, or null to flush buffered tokens
+     * @param context
+     *            state of the current execution
+     * @param output
+     *            receives filtered tokens
+     * @param <T>
+     *            type of output
+     * @return the output
+     */
+    public default <T extends Consumer<String>> T accept(
+            final String value,
+            final TokenContext context,
+            final T output) {
+        return accept(value, output);
+    }
+
     public default List<String> execute(final CharSequence csq) {
         final ImmutableList.Builder<String> tokens = ImmutableList.builder();
         execute(csq, token -> {
@@ -82,34 +106,41 @@ public interface TokenFilter {
         return tokens.build();
     }
 
+    /**
+     * Passes a value through this filter, and then flushes any tokens that were buffered. Each
+     * token is passed to the consumer as a {@link String}.
+     *
+     * @param csq
+     *            value
+     * @param consumer
+     *            receives non-empty tokens
+     */
     public default void execute(final CharSequence csq, final Consumer<CharSequence> consumer) {
-        // null value is used to flush token filters that buffer
-        accept(null, token -> {
-            // discard any leftovers from last execution; perhaps there was an exception and
-            // pipeline was not reset
-        });
+        // each execution has its own state, so there are no leftovers from other executions
+        final TokenContext context = new TokenContext();
 
-        accept(
-                csq != null ? csq.toString() : StringUtils.EMPTY,
-                token -> {
-                    // we only store non-empty strings in document
-                    if (!StringUtils.isEmpty(token)) {
-                        consumer.accept(token);
-                    }
-                });
+        final TokenEmitter emitter = new TokenEmitter(consumer);
+        accept(csq != null ? csq.toString() : StringUtils.EMPTY, context, emitter);
 
         // null value is used to flush token filters that buffer
-        for (final AtomicBoolean changed = new AtomicBoolean();; changed.set(false)) {
-            accept(null, token -> {
-                if (!StringUtils.isEmpty(token)) {
-                    consumer.accept(token);
-                    changed.set(true);
-                }
-            });
-            if (!changed.get()) {
-                break;
-            }
-        }
+        emitter.reset();
+        do {
+            accept(null, context, emitter);
+        } while (emitter.reset());
+    }
+
+    /**
+     * Passes a value through this filter, like {@link #execute(CharSequence, Consumer)}, except that
+     * the consumer may receive a reusable buffer rather than a {@link String}. The buffer is only
+     * valid until the consumer returns, so the consumer must copy the token if it needs to keep it.
+     *
+     * @param csq
+     *            value
+     * @param consumer
+     *            receives non-empty tokens
+     */
+    public default void executeBuffered(final CharSequence csq, final Consumer<CharSequence> consumer) {
+        execute(csq, consumer);
     }
 
     @Value.Default
@@ -34,4 +34,27 @@ public abstract class TrimWhitespace extends AbstractCharFilter {
         // nulls return null, otherwise always non-null
         return MoreStringUtils.trimWhitespace(value);
     }
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        int end = token.length();
+        int start = 0;
+        while (start < end && token.charAt(start) == ' ') {
+            start++;
+        }
+        while (start < end && token.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (start < end && (isWhitespace(token.charAt(start)) || isWhitespace(token.charAt(end - 1)))) {
+            // let trimWhitespace decide what else counts as whitespace
+            return super.rewrite(token);
+        }
+        token.setLength(end);
+        token.delete(0, start);
+        return true;
+    }
+
+    private static boolean isWhitespace(final char ch) {
+        return ch <= ' ' || Character.isWhitespace(ch) || Character.isSpaceChar(ch);
+    }
 }
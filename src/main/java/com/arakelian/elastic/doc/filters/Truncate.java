@@ -36,4 +36,15 @@ public abstract class Truncate extends AbstractCharFilter {
     }
 
     public abstract int getLength();
+
+    @Override
+    public boolean rewrite(final StringBuilder token) {
+        final int length = getLength();
+        if (length < 0) {
+            token.setLength(0);
+        } else if (token.length() > length) {
+            token.setLength(length);
+        }
+        return true;
+    }
 }
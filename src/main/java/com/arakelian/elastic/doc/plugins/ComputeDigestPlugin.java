@@ -170,6 +170,12 @@ public class ComputeDigestPlugin implements ElasticDocBuilderPlugin {
         return name;
     }
 
+    @Override
+    public boolean isSourceRequired() {
+        // only the Elastic document is read
+        return false;
+    }
+
     protected void traverse(
             final JsonNode node,
             final Predicate<String> fieldPredicate,
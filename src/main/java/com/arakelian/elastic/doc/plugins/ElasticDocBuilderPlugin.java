@@ -67,6 +67,18 @@ public interface ElasticDocBuilderPlugin {
 
     public String getName();
 
+    /**
+     * Returns true if this plugin reads the source document that is passed to
+     * {@link #before(JsonNode, ElasticDoc)} and {@link #after(JsonNode, ElasticDoc)}. When no
+     * plugin requires the source document, the builder may pass a tree that contains only the
+     * values read by the configured selectors.
+     *
+     * @return true if this plugin reads the source document
+     */
+    public default boolean isSourceRequired() {
+        return true;
+    }
+
     /**
      * Invoke after value is record into {@link ElasticDoc} being built.
      *
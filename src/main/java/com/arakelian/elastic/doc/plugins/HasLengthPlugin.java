@@ -175,6 +175,12 @@ public class HasLengthPlugin implements ElasticDocBuilderPlugin {
         return name;
     }
 
+    @Override
+    public boolean isSourceRequired() {
+        // only the Elastic document is read
+        return false;
+    }
+
     private boolean isLengthy(final Object o) {
         if (o instanceof CharSequence) {
             final CharSequence csq = (CharSequence) o;
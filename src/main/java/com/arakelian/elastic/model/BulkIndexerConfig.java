@@ -21,6 +21,8 @@ import java.util.concurrent.TimeUnit;
 
 import org.immutables.value.Value;
 
+import com.arakelian.core.feature.Nullable;
+import com.arakelian.elastic.bulk.MemoryBudget;
 import com.arakelian.elastic.bulk.event.IndexerListener;
 import com.arakelian.elastic.bulk.event.NullIndexerListener;
 import com.arakelian.elastic.utils.ElasticClientUtils;
@@ -41,6 +43,18 @@ public abstract class BulkIndexerConfig {
         Preconditions
                 .checkState(getMaxBulkOperationBytes() > 0, "maxBulkOperationBytes must be greater than 0");
         Preconditions.checkState(getQueueSize() > 0, "queueSize must be greater than 0");
+        Preconditions.checkState(getMaxInFlightRequests() > 0, "maxInFlightRequests must be greater than 0");
+        Preconditions.checkState(getPendingStripes() > 0, "pendingStripes must be greater than 0");
+        Preconditions.checkState(getLanes() >= 0, "lanes must be greater than or equal to 0");
+        Preconditions.checkState(
+                getMinBulkOperationBytes() > 0,
+                "minBulkOperationBytes must be greater than 0");
+        Preconditions.checkState(
+                getTargetBulkLatencyMillis() > 0,
+                "targetBulkLatencyMillis must be greater than 0");
+        Preconditions.checkState(
+                getMemoryBudgetTimeoutMillis() >= 0,
+                "memoryBudgetTimeoutMillis must be greater than or equal to 0");
     }
 
     /**
@@ -54,6 +68,23 @@ public abstract class BulkIndexerConfig {
         return 1000;
     }
 
+    /**
+     * Returns true if an INDEX or DELETE of a document that is already pending (by index name and
+     * id) should replace the pending INDEX or DELETE, rather than being sent separately. When both
+     * operations have versions, the operation with the higher version is kept.
+     *
+     * Only operations that have not yet been flushed, and that were added to the same stripe (see
+     * {@link #getPendingStripes()}), can be collapsed. Collapsed operations are not sent to Elastic;
+     * they are reported to {@link IndexerListener#onCollapsed} instead of succeeding or failing,
+     * and are counted in {@link BulkIndexerStats#getCollapsed()}.
+     *
+     * @return true if duplicate INDEX or DELETE operations should be collapsed
+     */
+    @Value.Default
+    public boolean isCollapseDuplicates() {
+        return false;
+    }
+
     /**
      * Returns the default strategy for determining when to stop retrying network requests to
      * Elastic.
@@ -79,6 +110,24 @@ public abstract class BulkIndexerConfig {
         return WaitStrategies.exponentialWait(30, TimeUnit.SECONDS);
     }
 
+    /**
+     * Returns the number of lanes that bulk operations are partitioned into, by a hash of index name
+     * and document id. Batches within a lane are sent serially, while lanes are sent in parallel
+     * (up to {@link #getMaximumThreads()}), so that operations on the same document are applied in
+     * the order they were added. If this is zero, lanes are not used, and batches are sent in any
+     * order.
+     *
+     * When lanes are used, {@link #getPendingStripes()} is ignored. Partial retries are sent in the
+     * same lane as the batch they came from, and the lane is held until they have been retried, so
+     * that a retried operation is never applied after a later operation on the same document.
+     *
+     * @return number of lanes that bulk operations are partitioned into
+     */
+    @Value.Default
+    public int getLanes() {
+        return 0;
+    }
+
     @Value.Default
     @Value.Auxiliary
     public IndexerListener getListener() {
@@ -106,13 +155,42 @@ public abstract class BulkIndexerConfig {
         return Integer.MAX_VALUE;
     }
 
+    /**
+     * Returns the smallest size of a bulk operation (in bytes) when adaptive batching is enabled.
+     * This is also the amount by which the batch size grows while bulk latency is below target.
+     *
+     * @return smallest size of a bulk operation when adaptive batching is enabled
+     * @see #isAdaptiveBatching()
+     */
+    @Value.Default
+    public int getMinBulkOperationBytes() {
+        return 64 * 1024; // 64KB
+    }
+
     @Value.Default
     public int getMaximumThreads() {
         return 2;
     }
 
     /**
-     * Returns the fixed number of times to perform partial retries.
+     * Returns the maximum number of bulk requests that may be in-flight at once, when the bulk
+     * indexer sends requests with an {@link com.arakelian.elastic.AsyncElasticClient}. Batches that
+     * are waiting for their lane count towards this limit. Once the limit is reached, callers block
+     * or are rejected, according to {@link #isBlockingQueue()}.
+     *
+     * This is not used when requests are sent by batch threads, which are limited by
+     * {@link #getMaximumThreads()} instead.
+     *
+     * @return maximum number of bulk requests that may be in-flight at once
+     */
+    @Value.Default
+    public int getMaxInFlightRequests() {
+        return 64;
+    }
+
+    /**
+     * Returns the fixed number of times to perform partial retries. The limit applies to each
+     * operation, even when it is merged into a batch with operations on other attempts.
      *
      * @return the fixed number of times to perform partial retries.
      */
@@ -122,15 +200,65 @@ public abstract class BulkIndexerConfig {
     }
 
     /**
-     * Returns the fixed delay before attempting partial retries.
+     * Returns a memory budget that limits the total number of bytes in bulk operations that are
+     * pending, queued, in-flight or waiting to be retried, or null if there is no such limit. The
+     * same budget may be configured for several bulk indexers (e.g. every indexer of a
+     * {@link com.arakelian.elastic.bulk.BulkIngester}) to bound their combined footprint.
+     *
+     * When the budget is exhausted, callers block or are rejected, according to
+     * {@link #isBlockingQueue()}. Pending operations hold their bytes until they are flushed, so a
+     * caller that would block first flushes the pending operations of its own indexer, and then
+     * waits up to {@link #getMemoryBudgetTimeoutMillis()} before it is rejected. Automatic flushes
+     * (see {@link #getAutomaticFlushMillis()}) should be enabled when a budget is shared, since the
+     * bytes may be held by other indexers.
+     *
+     * @return a memory budget, or null if there is no limit
+     */
+    @Nullable
+    @Value.Auxiliary
+    public abstract MemoryBudget getMemoryBudget();
+
+    /**
+     * Returns the maximum number of milliseconds that a blocking caller waits for bytes to be
+     * released to the memory budget, before the operation is rejected.
+     *
+     * @return maximum number of milliseconds to wait for the memory budget
+     * @see #getMemoryBudget()
+     */
+    @Value.Default
+    public long getMemoryBudgetTimeoutMillis() {
+        return 60_000;
+    }
+
+    /**
+     * Returns the base delay before attempting partial retries. The delay doubles with each
+     * attempt (up to 32x), and is jittered so that retries are spread out and can be merged with
+     * other pending retries. Retries wait on a timer, and do not occupy a batch thread. When lanes
+     * are used (see {@link #getLanes()}), retries are only merged with retries from the same batch.
      *
-     * @return the fixed delay before attempting partial retries.
+     * @return the base delay before attempting partial retries.
      */
     @Value.Default
     public int getPartialRetryDelayMillis() {
         return 5000;
     }
 
+    /**
+     * Returns the number of stripes that pending bulk operations are divided into. Producer threads
+     * are assigned to a stripe, and each stripe is locked and flushed independently, so that
+     * enqueue throughput scales with the number of producers.
+     *
+     * Operations added by a single thread are always flushed in order. A value of 1 means that all
+     * producers share a single buffer. A forced flush sends the pending operations of every stripe,
+     * in batches that respect the batch size thresholds.
+     *
+     * @return number of stripes that pending bulk operations are divided into
+     */
+    @Value.Default
+    public int getPendingStripes() {
+        return 1;
+    }
+
     @Value.Default
     public int getQueueSize() {
         // if each flush is 1MB in size, this represents approximately 100MB of RAM
@@ -160,6 +288,52 @@ public abstract class BulkIndexerConfig {
         return TimeUnit.MINUTES;
     }
 
+    /**
+     * Returns the bulk request latency that adaptive batching tries to stay within.
+     *
+     * @return bulk request latency that adaptive batching tries to stay within
+     * @see #isAdaptiveBatching()
+     */
+    @Value.Default
+    public int getTargetBulkLatencyMillis() {
+        return 1000;
+    }
+
+    /**
+     * Returns true if batch size and the number of concurrent bulk requests should adapt to
+     * observed bulk latency and rejections.
+     *
+     * When enabled, the batch size starts at {@link #getMinBulkOperationBytes()} and grows towards
+     * {@link #getMaxBulkOperationBytes()} while bulk latency stays below
+     * {@link #getTargetBulkLatencyMillis()}; then concurrency grows towards
+     * {@link #getMaximumThreads()}, or towards {@link #getMaxInFlightRequests()} when requests are
+     * sent asynchronously. Both are cut back when Elastic responds with a retryable status (e.g. 429
+     * or 503), or rejects individual operations.
+     *
+     * @return true if batch size and concurrency should adapt to observed latency and rejections
+     */
+    @Value.Default
+    public boolean isAdaptiveBatching() {
+        return false;
+    }
+
+    /**
+     * Returns true if bulk requests and responses should be processed on virtual threads, one per
+     * task, rather than by thread pools.
+     *
+     * When enabled, {@link #getMaximumThreads()} is the number of bulk requests (and responses) that
+     * may be processed concurrently, enforced by a semaphore, and {@link #getQueueSize()} is the
+     * number of additional tasks that may wait. {@link #isBlockingQueue()} applies as usual. Virtual
+     * threads require Java 21 or later; on earlier releases, a warning is logged and thread pools
+     * are used, as if this were false.
+     *
+     * @return true if bulk requests and responses should be processed on virtual threads
+     */
+    @Value.Default
+    public boolean isVirtualThreads() {
+        return false;
+    }
+
     /**
      * Returns true if caller should block when indexer queue is full.
      *
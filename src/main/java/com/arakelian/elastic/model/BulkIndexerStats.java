@@ -19,10 +19,68 @@ package com.arakelian.elastic.model;
 
 import org.immutables.value.Value;
 
+import com.arakelian.core.feature.Nullable;
+
 @Value.Immutable(copy = false)
 public interface BulkIndexerStats {
+    /**
+     * Returns the number of bytes that a batch may contain before it is flushed; this changes over
+     * time when adaptive batching is enabled.
+     *
+     * @return number of bytes that a batch may contain before it is flushed
+     */
+    @Value.Default
+    public default int getBatchBytes() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of submitted documents that were never sent to Elastic, because they were
+     * collapsed into another pending operation on the same document.
+     *
+     * @return number of submitted documents that were collapsed
+     * @see BulkIndexerConfig#isCollapseDuplicates()
+     */
+    @Value.Default
+    public default long getCollapsed() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of bulk requests that may be sent concurrently; this changes over time
+     * when adaptive batching is enabled.
+     *
+     * @return number of bulk requests that may be sent concurrently
+     */
+    @Value.Default
+    public default int getConcurrency() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of submitted documents that are expected to succeed or fail. Collapsed
+     * documents are never sent, and retries are further attempts of the same documents, so neither
+     * is counted.
+     *
+     * @return number of submitted documents that are expected to succeed or fail
+     */
+    @Value.Derived
+    public default long getExpected() {
+        return getSubmitted() - getCollapsed();
+    }
+
     public long getFailed();
 
+    /**
+     * Returns the statistics of the memory budget used by the indexer, which may be shared with
+     * other indexers, or null if no memory budget is configured.
+     *
+     * @return statistics of the memory budget, or null
+     * @see BulkIndexerConfig#getMemoryBudget()
+     */
+    @Nullable
+    public MemoryBudgetStats getMemoryBudget();
+
     public long getRetries();
 
     public long getSubmitted();
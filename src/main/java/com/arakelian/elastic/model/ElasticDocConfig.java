@@ -137,6 +137,19 @@ public abstract class ElasticDocConfig {
         return ImmutableList.of();
     }
 
+    /**
+     * Returns the source paths compiled into a plan that reads all of them in a single traversal
+     * of a document.
+     *
+     * @return the source paths compiled into a plan that reads all of them in a single traversal
+     */
+    @JsonIgnore
+    @Value.Lazy
+    @Value.Auxiliary
+    public JsonSelectorPlan getSelectorPlan() {
+        return JsonSelectorPlan.compile(getSourcePathsMapping());
+    }
+
     @JsonIgnore
     @Value.Derived
     public Set<JsonSelector> getSourcePaths() {
@@ -41,6 +41,7 @@ import com.fasterxml.jackson.annotation.JsonValue;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -51,10 +52,11 @@ import com.google.common.collect.Sets;
 @JsonDeserialize(builder = ImmutableField.Builder.class)
 @JsonPropertyOrder({ "name", "aliases", "description", "type", "scaling_factor", "format", "enabled", "store",
         "index", "index_options", "norms", "doc_values", "additional_targets", "ignore_global_token_filters",
-        "sort_tokens", "token_filters", "fielddata", "tree", "precision", "tree_levels", "strategy",
-        "orientation", "points_only", "ignore_z_value", "ignore_above", "ignore_malformed",
-        "position_increment_gap", "eager_global_ordinals", "include_in_all", "copy_to", "normalizer",
-        "analyzer", "search_analyzer", "include_plugins", "exclude_plugins" })
+        "sort_tokens", "token_filters", "token_cache_size", "token_cache_weight", "fielddata", "tree",
+        "precision", "tree_levels", "strategy", "orientation", "points_only", "ignore_z_value",
+        "ignore_above", "ignore_malformed", "position_increment_gap", "eager_global_ordinals",
+        "include_in_all", "copy_to", "normalizer", "analyzer", "search_analyzer", "include_plugins",
+        "exclude_plugins" })
 public abstract class Field implements Serializable {
     // see: https://www.elastic.co/guide/en/elasticsearch/reference/current/index-options.html
     public enum IndexOptions {
@@ -191,6 +193,21 @@ public abstract class Field implements Serializable {
         return getName().equals(another.getName());
     }
 
+    @Value.Check
+    protected void checkTokenCache() {
+        final Integer cacheSize = getTokenCacheSize();
+        final Long cacheWeight = getTokenCacheWeight();
+        Preconditions.checkState(
+                cacheSize == null || cacheWeight == null,
+                "Field \"" + getName() + "\" cannot specify both token cache size and weight");
+        Preconditions.checkState(
+                cacheSize == null || cacheSize.intValue() > 0,
+                "Field \"" + getName() + "\" token cache size must be greater than 0");
+        Preconditions.checkState(
+                cacheWeight == null || cacheWeight.longValue() > 0,
+                "Field \"" + getName() + "\" token cache weight must be greater than 0");
+    }
+
     /**
      * Returns a list of fields that should be targeted by
      * {@link com.arakelian.elastic.doc.ElasticDocBuilder} whenever this field is targeted.
@@ -460,6 +477,31 @@ public abstract class Field implements Serializable {
     @JsonView(Elastic.class)
     public abstract TermVector getTermVector();
 
+    /**
+     * Returns the maximum number of values whose tokens are cached, so that repeated values are
+     * not run through the token filters again. Caching is disabled by default.
+     *
+     * @return the maximum number of values whose tokens are cached, or null
+     */
+    @Nullable
+    @Value.Auxiliary
+    @JsonProperty("token_cache_size")
+    @JsonView(Enhancement.class)
+    public abstract Integer getTokenCacheSize();
+
+    /**
+     * Returns the maximum total length, in characters, of the values and tokens that are cached.
+     * This is an alternative to {@link #getTokenCacheSize()} for fields whose values vary widely in
+     * length. Caching is disabled by default.
+     *
+     * @return the maximum total length of the values and tokens that are cached, or null
+     */
+    @Nullable
+    @Value.Auxiliary
+    @JsonProperty("token_cache_weight")
+    @JsonView(Enhancement.class)
+    public abstract Long getTokenCacheWeight();
+
     @Value.Default
     @Value.Auxiliary
     @JsonView(Enhancement.class)
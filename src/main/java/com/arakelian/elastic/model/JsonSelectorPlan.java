@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Ints;
+
+/**
+ * Reads the values of many selectors from a document in a single traversal.
+ *
+ * The paths of {@link JsonSelector.Type#PATH} selectors are compiled into a trie, so that
+ * ancestors which are shared by several paths (e.g. <code>address/street</code> and
+ * <code>address/city</code>) are visited once, and arrays along the way are unwrapped once. The
+ * value read for each selector is identical to {@link JsonSelector#read(JsonNode)}. Other selector
+ * types are not part of the trie, and must be read by the caller.
+ */
+public final class JsonSelectorPlan {
+    private static final int[] NO_SELECTORS = new int[0];
+
+    private static final class Node {
+        /** Child nodes, keyed by property name **/
+        private final Map<String, Node> children = Maps.newLinkedHashMap();
+
+        /** Index of selectors whose path ends at this node **/
+        private int[] selectors = NO_SELECTORS;
+    }
+
+    public static JsonSelectorPlan compile(final Multimap<JsonSelector, Field> targets) {
+        Preconditions.checkArgument(targets != null, "targets must be non-null");
+        return new JsonSelectorPlan(targets);
+    }
+
+    private final List<JsonSelector> selectors;
+
+    private final List<Collection<Field>> targets;
+
+    private final Node root = new Node();
+
+    private JsonSelectorPlan(final Multimap<JsonSelector, Field> targets) {
+        final ImmutableList.Builder<JsonSelector> selectors = ImmutableList.builder();
+        final ImmutableList.Builder<Collection<Field>> fields = ImmutableList.builder();
+
+        int index = 0;
+        for (final JsonSelector selector : targets.keySet()) {
+            selectors.add(selector);
+            fields.add(ImmutableList.copyOf(targets.get(selector)));
+
+            if (selector.getType() == JsonSelector.Type.PATH) {
+                Node node = root;
+                for (final String name : selector.getPath()) {
+                    node = node.children.computeIfAbsent(name, key -> new Node());
+                }
+                node.selectors = Ints.concat(node.selectors, new int[] { index });
+            }
+            index++;
+        }
+
+        this.selectors = selectors.build();
+        this.targets = fields.build();
+    }
+
+    private void collect(final JsonNode[] values, final int index, final JsonNode node) {
+        // same unwrapping as JsonNodeUtils.ReadCollector
+        if (node.isArray()) {
+            for (int i = 0, size = node.size(); i < size; i++) {
+                collect(values, index, node.get(i));
+            }
+            return;
+        }
+
+        if (node.isObject()) {
+            for (final JsonNode child : node) {
+                collect(values, index, child);
+            }
+            return;
+        }
+
+        final JsonNode value = values[index];
+        if (value == null) {
+            values[index] = node;
+        } else if (value instanceof ArrayNode) {
+            ((ArrayNode) value).add(node);
+        } else {
+            values[index] = JsonNodeFactory.instance.arrayNode().add(value).add(node);
+        }
+    }
+
+    /**
+     * Returns the selectors of this plan, in the order they were compiled.
+     *
+     * @return the selectors of this plan
+     */
+    public List<JsonSelector> getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * Returns the fields targeted by the selector at the given index.
+     *
+     * @param index
+     *            selector index
+     * @return the fields targeted by the selector at the given index
+     */
+    public Collection<Field> getTargets(final int index) {
+        return targets.get(index);
+    }
+
+    /**
+     * Reads the value of every path selector from the given document. The returned array is
+     * indexed like {@link #getSelectors()}; the value of a path selector that does not match is
+     * {@link MissingNode}, and the value of any other selector is null.
+     *
+     * @param document
+     *            document root
+     * @return the value of every path selector
+     */
+    public JsonNode[] read(final JsonNode document) {
+        final JsonNode[] values = new JsonNode[selectors.size()];
+        traverse(document, root, values);
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null && selectors.get(i).getType() == JsonSelector.Type.PATH) {
+                values[i] = MissingNode.getInstance();
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "JsonSelectorPlan" + selectors;
+    }
+
+    private void traverse(final JsonNode node, final Node state, final JsonNode[] values) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return;
+        }
+
+        if (node.isArray()) {
+            for (int i = 0, size = node.size(); i < size; i++) {
+                traverse(node.get(i), state, values);
+            }
+            return;
+        }
+
+        for (final int index : state.selectors) {
+            collect(values, index, node);
+        }
+
+        if (node.isObject()) {
+            for (final Map.Entry<String, Node> child : state.children.entrySet()) {
+                traverse(node.get(child.getKey()), child.getValue(), values);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.arakelian.core.feature.Nullable;
 import com.arakelian.elastic.Views.Elastic;
 import com.arakelian.elastic.Views.Elastic.Version5;
 import com.arakelian.elastic.Views.Enhancement;
+import com.arakelian.elastic.doc.filters.CachingTokenFilter;
 import com.arakelian.elastic.doc.filters.TokenChain;
 import com.arakelian.elastic.doc.filters.TokenFilter;
 import com.arakelian.jackson.databind.ExcludeSerializer;
@@ -223,16 +224,25 @@ public interface Mapping extends Serializable {
                     .filter(predicate) //
                     .collect(Collectors.toList());
 
-            final TokenFilter filter;
+            final List<TokenFilter> combined;
             if (before.size() == 0 && after.size() == 0) {
                 // optimization: no global filters
-                filter = TokenChain.link(filters);
+                combined = filters;
             } else {
                 // combine filters
-                filter = TokenChain.link(Lists.newArrayList(Iterables.concat(before, filters, after)));
+                combined = Lists.newArrayList(Iterables.concat(before, filters, after));
             }
 
-            tokenFilters.put(name, filter);
+            final TokenFilter filter = TokenChain.link(combined);
+
+            // optionally remember the tokens of repeated values
+            final Integer cacheSize = field.getTokenCacheSize();
+            final Long cacheWeight = field.getTokenCacheWeight();
+            if (combined.size() != 0 && (cacheSize != null || cacheWeight != null)) {
+                tokenFilters.put(name, new CachingTokenFilter(filter, cacheSize, cacheWeight));
+            } else {
+                tokenFilters.put(name, filter);
+            }
         }
         return tokenFilters.build();
     }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.model;
+
+import org.immutables.value.Value;
+
+@Value.Immutable(copy = false)
+public interface MemoryBudgetStats {
+    /**
+     * Returns the number of times a caller had to wait for bytes to be released.
+     *
+     * @return number of times a caller had to wait for bytes to be released
+     */
+    public long getBlocked();
+
+    /**
+     * Returns the maximum number of bytes that may be in use.
+     *
+     * @return maximum number of bytes that may be in use
+     */
+    public long getCapacity();
+
+    /**
+     * Returns the largest number of bytes that were in use at once.
+     *
+     * @return largest number of bytes that were in use at once
+     */
+    public long getPeakBytes();
+
+    /**
+     * Returns the number of times a caller was rejected because the budget was exhausted.
+     *
+     * @return number of times a caller was rejected because the budget was exhausted
+     */
+    public long getRejected();
+
+    public long getUsedBytes();
+
+    /**
+     * Returns the fraction of the budget that is in use, which may exceed 1 briefly when an
+     * operation that is larger than the budget is admitted.
+     *
+     * @return fraction of the budget that is in use
+     */
+    @Value.Derived
+    public default double getUtilization() {
+        return (double) getUsedBytes() / getCapacity();
+    }
+}
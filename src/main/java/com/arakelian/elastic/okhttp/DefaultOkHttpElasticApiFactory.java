@@ -18,13 +18,11 @@
 package com.arakelian.elastic.okhttp;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
+import com.arakelian.elastic.bulk.BulkPayload;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 
 import okhttp3.MediaType;
@@ -44,6 +42,14 @@ public class DefaultOkHttpElasticApiFactory implements OkHttpElasticApiFactory {
             @Override
             public RequestBody convert(final CharSequence value) {
                 return new RequestBody() {
+                    @Override
+                    public long contentLength() {
+                        if (value instanceof BulkPayload) {
+                            return ((BulkPayload) value).size();
+                        }
+                        return -1;
+                    }
+
                     @Override
                     public MediaType contentType() {
                         return null;
@@ -55,17 +61,13 @@ public class DefaultOkHttpElasticApiFactory implements OkHttpElasticApiFactory {
                             return;
                         }
 
-                        try (OutputStreamWriter writer = new OutputStreamWriter(new OutputStream() {
-                            @Override
-                            public void write(int b) throws IOException {
-                                sink.writeByte(b);
-                            }
-                        }, Charsets.UTF_8)) {
-                            for (int i = 0; i < value.length(); i++) {
-                                final char ch = value.charAt(i);
-                                writer.write(ch);
-                            }
+                        if (value instanceof BulkPayload) {
+                            // already UTF-8 encoded; stream one write per operation
+                            ((BulkPayload) value).writeTo(sink);
+                            return;
                         }
+
+                        sink.writeUtf8(value.toString());
                     }
                 };
             }
@@ -19,6 +19,7 @@ package com.arakelian.elastic.okhttp;
 
 import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -26,6 +27,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.arakelian.elastic.AsyncElasticClient;
 import com.arakelian.elastic.ElasticClient;
 import com.arakelian.elastic.ElasticException;
 import com.arakelian.elastic.ElasticHttpException;
@@ -63,6 +65,213 @@ import retrofit2.Callback;
 import retrofit2.Response;
 
 public class OkHttpElasticClient implements ElasticClient {
+    /**
+     * Non-blocking view of this client, which sends requests with {@link Call#enqueue(Callback)}.
+     *
+     * Note that requests are dispatched by the OkHttp {@link okhttp3.Dispatcher}, which limits the
+     * number of concurrent requests per host (5 by default); the dispatcher of the
+     * {@link okhttp3.OkHttpClient} should be configured accordingly.
+     */
+    private class AsyncClient implements AsyncElasticClient {
+        @Override
+        public CompletableFuture<About> about() {
+            return enqueue(() -> {
+                return new DelegatingCall<>(About.class, getApi().about());
+            });
+        }
+
+        @Override
+        public CompletableFuture<BulkResponse> bulk(final CharSequence operations, final Boolean pretty) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(BulkResponse.class, getVersionedApi().bulk(operations, pretty));
+            });
+        }
+
+        @Override
+        public CompletableFuture<ClusterHealth> clusterHealth() {
+            return enqueue(() -> {
+                return new DelegatingCall<>(ClusterHealth.class, getVersionedApi().clusterHealth());
+            });
+        }
+
+        @Override
+        public CompletableFuture<ClusterHealth> clusterHealth(
+                final Status waitForStatus,
+                final String timeout) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(ClusterHealth.class,
+                        getVersionedApi().clusterHealth(waitForStatus, timeout));
+            });
+        }
+
+        @Override
+        public CompletableFuture<ClusterHealth> clusterHealthForIndex(
+                final String names,
+                final Status waitForStatus,
+                final String timeout) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(ClusterHealth.class,
+                        getVersionedApi().clusterHealthForIndex(names, waitForStatus, timeout));
+            });
+        }
+
+        @Override
+        public CompletableFuture<IndexCreated> createIndex(final String name, final Index index) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(IndexCreated.class, getVersionedApi().createIndex(name, index));
+            });
+        }
+
+        @Override
+        public CompletableFuture<IndexDeleted> deleteAllIndexes() {
+            return enqueue(() -> {
+                return new DelegatingCall<>(IndexDeleted.class, getVersionedApi().deleteAllIndexes());
+            });
+        }
+
+        @Override
+        public CompletableFuture<DeletedDocument> deleteDocument(
+                final String name,
+                final String type,
+                final String id) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(DeletedDocument.class,
+                        getVersionedApi().deleteDocument(name, type, id));
+            });
+        }
+
+        @Override
+        public CompletableFuture<DeletedDocument> deleteDocument(
+                final String name,
+                final String type,
+                final String id,
+                final long epochMillisUtc) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(DeletedDocument.class,
+                        getVersionedApi().deleteDocument(name, type, id, epochMillisUtc));
+            });
+        }
+
+        @Override
+        public CompletableFuture<IndexDeleted> deleteIndex(final String names) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(IndexDeleted.class, getVersionedApi().deleteIndex(names));
+            });
+        }
+
+        @Override
+        public CompletableFuture<Document> getDocument(
+                final String name,
+                final String type,
+                final String id,
+                final String sourceFields) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(Document.class,
+                        getVersionedApi().getDocument(name, type, id, sourceFields));
+            });
+        }
+
+        @Override
+        public CompletableFuture<Documents> getDocuments(final Mget mget) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(Documents.class, getVersionedApi().getDocuments(mget));
+            });
+        }
+
+        @Override
+        public CompletableFuture<IndexedDocument> indexDocument(
+                final String name,
+                final String type,
+                final String id,
+                final CharSequence document) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(IndexedDocument.class,
+                        getVersionedApi().indexDocument(name, type, id, document));
+            });
+        }
+
+        @Override
+        public CompletableFuture<IndexedDocument> indexDocument(
+                final String name,
+                final String type,
+                final String id,
+                final CharSequence document,
+                final long epochMillisUtc) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(IndexedDocument.class,
+                        getVersionedApi().indexDocument(name, type, id, document, epochMillisUtc));
+            });
+        }
+
+        @Override
+        public CompletableFuture<Boolean> indexExists(final String name) {
+            final CompletableFuture<Void> future = enqueue(() -> {
+                return new DelegatingCall<>(Void.class, getVersionedApi().indexExists(name));
+            });
+            return future.handle((response, t) -> {
+                if (t == null) {
+                    return Boolean.TRUE;
+                }
+                final Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                if (cause instanceof ElasticNotFoundException) {
+                    // Elastic returns 404 if index not found
+                    return Boolean.FALSE;
+                }
+                throw t instanceof CompletionException ? (CompletionException) t
+                        : new CompletionException(t);
+            });
+        }
+
+        @Override
+        public CompletableFuture<Nodes> nodes() {
+            return enqueue(() -> {
+                return new DelegatingCall<>(Nodes.class, getVersionedApi().nodes());
+            });
+        }
+
+        @Override
+        public CompletableFuture<Refresh> refreshAllIndexes() {
+            return enqueue(() -> {
+                return new DelegatingCall<>(Refresh.class, getVersionedApi().refreshAllIndexes());
+            });
+        }
+
+        @Override
+        public CompletableFuture<Refresh> refreshIndex(final String names) {
+            return enqueue(() -> {
+                return new DelegatingCall<>(Refresh.class, getVersionedApi().refreshIndex(names));
+            });
+        }
+
+        @Override
+        public CompletableFuture<SearchResponse> search(final String name, final Search search) {
+            final ObjectMapper mapper;
+            final CharSequence query;
+            try {
+                mapper = getVersionedObjectMapper();
+                query = toQuery(mapper, search);
+            } catch (final RuntimeException e) {
+                final CompletableFuture<SearchResponse> failed = new CompletableFuture<>();
+                failed.completeExceptionally(wrap(e));
+                return failed;
+            }
+
+            return enqueue(() -> {
+                return new DelegatingCall<>(SearchResponse.class,
+                        getVersionedApi().search(
+                                name,
+                                search.getPreference(),
+                                search.getScroll(),
+                                search.getSearchType(),
+                                search.isRequestCache(),
+                                query));
+            }).thenApply(response -> {
+                response.getHits().setObjectMapper(mapper);
+                return response;
+            });
+        }
+    }
+
     private class DelegatingCall<T> implements Call<T> {
         private final Class<T> clazz;
         private final Call<T> delegate;
@@ -115,6 +324,42 @@ public class OkHttpElasticClient implements ElasticClient {
             return delegate.isCanceled();
         }
 
+        /**
+         * Sends the request asynchronously, and returns a future that completes when the response
+         * is received. Cancelling the future cancels the request.
+         *
+         * @return future that completes with the response body, or completes exceptionally with an
+         *         {@link ElasticException}
+         */
+        public CompletableFuture<T> toFuture() {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            delegate.enqueue(new Callback<T>() {
+                @Override
+                public void onFailure(final Call<T> call, final Throwable t) {
+                    future.completeExceptionally(wrap(t));
+                }
+
+                @Override
+                public void onResponse(final Call<T> call, final Response<T> response) {
+                    if (response.isSuccessful()) {
+                        future.complete(response.body());
+                        return;
+                    }
+                    try {
+                        future.complete(failure(response));
+                    } catch (final ElasticException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+            future.whenComplete((result, t) -> {
+                if (future.isCancelled()) {
+                    delegate.cancel();
+                }
+            });
+            return future;
+        }
+
         @Override
         public boolean isExecuted() {
             return delegate.isExecuted();
@@ -149,6 +394,9 @@ public class OkHttpElasticClient implements ElasticClient {
     /** Elastic version, if known **/
     private VersionComponents version;
 
+    /** Non-blocking view of this client **/
+    private final AsyncElasticClient async = new AsyncClient();
+
     /** Version-specific <code>ObjectMapper</code> **/
     private ObjectMapper versionMapper;
 
@@ -263,6 +511,28 @@ public class OkHttpElasticClient implements ElasticClient {
         });
     }
 
+    /**
+     * Returns a non-blocking view of this client, which shares its configuration and Elastic
+     * version.
+     *
+     * @return a non-blocking view of this client
+     */
+    public AsyncElasticClient async() {
+        return async;
+    }
+
+    protected <T> CompletableFuture<T> enqueue(final Callable<DelegatingCall<T>> request) {
+        final DelegatingCall<T> call;
+        try {
+            call = request.call();
+        } catch (final Exception e) {
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(wrap(e));
+            return failed;
+        }
+        return call.toFuture();
+    }
+
     protected <T> T execute(final Callable<DelegatingCall<T>> request) throws ElasticException {
         try {
             final DelegatingCall<T> call = request.call();
@@ -406,10 +676,7 @@ public class OkHttpElasticClient implements ElasticClient {
     public SearchResponse search(final String name, final Search search) {
         final ObjectMapper mapper = getVersionedObjectMapper();
 
-        final CharSequence query = Jackson.of(mapper) //
-                .toCharSequence(true, writer -> {
-                    new WriteSearchVisitor(writer, version).writeSearch(search);
-                });
+        final CharSequence query = toQuery(mapper, search);
 
         final SearchResponse response = execute(() -> {
             return new DelegatingCall<>(SearchResponse.class,
@@ -425,4 +692,15 @@ public class OkHttpElasticClient implements ElasticClient {
         response.getHits().setObjectMapper(mapper);
         return response;
     }
+
+    private CharSequence toQuery(final ObjectMapper mapper, final Search search) {
+        return Jackson.of(mapper) //
+                .toCharSequence(true, writer -> {
+                    new WriteSearchVisitor(writer, version).writeSearch(search);
+                });
+    }
+
+    private static ElasticException wrap(final Throwable t) {
+        return t instanceof ElasticException ? (ElasticException) t : new ElasticException(t.getMessage(), t);
+    }
 }
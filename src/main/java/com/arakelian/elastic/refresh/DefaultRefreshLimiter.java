@@ -18,8 +18,15 @@
 package com.arakelian.elastic.refresh;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -30,9 +37,13 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.arakelian.core.utils.ExecutorUtils;
 import com.arakelian.core.utils.MoreStringUtils;
 import com.arakelian.elastic.ElasticClient;
+import com.arakelian.elastic.ElasticNotFoundException;
 import com.arakelian.elastic.model.Refresh;
+import com.arakelian.elastic.utils.VirtualThreadExecutor;
+import com.arakelian.retry.RetryException;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.base.MoreObjects;
@@ -79,6 +90,12 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultRefreshLimiter.class);
 
+    /**
+     * Maximum length of comma separated index names in a single coalesced refresh; Elastic limits
+     * the length of the HTTP request line to 4KB by default.
+     **/
+    private static final int MAX_COALESCED_NAMES_LENGTH = 3000;
+
     /** Elastic API **/
     private final ElasticClient elasticClient;
 
@@ -97,6 +114,12 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
     /** We can only be closed once **/
     private final AtomicBoolean closed = new AtomicBoolean();
 
+    /** Indexes waiting for a coalesced refresh **/
+    private final Set<Index> pending = ConcurrentHashMap.newKeySet();
+
+    /** Executor that performs coalesced refreshes at periodic intervals, or null if disabled **/
+    private final ScheduledExecutorService coalesceExecutor;
+
     public DefaultRefreshLimiter(final RefreshLimiterConfig config, final ElasticClient elasticClient) {
         Preconditions.checkArgument(config != null, "config must not be null");
         Preconditions.checkArgument(elasticClient != null, "elasticClient must not be null");
@@ -114,13 +137,40 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
                     return new Index(name, RateLimiter.create(permitsPerSecond));
                 });
 
-        refreshExecutor = MoreExecutors.listeningDecorator(
-                MoreExecutors.getExitingExecutorService( //
-                        new ThreadPoolExecutor( //
-                                config.getCoreThreads(), //
-                                config.getMaximumThreads(), //
-                                10L, TimeUnit.SECONDS, //
-                                new LinkedBlockingQueue<>())));
+        if (VirtualThreadExecutor.isVirtualThreadEnabled(config.isVirtualThreads())) {
+            // refresh queue is unbounded, and threads are daemon
+            refreshExecutor = MoreExecutors.listeningDecorator(
+                    new VirtualThreadExecutor( //
+                            VirtualThreadExecutor.newThreadFactory(getClass().getSimpleName() + "-"), //
+                            config.getMaximumThreads(), //
+                            Integer.MAX_VALUE, //
+                            false));
+        } else {
+            refreshExecutor = MoreExecutors.listeningDecorator(
+                    MoreExecutors.getExitingExecutorService( //
+                            new ThreadPoolExecutor( //
+                                    config.getCoreThreads(), //
+                                    config.getMaximumThreads(), //
+                                    10L, TimeUnit.SECONDS, //
+                                    new LinkedBlockingQueue<>())));
+        }
+
+        // refreshes may be combined into a single request per tick
+        final int coalesceMillis = config.getCoalesceMillis();
+        if (coalesceMillis > 0) {
+            coalesceExecutor = MoreExecutors.getExitingScheduledExecutorService( //
+                    new ScheduledThreadPoolExecutor(1,
+                            ExecutorUtils.newThreadFactory(getClass(), "-coalesce", false)), //
+                    1,
+                    TimeUnit.MINUTES);
+            coalesceExecutor.scheduleWithFixedDelay(
+                    () -> refreshPending(false), //
+                    coalesceMillis, //
+                    coalesceMillis, //
+                    TimeUnit.MILLISECONDS);
+        } else {
+            coalesceExecutor = null;
+        }
     }
 
     /**
@@ -130,10 +180,25 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
     public void close() {
         if (closed.compareAndSet(false, true)) {
             LOGGER.info("Closing {}", this);
+            if (coalesceExecutor != null) {
+                coalesceExecutor.shutdown();
+
+                // indexes waiting for the next tick are refreshed one last time, so that callers
+                // waiting for them are released
+                refreshPending(true);
+            }
             refreshExecutor.shutdown();
         }
     }
 
+    private void completeQuietly(final Index index) {
+        try {
+            complete(index);
+        } catch (final RejectedExecutionException e) {
+            // ignore
+        }
+    }
+
     private void complete(final Index index) {
         index.lock.lock();
         try {
@@ -161,14 +226,6 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
 
             // define callback when completed
             Futures.addCallback(future, new FutureCallback<Refresh>() {
-                private void completeQuietly(final Index index) {
-                    try {
-                        complete(index);
-                    } catch (final RejectedExecutionException e) {
-                        // ignore
-                    }
-                }
-
                 @Override
                 public void onFailure(final Throwable t) {
                     LOGGER.warn("Refresh {} of index \"{}\" failed after {}", id, index.name, timer, t);
@@ -235,6 +292,65 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
         }
     }
 
+    /**
+     * Refreshes a group of Elastic indexes with a single call to the Elastic client API. If Elastic
+     * reports that one of the indexes does not exist, the indexes are refreshed individually so
+     * that the others are still refreshed. Statistics are updated for each index.
+     *
+     * IMPORTANT: This method assumes that the rate limiter of each index has been acquired.
+     *
+     * @param group
+     *            indexes to refresh
+     */
+    private void doRefresh(final List<Index> group) {
+        final Stopwatch timer = Stopwatch.createStarted();
+        final StringBuilder buf = new StringBuilder();
+        for (final Index index : group) {
+            if (buf.length() != 0) {
+                buf.append(',');
+            }
+            buf.append(index.name);
+        }
+        final String names = buf.toString();
+
+        try {
+            config.getRetryer().call(() -> {
+                // we are about to perform refresh, so we can clear the requeue flags
+                for (final Index index : group) {
+                    index.requeue.set(false);
+                    index.getAttempts().incrementAndGet();
+                }
+
+                LOGGER.debug("Refreshing indexes \"{}\"", names);
+                final Refresh response = elasticClient.refreshIndex(names);
+                for (final Index index : group) {
+                    index.getSuccessful().incrementAndGet();
+                }
+                return response;
+            });
+            LOGGER.debug("Refresh of indexes \"{}\" completed successfully after {}", names, timer);
+        } catch (final ExecutionException | RetryException e) {
+            if (group.size() > 1 && e.getCause() instanceof ElasticNotFoundException) {
+                // one of the indexes may have been deleted
+                for (final Index index : group) {
+                    try {
+                        // attempt was already counted for the group
+                        elasticClient.refreshIndex(index.name);
+                        index.getSuccessful().incrementAndGet();
+                    } catch (final IOException | RuntimeException e2) {
+                        LOGGER.warn("Refresh of index \"{}\" failed", index.name, e2);
+                    }
+                }
+            } else {
+                LOGGER.warn("Refresh of indexes \"{}\" failed after {}", names, timer, e);
+            }
+        } finally {
+            for (final Index index : group) {
+                completeQuietly(index);
+            }
+        }
+    }
+
     private ListenableFuture<Refresh> doSubmit(final Index index) {
         try {
             return refreshExecutor.submit(() -> {
@@ -274,7 +390,18 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
         index.lock.lock();
         try {
             if (index.running.compareAndSet(false, true)) {
-                doEnqueue(index);
+                if (coalesceExecutor != null) {
+                    // refreshed with other indexes at next tick
+                    index.getFutures().incrementAndGet();
+                    pending.add(index);
+                    if (closed.get() && pending.remove(index)) {
+                        // closed concurrently, so there will not be another tick
+                        completeQuietly(index);
+                        throw new RejectedExecutionException("Refresh is closed");
+                    }
+                } else {
+                    doEnqueue(index);
+                }
             } else {
                 // if refresh is in progress, request requeue after it completes
                 index.requeue.compareAndSet(false, true);
@@ -293,6 +420,59 @@ public class DefaultRefreshLimiter implements RefreshLimiter {
         return getIndex(name);
     }
 
+    /**
+     * Refreshes all pending indexes whose rate limiter permits a refresh, combining them into as
+     * few requests as possible. Indexes that are not yet permitted remain pending until a later
+     * tick.
+     *
+     * @param drain
+     *            true if all pending indexes should be refreshed without regard to rate limits,
+     *            e.g. during close
+     */
+    private void refreshPending(final boolean drain) {
+        List<Index> group = null;
+        int length = 0;
+        for (final Index index : pending) {
+            if (!drain) {
+                if (!index.rateLimiter.tryAcquire()) {
+                    continue;
+                }
+                index.getAcquires().incrementAndGet();
+            }
+            if (!pending.remove(index)) {
+                // claimed by a concurrent drain
+                continue;
+            }
+
+            if (group != null && length + index.name.length() + 1 > MAX_COALESCED_NAMES_LENGTH) {
+                submitRefresh(group);
+                group = null;
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                length = 0;
+            }
+            group.add(index);
+            length += index.name.length() + 1;
+        }
+
+        if (group != null) {
+            submitRefresh(group);
+        }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void submitRefresh(final List<Index> group) {
+        try {
+            refreshExecutor.submit(() -> doRefresh(group));
+        } catch (final RejectedExecutionException e) {
+            LOGGER.warn("Unable to submit refresh of {} indexes", group.size(), e);
+            for (final Index index : group) {
+                completeQuietly(index);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this) //
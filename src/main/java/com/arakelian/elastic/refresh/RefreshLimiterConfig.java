@@ -32,6 +32,20 @@ import com.google.common.util.concurrent.RateLimiter;
 
 @Value.Immutable(copy = false)
 public abstract class RefreshLimiterConfig {
+    /**
+     * Returns the number of milliseconds between coalesced refreshes. If this is greater than zero,
+     * indexes that are enqueued for refresh are collected, and at each interval, all of the indexes
+     * whose rate limiter permits a refresh are refreshed with a single request to Elastic. If this
+     * is zero, each index is refreshed with its own request as soon as its rate limiter permits.
+     *
+     * @return number of milliseconds between coalesced refreshes, or zero to refresh each index
+     *         separately
+     */
+    @Value.Default
+    public int getCoalesceMillis() {
+        return 0;
+    }
+
     @Value.Default
     public int getCoreThreads() {
         return 2;
@@ -60,4 +74,21 @@ public abstract class RefreshLimiterConfig {
                 .withRetryListener(new RefreshRetryListener()) //
                 .build();
     }
+
+    /**
+     * Returns true if refreshes should run on virtual threads, one per refresh, rather than on a
+     * thread pool. Refreshes spend most of their time waiting for a rate limiter or for Elastic,
+     * which is cheap on a virtual thread.
+     *
+     * When enabled, {@link #getMaximumThreads()} is the number of refreshes that may run
+     * concurrently, enforced by a semaphore, and {@link #getCoreThreads()} is ignored. Virtual
+     * threads require Java 21 or later; on earlier releases, a warning is logged and a thread pool
+     * is used, as if this were false.
+     *
+     * @return true if refreshes should run on virtual threads
+     */
+    @Value.Default
+    public boolean isVirtualThreads() {
+        return false;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.utils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Matches a set of paths against a stream of JSON tokens, and builds a tree that contains only the
+ * values that are reachable by those paths.
+ *
+ * Paths follow the rules of {@link JsonNodeUtils#traverse(JsonNode, java.util.function.Consumer, List)}:
+ * each element of a path names an object property, and arrays are unwrapped wherever they appear.
+ * Reading a path from the tree returned by {@link #read(ObjectMapper, JsonParser)} gives the same
+ * result as reading it from the fully parsed document, but subtrees that are not on any path are
+ * skipped by the parser without creating nodes.
+ */
+public final class JsonPathMatcher {
+    private static final class State {
+        /** Transitions to the next state, keyed by property name **/
+        private final Map<String, State> next = Maps.newHashMap();
+
+        /** True if a path ends at this state, and the entire value should be kept **/
+        private boolean accept;
+    }
+
+    public static JsonPathMatcher compile(final Collection<List<String>> paths) {
+        Preconditions.checkArgument(paths != null, "paths must be non-null");
+
+        final State start = new State();
+        for (final List<String> path : paths) {
+            State state = start;
+            for (final String name : path) {
+                state = state.next.computeIfAbsent(name, key -> new State());
+            }
+            state.accept = true;
+        }
+        return new JsonPathMatcher(start);
+    }
+
+    private final State start;
+
+    private JsonPathMatcher(final State start) {
+        this.start = start;
+    }
+
+    /**
+     * Reads the next value from the given parser, and returns a tree that contains only the values
+     * matched by this matcher.
+     *
+     * @param mapper
+     *            mapper used to create nodes for matched values
+     * @param parser
+     *            JSON parser
+     * @return a tree that contains only matched values, or {@link MissingNode} if there is no
+     *         content
+     * @throws IOException
+     *             if the content cannot be parsed
+     */
+    public JsonNode read(final ObjectMapper mapper, final JsonParser parser) throws IOException {
+        Preconditions.checkArgument(mapper != null, "mapper must be non-null");
+        Preconditions.checkArgument(parser != null, "parser must be non-null");
+
+        if (parser.currentToken() == null && parser.nextToken() == null) {
+            return MissingNode.getInstance();
+        }
+        final JsonNode node = read(mapper, parser, start);
+        return node != null ? node : MissingNode.getInstance();
+    }
+
+    private JsonNode read(final ObjectMapper mapper, final JsonParser parser, final State state)
+            throws IOException {
+        if (state.accept) {
+            // path ends here; keep entire value
+            return mapper.readTree(parser);
+        }
+
+        switch (parser.currentToken()) {
+        case START_OBJECT:
+            final ObjectNode object = mapper.createObjectNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                final State next = state.next.get(name);
+                parser.nextToken();
+                if (next == null) {
+                    // not on any path; no-op for scalar values
+                    parser.skipChildren();
+                    continue;
+                }
+                final JsonNode child = read(mapper, parser, next);
+                if (child != null) {
+                    object.set(name, child);
+                }
+            }
+            return object;
+
+        case START_ARRAY:
+            // arrays are unwrapped when traversed, so elements stay in the same state
+            final ArrayNode array = mapper.createArrayNode();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                final JsonNode child = read(mapper, parser, state);
+                if (child != null) {
+                    array.add(child);
+                }
+            }
+            return array;
+
+        default:
+            // scalar values cannot be traversed any further
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.utils;
+
+import java.util.concurrent.Semaphore;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Semaphore whose number of permits can be changed while permits are held. When the number of
+ * permits is reduced below the number that are held, no permits are available until enough of them
+ * have been released.
+ */
+public class ResizableSemaphore extends Semaphore {
+    private static final long serialVersionUID = 1L;
+
+    /** Number of permits, including those that are held **/
+    private int permits;
+
+    public ResizableSemaphore(final int permits, final boolean fair) {
+        super(permits, fair);
+        Preconditions.checkArgument(permits > 0, "permits must be greater than 0");
+        this.permits = permits;
+    }
+
+    /**
+     * Returns the number of permits, including those that are held.
+     *
+     * @return number of permits, including those that are held
+     */
+    public synchronized int getPermits() {
+        return permits;
+    }
+
+    /**
+     * Changes the number of permits. Permits that are already held are not affected.
+     *
+     * @param permits
+     *            number of permits
+     */
+    public synchronized void setPermits(final int permits) {
+        Preconditions.checkArgument(permits > 0, "permits must be greater than 0");
+        final int delta = permits - this.permits;
+        if (delta > 0) {
+            release(delta);
+        } else if (delta < 0) {
+            reducePermits(-delta);
+        }
+        this.permits = permits;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.utils;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executor that starts a new thread for every task, and bounds concurrency with semaphores rather
+ * than with the size of a thread pool.
+ *
+ * Tasks are started on virtual threads when the JVM supports them (Java 21 or later), and
+ * otherwise on platform daemon threads. A task that is accepted but cannot run yet waits on its own
+ * thread, so that waiting tasks are as cheap as the threads that they are parked on; this is only
+ * worthwhile with virtual threads, so callers should check {@link #isVirtualThreadEnabled(boolean)}
+ * and fall back to a thread pool.
+ *
+ * Like a {@link java.util.concurrent.ThreadPoolExecutor} with a bounded queue, at most
+ * <code>concurrency + queueSize</code> tasks are accepted at once. When that limit is reached, the
+ * task is either run on the calling thread (mirroring
+ * {@link com.arakelian.elastic.bulk.BlockCallerPolicy}), or rejected with a
+ * {@link RejectedExecutionException}.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    /** <code>Thread.ofVirtual()</code>, or null if virtual threads are not supported **/
+    private static final Method OF_VIRTUAL;
+
+    /** <code>Thread.Builder.name(String, long)</code> **/
+    private static final Method BUILDER_NAME;
+
+    /** <code>Thread.Builder.factory()</code> **/
+    private static final Method BUILDER_FACTORY;
+
+    /** <code>Thread.isVirtual()</code> **/
+    private static final Method IS_VIRTUAL;
+
+    /** True once we have warned that virtual threads are not supported **/
+    private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method isVirtual = null;
+        try {
+            // virtual threads are available in Java 21, but we are compiled for an earlier release
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (final ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+            isVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    /**
+     * Returns true if the given thread is a virtual thread.
+     *
+     * @param thread
+     *            thread
+     * @return true if the given thread is a virtual thread
+     */
+    public static boolean isVirtual(final Thread thread) {
+        Preconditions.checkArgument(thread != null, "thread must be non-null");
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return ((Boolean) IS_VIRTUAL.invoke(thread)).booleanValue();
+        } catch (final ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if virtual threads were requested, and the JVM supports them. If they were
+     * requested but are not supported, a warning is logged (once), and callers should use a thread
+     * pool instead, since starting a platform thread per task is far more expensive.
+     *
+     * @param requested
+     *            true if virtual threads were requested by configuration
+     * @return true if tasks should be run on virtual threads
+     */
+    public static boolean isVirtualThreadEnabled(final boolean requested) {
+        if (!requested) {
+            return false;
+        }
+        if (OF_VIRTUAL == null) {
+            if (WARNED.compareAndSet(false, true)) {
+                LOGGER.warn("Virtual threads require Java 21 or later; using thread pools instead");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the JVM supports virtual threads.
+     *
+     * @return true if the JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a thread factory that creates virtual threads if they are supported, and platform
+     * daemon threads otherwise.
+     *
+     * @param prefix
+     *            prefix of thread names
+     * @return a thread factory
+     */
+    public static ThreadFactory newThreadFactory(final String prefix) {
+        if (OF_VIRTUAL != null) {
+            try {
+                final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Unable to create virtual thread factory; using platform threads", e);
+            }
+        }
+
+        return new ThreadFactoryBuilder() //
+                .setNameFormat(prefix + "%d") //
+                .setDaemon(true) //
+                .build();
+    }
+
+    private final ThreadFactory threadFactory;
+
+    /** True if tasks should run on the calling thread when the executor is full **/
+    private final boolean callerRuns;
+
+    /** Limits the number of tasks that are accepted but not yet finished **/
+    private final Semaphore accepted;
+
+    /** Limits the number of tasks that run concurrently **/
+    private final ResizableSemaphore running;
+
+    /** Threads that have been started, but have not finished **/
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    /** Number of tasks that are running **/
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** Used to signal termination **/
+    private final Lock lock = new ReentrantLock();
+
+    /** Signalled when executor terminates **/
+    private final Condition terminated = lock.newCondition();
+
+    /** True once executor has been shutdown **/
+    private volatile boolean shutdown;
+
+    public VirtualThreadExecutor(
+            final ThreadFactory threadFactory,
+            final int concurrency,
+            final int queueSize,
+            final boolean callerRuns) {
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be greater than 0");
+        Preconditions.checkArgument(queueSize >= 0, "queueSize must be greater than or equal to 0");
+        this.threadFactory = Preconditions.checkNotNull(threadFactory, "threadFactory must be non-null");
+        this.callerRuns = callerRuns;
+        this.accepted = new Semaphore((int) Math.min(Integer.MAX_VALUE, (long) concurrency + queueSize));
+        this.running = new ResizableSemaphore(concurrency, true);
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!isTerminated()) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        Preconditions.checkNotNull(command, "command must be non-null");
+        if (shutdown) {
+            if (isCallerRuns()) {
+                // consistent with BlockCallerPolicy, which silently discards the task
+                return;
+            }
+            throw new RejectedExecutionException("Executor has been shutdown: " + this);
+        }
+
+        if (!accepted.tryAcquire()) {
+            if (!isCallerRuns()) {
+                throw new RejectedExecutionException("Executor is full: " + this);
+            }
+            LOGGER.warn("Executor is busy; running task on calling thread: {}", this);
+            command.run();
+            return;
+        }
+
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(() -> run(command));
+            Preconditions.checkState(thread != null, "Thread factory did not create thread");
+            threads.add(thread);
+            thread.start();
+        } catch (final RuntimeException | Error e) {
+            if (thread != null) {
+                threads.remove(thread);
+            }
+            accepted.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that are running.
+     *
+     * @return number of tasks that are running
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of tasks that may run concurrently.
+     *
+     * @return number of tasks that may run concurrently
+     */
+    public int getConcurrency() {
+        return running.getPermits();
+    }
+
+    /**
+     * Returns the number of tasks that have been accepted but are not running yet.
+     *
+     * @return number of tasks that have been accepted but are not running yet
+     */
+    public int getQueueSize() {
+        return Math.max(threads.size() - active.get(), 0);
+    }
+
+    /**
+     * Returns true if a task that cannot be accepted should run on the calling thread, rather than
+     * being rejected. Subclasses may decide this per task, e.g. based on the calling thread.
+     *
+     * @return true if a task that cannot be accepted should run on the calling thread
+     */
+    protected boolean isCallerRuns() {
+        return callerRuns;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && threads.isEmpty();
+    }
+
+    private void run(final Runnable command) {
+        final Thread thread = Thread.currentThread();
+        try {
+            // waiting for a permit only parks this thread
+            running.acquireUninterruptibly();
+            active.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                active.decrementAndGet();
+                running.release();
+            }
+        } finally {
+            accepted.release();
+            threads.remove(thread);
+            if (shutdown && threads.isEmpty()) {
+                signalTerminated();
+            }
+        }
+    }
+
+    /**
+     * Changes the number of tasks that may run concurrently. Tasks that are already running are
+     * not affected.
+     *
+     * @param concurrency
+     *            number of tasks that may run concurrently
+     */
+    public void setConcurrency(final int concurrency) {
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be greater than 0");
+        running.setPermits(concurrency);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (threads.isEmpty()) {
+            signalTerminated();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        for (final Thread thread : threads) {
+            thread.interrupt();
+        }
+
+        // tasks wait on their own threads, so there is no queue to drain
+        return ImmutableList.of();
+    }
+
+    private void signalTerminated() {
+        lock.lock();
+        try {
+            terminated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("concurrency", getConcurrency()) //
+                .add("active", getActiveCount()) //
+                .add("queued", getQueueSize()) //
+                .add("virtual", isVirtualThreadSupported()) //
+                .toString();
+    }
+}
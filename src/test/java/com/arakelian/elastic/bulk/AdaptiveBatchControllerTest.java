@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveBatchControllerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    public void testIncreaseAndDecrease() {
+        final AdaptiveBatchController controller = new AdaptiveBatchController(100, 400, 4, 1,
+                TimeUnit.SECONDS);
+        Assertions.assertEquals(100, controller.getBatchBytes());
+        Assertions.assertEquals(1, controller.getConcurrency());
+
+        // batch size grows first
+        controller.onLatency(FAST);
+        controller.onLatency(FAST);
+        controller.onLatency(FAST);
+        Assertions.assertEquals(400, controller.getBatchBytes());
+        Assertions.assertEquals(1, controller.getConcurrency());
+
+        // then concurrency, up to maximum
+        for (int i = 0; i < 10; i++) {
+            controller.onLatency(FAST);
+        }
+        Assertions.assertEquals(400, controller.getBatchBytes());
+        Assertions.assertEquals(4, controller.getConcurrency());
+
+        // slow requests shrink batch size
+        controller.onLatency(SLOW);
+        Assertions.assertEquals(200, controller.getBatchBytes());
+        Assertions.assertEquals(4, controller.getConcurrency());
+
+        // overload shrinks both, but never below minimums
+        controller.onOverload();
+        Assertions.assertEquals(100, controller.getBatchBytes());
+        Assertions.assertEquals(2, controller.getConcurrency());
+        controller.onOverload();
+        controller.onOverload();
+        Assertions.assertEquals(100, controller.getBatchBytes());
+        Assertions.assertEquals(1, controller.getConcurrency());
+    }
+}
@@ -17,17 +17,22 @@
 
 package com.arakelian.elastic.bulk;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
 import com.arakelian.elastic.AbstractElasticDockerTest;
+import com.arakelian.elastic.bulk.BulkOperation.Action;
 import com.arakelian.faker.model.Person;
 import com.arakelian.faker.service.RandomPerson;
+import com.google.common.collect.ImmutableMap;
 
 public class BulkIndexerTest extends AbstractElasticDockerTest {
     @Test
@@ -50,6 +55,38 @@ public class BulkIndexerTest extends AbstractElasticDockerTest {
         });
     }
 
+    @Test
+    public void testAddBatchInParallel() throws IOException {
+        withPersonIndex(index -> {
+            final List<Person> people = RandomPerson.get().listOf(1000);
+
+            final BulkIndexer tmp;
+            try (final BulkIndexer indexer = tmp = createPersonIndexer()) {
+                final BulkOperationFactory factory = createPersonBulkOperationFactory(index);
+                final BulkIngester ingester = new BulkIngester(factory,
+                        ImmutableMap.of("default", indexer), name -> "default", ForkJoinPool.commonPool());
+
+                // operations are in the same order as if they were built sequentially
+                final List<String> expected = new BulkIngester(factory, indexer)
+                        .makeBatch(people, Action.INDEX).values().stream() //
+                        .map(BulkOperation::getId) //
+                        .collect(Collectors.toList());
+                final List<String> actual = ingester.makeBatch(people, Action.INDEX).values().stream() //
+                        .map(BulkOperation::getId) //
+                        .collect(Collectors.toList());
+                assertEquals(expected, actual);
+
+                assertTrue(indexer.isIdle());
+                ingester.index(people);
+            }
+            assertTrue(tmp.isIdle());
+
+            for (final Person person : people) {
+                assertGetDocument(index, person, null);
+            }
+        });
+    }
+
     @Test
     public void testAddIndividually() throws IOException {
         withPersonIndex(index -> {
@@ -0,0 +1,643 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.bulk.FakeElasticClient.Received;
+import com.arakelian.elastic.bulk.event.IndexerListener;
+import com.arakelian.elastic.model.BulkIndexerConfig;
+import com.arakelian.elastic.model.BulkIndexerStats;
+import com.arakelian.elastic.model.BulkResponse.BulkOperationResponse;
+import com.arakelian.elastic.model.ImmutableBulkIndexerConfig;
+import com.arakelian.elastic.model.IndexTest;
+import com.arakelian.elastic.model.VersionComponents;
+import com.arakelian.elastic.refresh.NullRefreshLimiter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests of {@link BulkIndexer} that answer bulk requests with a {@link FakeElasticClient}, rather
+ * than an Elastic server.
+ */
+public class BulkIndexerUnitTest {
+    private static BulkOperation createOperation(final String id, final int value) {
+        return ImmutableBulkOperation.builder() //
+                .action(Action.INDEX) //
+                .elasticVersion(VersionComponents.of(7, 0)) //
+                .id(id) //
+                .source("{\"value\":" + value + "}") //
+                .index(IndexTest.MINIMAL) //
+                .build();
+    }
+
+    private static BulkOperation createOperation(final String id, final int value, final long version) {
+        return ImmutableBulkOperation.builder() //
+                .from(createOperation(id, value)) //
+                .version(version) //
+                .build();
+    }
+
+    private static ImmutableBulkIndexerConfig.Builder createConfig() {
+        return ImmutableBulkIndexerConfig.builder() //
+                .automaticFlushMillis(0) //
+                .shutdownTimeout(10) //
+                .shutdownTimeoutUnit(TimeUnit.SECONDS);
+    }
+
+    private static List<String> sources(final List<Received> ops) {
+        return ops.stream().map(Received::getSource).collect(Collectors.toList());
+    }
+
+    private FakeElasticClient elastic;
+
+    /** Separate producer threads **/
+    private ExecutorService producer1;
+    private ExecutorService producer2;
+
+    @BeforeEach
+    public void createClient() {
+        elastic = new FakeElasticClient();
+        producer1 = Executors.newSingleThreadExecutor();
+        producer2 = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        elastic.release();
+        producer1.shutdownNow();
+        producer2.shutdownNow();
+    }
+
+    /**
+     * Adds an operation and flushes it from the given thread.
+     */
+    private void addAndFlush(
+            final ExecutorService producer,
+            final BulkIndexer indexer,
+            final BulkOperation op) throws InterruptedException, ExecutionException {
+        producer.submit(() -> {
+            indexer.add(op, false);
+            return indexer.flush();
+        }).get();
+    }
+
+    private static BulkIndexer createIndexer(
+            final FakeElasticClient elastic,
+            final boolean async,
+            final BulkIndexerConfig config) {
+        return new BulkIndexer( //
+                elastic.getClient(), //
+                async ? elastic.getAsyncClient() : null, //
+                config, //
+                NullRefreshLimiter.INSTANCE);
+    }
+
+    @Test
+    public void testAdaptiveConcurrency() throws InterruptedException {
+        final BulkIndexerConfig config = createConfig() //
+                .adaptiveBatching(true) //
+                .maximumThreads(4) //
+                .maxBulkOperations(1) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // adaptive concurrency starts at one request, although four batch threads are busy
+        elastic.hold();
+        for (int value = 0; value < 4; value++) {
+            indexer.add(createOperation(Integer.toString(value), value), false);
+        }
+        FakeElasticClient.await(() -> indexer.getWorkQueueActiveThreads() == 4);
+        Assertions.assertEquals(1, elastic.getRequests().size());
+        Assertions.assertEquals(1, indexer.getStats().getConcurrency());
+
+        elastic.release();
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 4);
+        indexer.close();
+        Assertions.assertEquals(4, elastic.getRequests().size());
+    }
+
+    @Test
+    public void testAsyncAdaptiveConcurrency() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .adaptiveBatching(true) //
+                .maxBulkOperations(1) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, true, config);
+
+        // adaptive concurrency starts at one request in-flight, so second batch waits for a permit
+        elastic.hold();
+        indexer.add(createOperation("1", 1), false);
+        Assertions.assertEquals(1, indexer.getInFlightRequests());
+        final Future<?> second = producer1.submit(() -> indexer.add(createOperation("2", 2), false));
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assertions.assertFalse(second.isDone());
+        Assertions.assertEquals(1, indexer.getStats().getConcurrency());
+
+        elastic.release();
+        second.get();
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 2);
+        indexer.close();
+        Assertions.assertEquals(2, elastic.getRequests().size());
+    }
+
+    @Test
+    public void testAsyncLanes() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .lanes(4) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, true, config);
+
+        // writes to the same document from different threads share a lane
+        elastic.hold();
+        addAndFlush(producer1, indexer, createOperation("1", 1));
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 1);
+        addAndFlush(producer2, indexer, createOperation("1", 2));
+
+        // second write waits for the first
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assertions.assertEquals(1, elastic.getRequests().size());
+
+        elastic.release();
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 2);
+        Assertions.assertEquals(
+                ImmutableList.of("{\"value\":1}", "{\"value\":2}"),
+                sources(elastic.getOperations()));
+
+        indexer.close();
+        Assertions.assertEquals(2, indexer.getStats().getSuccessful());
+    }
+
+    @Test
+    public void testCollapseDuplicates() throws InterruptedException, ExecutionException {
+        final List<String> collapsed = new CopyOnWriteArrayList<>();
+        final List<String> succeeded = new CopyOnWriteArrayList<>();
+        final BulkIndexerConfig config = createConfig() //
+                .collapseDuplicates(true) //
+                .listener(new IndexerListener() {
+                    @Override
+                    public void closed(final BulkIndexerStats stats) {
+                    }
+
+                    @Override
+                    public void onCollapsed(final BulkOperation op) {
+                        collapsed.add(op.getSource().toString());
+                    }
+
+                    @Override
+                    public void onFailure(final BulkOperation op, final BulkOperationResponse response) {
+                        Assertions.fail("Unexpected failure: " + op);
+                    }
+
+                    @Override
+                    public void onFailure(final BulkOperation op, final Throwable t) {
+                        Assertions.fail("Unexpected failure: " + op);
+                    }
+
+                    @Override
+                    public void onSuccess(final BulkOperation op, final int statusCode) {
+                        succeeded.add(op.getSource().toString());
+                    }
+                }) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // newer operation replaces pending operation
+        indexer.add(createOperation("1", 1), false);
+        indexer.add(createOperation("1", 2), false);
+
+        // operation with lower version is dropped
+        indexer.add(createOperation("2", 3, 5L), false);
+        indexer.add(createOperation("2", 4, 3L), false);
+        indexer.flush().get();
+
+        Assertions.assertEquals(
+                ImmutableList.of("{\"value\":2}", "{\"value\":3}"),
+                sources(elastic.getOperations()));
+        Assertions.assertEquals(ImmutableList.of("{\"value\":1}", "{\"value\":4}"), collapsed);
+
+        // every operation has exactly one outcome
+        indexer.close();
+        Assertions.assertEquals(ImmutableList.of("{\"value\":2}", "{\"value\":3}"), succeeded);
+        final BulkIndexerStats stats = indexer.getStats();
+        Assertions.assertEquals(4, stats.getSubmitted());
+        Assertions.assertEquals(2, stats.getCollapsed());
+        Assertions.assertEquals(2, stats.getSuccessful());
+        Assertions.assertEquals(2, stats.getExpected());
+        Assertions.assertEquals(4, stats.getTotal());
+    }
+
+    @Test
+    public void testLaneRetryOrder() throws InterruptedException, ExecutionException {
+        testLaneRetryOrder(false);
+        testLaneRetryOrder(true);
+    }
+
+    private void testLaneRetryOrder(final boolean async) throws InterruptedException, ExecutionException {
+        final FakeElasticClient elastic = new FakeElasticClient();
+        final BulkIndexerConfig config = createConfig() //
+                .lanes(2) //
+                .partialRetryDelayMillis(200) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, async, config);
+
+        // first write is rejected once, and retried
+        final AtomicBoolean rejected = new AtomicBoolean();
+        elastic.setStatus(op -> {
+            final boolean first = op.getSource().equals("{\"value\":1}");
+            return first && rejected.compareAndSet(false, true) ? 429 : 201;
+        });
+
+        // second write waits in the lane until first write has been retried
+        indexer.add(createOperation("1", 1), true);
+        indexer.add(createOperation("1", 2), true);
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 3);
+        Assertions.assertEquals(
+                ImmutableList.of("{\"value\":1}", "{\"value\":1}", "{\"value\":2}"),
+                sources(elastic.getOperations()));
+
+        indexer.close();
+        final BulkIndexerStats stats = indexer.getStats();
+        Assertions.assertEquals(1, stats.getRetries());
+        Assertions.assertEquals(2, stats.getSuccessful());
+        Assertions.assertEquals(0, indexer.getPendingRetries());
+    }
+
+    @Test
+    public void testLanes() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .lanes(4) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        for (int value = 0; value < 16; value++) {
+            indexer.add(createOperation(Integer.toString(value % 8), value), false);
+        }
+
+        // each lane is flushed in a separate batch
+        indexer.flush().get();
+        Assertions.assertEquals(0, indexer.getPendingBytes());
+        final List<List<Received>> requests = elastic.getRequests();
+        Assertions.assertTrue(requests.size() > 1 && requests.size() <= 4, requests.toString());
+
+        // operations on the same document are in the same lane, in order
+        final Map<String, Integer> lanes = new HashMap<>();
+        final Map<String, List<String>> sources = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            for (final Received op : requests.get(i)) {
+                final Integer lane = lanes.putIfAbsent(op.getId(), i);
+                Assertions.assertTrue(lane == null || lane.intValue() == i, op.toString());
+                sources.computeIfAbsent(op.getId(), id -> new ArrayList<>()).add(op.getSource());
+            }
+        }
+        Assertions.assertEquals(8, sources.size());
+        for (int id = 0; id < 8; id++) {
+            Assertions.assertEquals(
+                    ImmutableList.of("{\"value\":" + id + "}", "{\"value\":" + (id + 8) + "}"),
+                    sources.get(Integer.toString(id)));
+        }
+
+        indexer.close();
+        Assertions.assertEquals(16, indexer.getStats().getSuccessful());
+    }
+
+    @Test
+    public void testMemoryBudgetFlushesPending() throws InterruptedException {
+        final int size = createOperation("1", 1).getPayload().size();
+        final MemoryBudget budget = new MemoryBudget(size * 2 + size / 2);
+        final BulkIndexerConfig config = createConfig() //
+                .memoryBudget(budget) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // automatic flush is disabled, so pending operations must be flushed to make room
+        indexer.add(createOperation("1", 1), false);
+        indexer.add(createOperation("2", 2), false);
+        indexer.add(createOperation("3", 3), false);
+        FakeElasticClient.await(() -> elastic.getOperations().size() == 2);
+
+        indexer.close();
+        Assertions.assertEquals(3, indexer.getStats().getSuccessful());
+        Assertions.assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testMemoryBudgetTimeout() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(1024);
+        final BulkIndexerConfig config = createConfig() //
+                .memoryBudget(budget) //
+                .memoryBudgetTimeoutMillis(50) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // bytes are held elsewhere, e.g. by another indexer that shares the budget
+        budget.acquire(1024);
+        Assertions.assertThrows(
+                RejectedExecutionException.class,
+                () -> indexer.add(createOperation("1", 1), false));
+        Assertions.assertEquals(1, budget.getStats().getRejected());
+
+        budget.release(1024);
+        indexer.close();
+        Assertions.assertEquals(0, indexer.getStats().getSubmitted());
+    }
+
+    @Test
+    public void testMemoryBudgetReleased() throws InterruptedException, ExecutionException {
+        final MemoryBudget budget = new MemoryBudget(1024 * 1024);
+        final BulkIndexerConfig config = createConfig() //
+                .collapseDuplicates(true) //
+                .memoryBudget(budget) //
+                .partialRetryDelayMillis(10) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // first document is rejected once
+        final AtomicBoolean rejected = new AtomicBoolean();
+        elastic.setStatus(op -> op.getId().equals("1") && rejected.compareAndSet(false, true) ? 429 : 201);
+
+        // second operation collapses into the first
+        indexer.add(createOperation("1", 1), false);
+        indexer.add(createOperation("1", 2), false);
+        indexer.add(createOperation("2", 3), false);
+        indexer.flush().get();
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 2);
+
+        indexer.close();
+        final BulkIndexerStats stats = indexer.getStats();
+        Assertions.assertEquals(1, stats.getRetries());
+        Assertions.assertEquals(1, stats.getCollapsed());
+        Assertions.assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testRemainingCapacity() {
+        final int size = createOperation("1", 1).getPayload().size();
+        final MemoryBudget budget = new MemoryBudget(size * 2 + size / 2);
+        final BulkIndexerConfig config = createConfig() //
+                .memoryBudget(budget) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+        Assertions.assertTrue(indexer.getRemainingCapacity() > 0);
+
+        // some bytes are available, but not enough for another operation
+        indexer.add(createOperation("1", 1), false);
+        indexer.add(createOperation("2", 2), false);
+        Assertions.assertTrue(budget.getAvailableBytes() > 0);
+        Assertions.assertEquals(0, indexer.getRemainingCapacity());
+
+        indexer.close();
+        Assertions.assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testRetryAttemptLimit() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .maxPartialRetries(3) //
+                .partialRetryDelayMillis(10) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // operation is always rejected
+        elastic.setStatus(op -> 429);
+        indexer.add(createOperation("1", 1), true);
+        FakeElasticClient.await(() -> indexer.getStats().getFailed() == 1);
+
+        // operation is sent once, and retried until it reaches the limit
+        Assertions.assertEquals(3, elastic.getRequests().size());
+        Assertions.assertThrows(BulkIndexerFailed.class, indexer::close);
+        final BulkIndexerStats stats = indexer.getStats();
+        Assertions.assertEquals(2, stats.getRetries());
+        Assertions.assertEquals(0, stats.getSuccessful());
+    }
+
+    @Test
+    public void testRetryAttemptsPerOperation() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .maxBulkOperations(5) //
+                .maxPartialRetries(3) //
+                .partialRetryDelayMillis(1) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // each operation is rejected fewer times than the limit, and is merged with retries of
+        // operations that are on other attempts
+        final Map<String, Integer> sends = new HashMap<>();
+        elastic.setStatus(op -> {
+            final int count;
+            synchronized (sends) {
+                count = sends.merge(op.getId(), 1, Integer::sum);
+            }
+            return count <= Integer.parseInt(op.getId()) % 3 ? 429 : 201;
+        });
+        for (int i = 0; i < 60; i++) {
+            indexer.add(createOperation(Integer.toString(i), i), false);
+        }
+        indexer.flush();
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 60);
+
+        indexer.close();
+        final BulkIndexerStats stats = indexer.getStats();
+        Assertions.assertEquals(0, stats.getFailed());
+        Assertions.assertEquals(60, stats.getRetries());
+        for (int i = 0; i < 60; i++) {
+            Assertions.assertEquals(i % 3 + 1, sends.get(Integer.toString(i)).intValue());
+        }
+    }
+
+    @Test
+    public void testRetryDeferredWhenBusy() throws InterruptedException {
+        final BulkIndexerConfig config = createConfig() //
+                .maximumThreads(1) //
+                .queueSize(1) //
+                .maxBulkOperations(1) //
+                .partialRetryDelayMillis(1000) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // first document is rejected once
+        final AtomicBoolean rejected = new AtomicBoolean();
+        elastic.setStatus(op -> op.getId().equals("1") && rejected.compareAndSet(false, true) ? 429 : 201);
+        indexer.add(createOperation("1", 1), false);
+        FakeElasticClient.await(() -> indexer.getPendingRetries() == 1);
+
+        // saturate executor: one batch is being sent, and another fills the queue
+        elastic.hold();
+        indexer.add(createOperation("2", 2), false);
+        indexer.add(createOperation("3", 3), false);
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 2);
+
+        // retry falls due while executor is busy; it is deferred rather than sent by retry thread
+        Thread.sleep(1200);
+        Assertions.assertEquals(2, elastic.getRequests().size());
+
+        elastic.release();
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 3);
+        indexer.close();
+        Assertions.assertEquals(1, indexer.getStats().getRetries());
+        Assertions.assertEquals(4, elastic.getRequests().size());
+    }
+
+    @Test
+    public void testRetryMerge() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .partialRetryDelayMillis(100) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // each operation is rejected once
+        final Map<String, Boolean> rejected = new HashMap<>();
+        elastic.setStatus(op -> {
+            synchronized (rejected) {
+                return rejected.putIfAbsent(op.getId(), Boolean.TRUE) == null ? 429 : 201;
+            }
+        });
+        indexer.add(createOperation("1", 1), false);
+        indexer.add(createOperation("2", 2), false);
+        indexer.flush();
+
+        // rejected operations are parked, and retried together
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 2);
+        final List<List<Received>> requests = elastic.getRequests();
+        Assertions.assertEquals(2, requests.size());
+        for (final List<Received> request : requests) {
+            final List<String> ids = request.stream() //
+                    .map(Received::getId) //
+                    .sorted() //
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(ImmutableList.of("1", "2"), ids);
+        }
+
+        indexer.close();
+        Assertions.assertEquals(2, indexer.getStats().getRetries());
+        Assertions.assertEquals(0, indexer.getPendingRetries());
+    }
+
+    @Test
+    public void testRetryParking() throws InterruptedException, ExecutionException, TimeoutException {
+        final BulkIndexerConfig config = createConfig() //
+                .maximumThreads(1) //
+                .partialRetryDelayMillis(2000) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // first write is rejected once
+        final AtomicBoolean rejected = new AtomicBoolean();
+        elastic.setStatus(op -> op.getId().equals("1") && rejected.compareAndSet(false, true) ? 429 : 201);
+        indexer.add(createOperation("1", 1), true);
+        FakeElasticClient.await(() -> indexer.getPendingRetries() == 1);
+
+        // retry waits on a timer, so the only batch thread is free to send other batches
+        indexer.add(createOperation("2", 2), false);
+        indexer.flush().get(1, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, elastic.getRequests().size());
+        Assertions.assertEquals(1, indexer.getPendingRetries());
+
+        FakeElasticClient.await(() -> indexer.getStats().getSuccessful() == 2);
+        Assertions.assertEquals(
+                ImmutableList.of("{\"value\":1}", "{\"value\":2}", "{\"value\":1}"),
+                sources(elastic.getOperations()));
+        indexer.close();
+    }
+
+    @Test
+    public void testStripedFlush() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .pendingStripes(4) //
+                .maxBulkOperations(10) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // each producer adds operations to its own stripe, and stripes are not full
+        final List<ExecutorService> producers = new ArrayList<>();
+        try {
+            for (int p = 0; p < 4; p++) {
+                final ExecutorService producer = Executors.newSingleThreadExecutor();
+                producers.add(producer);
+                final int first = p * 100;
+                producer.submit(() -> {
+                    for (int value = first; value < first + 9; value++) {
+                        indexer.add(createOperation(Integer.toString(value), value), false);
+                    }
+                }).get();
+            }
+        } finally {
+            producers.forEach(ExecutorService::shutdownNow);
+        }
+
+        // forced flush merges stripes, without exceeding the batch size thresholds
+        indexer.flush().get();
+        Assertions.assertEquals(0, indexer.getPendingBytes());
+        final List<List<Received>> requests = elastic.getRequests();
+        for (final List<Received> request : requests) {
+            Assertions.assertTrue(request.size() <= 10, request.toString());
+        }
+
+        // operations added by each producer are sent in order
+        final List<Received> ops = elastic.getOperations();
+        Assertions.assertEquals(36, ops.size());
+        final Map<Integer, Integer> last = new HashMap<>();
+        for (final Received op : ops) {
+            final int value = Integer.parseInt(op.getId());
+            final Integer previous = last.put(value / 100, value);
+            Assertions.assertTrue(previous == null || previous.intValue() < value, op.toString());
+        }
+
+        indexer.close();
+        Assertions.assertEquals(36, indexer.getStats().getSuccessful());
+    }
+
+    @Test
+    public void testStripedForceFlush() throws InterruptedException, ExecutionException {
+        final BulkIndexerConfig config = createConfig() //
+                .pendingStripes(2) //
+                .build();
+        final BulkIndexer indexer = createIndexer(elastic, false, config);
+
+        // operations from two producers are pending
+        producer1.submit(() -> indexer.add(createOperation("1", 1), false)).get();
+        producer2.submit(() -> indexer.add(createOperation("2", 2), false)).get();
+        Assertions.assertTrue(indexer.getPendingBytes() > 0);
+
+        // forced add flushes the operations of every producer
+        producer1.submit(() -> indexer.add(createOperation("3", 3), true).get().get()).get();
+        Assertions.assertEquals(0, indexer.getPendingBytes());
+        Assertions.assertEquals(3, elastic.getOperations().size());
+
+        indexer.close();
+        Assertions.assertEquals(3, indexer.getStats().getSuccessful());
+    }
+}
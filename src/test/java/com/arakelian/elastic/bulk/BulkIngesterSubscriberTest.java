@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.model.BulkIndexerConfig;
+import com.arakelian.elastic.model.ImmutableBulkIndexerConfig;
+import com.arakelian.elastic.model.IndexTest;
+import com.arakelian.elastic.refresh.NullRefreshLimiter;
+
+public class BulkIngesterSubscriberTest {
+    /**
+     * Subscription that records demand; documents are delivered by the test.
+     */
+    private static final class Subscription implements Flow.Subscription {
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final boolean cancellable;
+
+        public Subscription() {
+            this(false);
+        }
+
+        public Subscription(final boolean cancellable) {
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        public void cancel() {
+            Assertions.assertTrue(cancellable, "Subscription should not be cancelled");
+            cancelled.set(true);
+        }
+
+        @Override
+        public void request(final long n) {
+            requested.addAndGet(n);
+        }
+    }
+
+    private static BulkIngester createIngester(final BulkIndexer indexer) {
+        final SimpleBulkOperationFactory<Integer> factory = ImmutableSimpleBulkOperationFactory
+                .<Integer> builder() //
+                .documentClass(Integer.class) //
+                .id(document -> document.toString()) //
+                .index(IndexTest.MINIMAL) //
+                .version(document -> null) //
+                .build();
+        return new BulkIngester(factory, indexer);
+    }
+
+    /**
+     * Returns an indexer that can send one batch of two operations, and hold one more in queue.
+     */
+    private static BulkIndexer createIndexer(final FakeElasticClient elastic) {
+        final BulkIndexerConfig config = ImmutableBulkIndexerConfig.builder() //
+                .automaticFlushMillis(0) //
+                .blockingQueue(false) //
+                .maxBulkOperations(2) //
+                .maximumThreads(1) //
+                .queueSize(1) //
+                .build();
+        return new BulkIndexer(elastic.getClient(), config, NullRefreshLimiter.INSTANCE);
+    }
+
+    @Test
+    public void testClosedIndexerCancelsSubscription() throws InterruptedException {
+        final FakeElasticClient elastic = new FakeElasticClient();
+        elastic.hold();
+
+        final BulkIndexer indexer = createIndexer(elastic);
+        final BulkIngesterSubscriber subscriber = createIngester(indexer).newSubscriber(Action.INDEX, 100);
+        final Subscription subscription = new Subscription(true);
+        subscriber.onSubscribe(subscription);
+
+        // fill the queue, so that demand is withheld
+        for (int i = 1; i <= 4; i++) {
+            subscriber.onNext(i);
+        }
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 1);
+        Assertions.assertEquals(0, indexer.getRemainingCapacity());
+
+        // closing the indexer signals waiting subscribers, which give up rather than wait forever
+        final Thread closer = new Thread(indexer::close);
+        closer.start();
+        FakeElasticClient.await(indexer::isClosed);
+        elastic.release();
+        closer.join();
+
+        FakeElasticClient.await(() -> subscriber.getCompletion().isDone());
+        Assertions.assertTrue(subscription.cancelled.get());
+        Assertions.assertEquals(4, subscription.requested.get());
+        final ExecutionException e = Assertions
+                .assertThrows(ExecutionException.class, () -> subscriber.getCompletion().get());
+        Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testDemandIsWithheldWhenQueueIsFull() throws InterruptedException {
+        final FakeElasticClient elastic = new FakeElasticClient();
+        elastic.hold();
+
+        final BulkIndexer indexer = createIndexer(elastic);
+        final BulkIngesterSubscriber subscriber = createIngester(indexer).newSubscriber(Action.INDEX, 100);
+
+        // demand is limited to what the queue can hold, rather than the request size
+        final Subscription subscription = new Subscription();
+        subscriber.onSubscribe(subscription);
+        Assertions.assertEquals(2, subscription.requested.get());
+
+        // first batch is sent, and is waiting for a response
+        subscriber.onNext(1);
+        subscriber.onNext(2);
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 1);
+        Assertions.assertEquals(4, subscription.requested.get());
+
+        // second batch fills the queue, so demand is withheld
+        subscriber.onNext(3);
+        subscriber.onNext(4);
+        Assertions.assertEquals(0, indexer.getRemainingCapacity());
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assertions.assertEquals(4, subscription.requested.get());
+        Assertions.assertEquals(1, elastic.getRequests().size());
+
+        // demand resumes once the queue drains
+        elastic.release();
+        FakeElasticClient.await(() -> subscription.requested.get() > 4);
+        FakeElasticClient.await(() -> elastic.getRequests().size() == 2);
+
+        subscriber.onComplete();
+        Assertions.assertTrue(subscriber.getCompletion().isDone());
+        indexer.close();
+        Assertions.assertEquals(4, indexer.getStats().getSuccessful());
+        Assertions.assertEquals(4, subscriber.getReceived());
+        Assertions.assertEquals(0, subscriber.getFailed());
+    }
+
+    @Test
+    public void testNullDocumentIsRejected() {
+        final FakeElasticClient elastic = new FakeElasticClient();
+        final BulkIndexer indexer = createIndexer(elastic);
+        final BulkIngesterSubscriber subscriber = createIngester(indexer).newSubscriber(Action.INDEX, 2);
+        subscriber.onSubscribe(new Subscription());
+
+        // required by Reactive Streams rule 2.13
+        Assertions.assertThrows(NullPointerException.class, () -> subscriber.onNext(null));
+        Assertions.assertThrows(NullPointerException.class, () -> subscriber.onError(null));
+        Assertions.assertEquals(0, subscriber.getReceived());
+
+        subscriber.onComplete();
+        indexer.close();
+    }
+
+    @Test
+    public void testUnsupportedDocumentsAreCounted() {
+        final FakeElasticClient elastic = new FakeElasticClient();
+        final BulkIndexerConfig config = ImmutableBulkIndexerConfig.builder() //
+                .automaticFlushMillis(0) //
+                .build();
+        final BulkIndexer indexer = new BulkIndexer(elastic.getClient(), config, NullRefreshLimiter.INSTANCE);
+        final BulkIngester ingester = new BulkIngester(new BulkOperationFactory() {
+            @Override
+            public List<BulkOperation> createBulkOperations(final Object document, final Action action) {
+                throw new IllegalStateException("Unable to build " + document);
+            }
+
+            @Override
+            public boolean supports(final Object document) {
+                return true;
+            }
+        }, indexer);
+
+        // runtime exceptions from the factory do not stop the subscription
+        final BulkIngesterSubscriber subscriber = ingester.newSubscriber(Action.INDEX, 2);
+        final Subscription subscription = new Subscription();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(1);
+        subscriber.onNext(2);
+        Assertions.assertEquals(2, subscriber.getFailed());
+        Assertions.assertEquals(4, subscription.requested.get());
+        Assertions.assertFalse(subscriber.getCompletion().isDone());
+
+        subscriber.onComplete();
+        indexer.close();
+        Assertions.assertEquals(0, elastic.getRequests().size());
+    }
+}
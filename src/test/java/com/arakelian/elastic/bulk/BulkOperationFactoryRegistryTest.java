@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.model.IndexTest;
+import com.google.common.collect.ImmutableList;
+
+public class BulkOperationFactoryRegistryTest {
+    private static <T> SimpleBulkOperationFactory<T> createFactory(
+            final Class<T> documentClass,
+            final Predicate<T> predicate) {
+        return ImmutableSimpleBulkOperationFactory.<T> builder() //
+                .documentClass(documentClass) //
+                .predicate(predicate) //
+                .id(document -> document.toString()) //
+                .index(IndexTest.MINIMAL) //
+                .version(document -> null) //
+                .build();
+    }
+
+    @Test
+    public void testDispatch() throws IOException {
+        final AtomicInteger evens = new AtomicInteger();
+        final AtomicInteger numbers = new AtomicInteger();
+        final AtomicInteger longs = new AtomicInteger();
+
+        final BulkOperationFactoryRegistry registry = ImmutableBulkOperationFactoryRegistry.builder() //
+                .factories(
+                        ImmutableList.of(
+                                createFactory(Integer.class, i -> evens.incrementAndGet() > 0 && i % 2 == 0),
+                                createFactory(Number.class, n -> numbers.incrementAndGet() > 0),
+                                createFactory(Long.class, l -> longs.incrementAndGet() > 0))) //
+                .build();
+
+        // each candidate predicate is evaluated once per document
+        final List<BulkOperation> ops = registry.createBulkOperationsIfSupported(2, Action.INDEX);
+        Assertions.assertEquals(2, ops.size());
+        Assertions.assertEquals(1, registry.createBulkOperationsIfSupported(3, Action.INDEX).size());
+        Assertions.assertEquals(2, evens.get());
+        Assertions.assertEquals(2, numbers.get());
+
+        // factories for other classes are never consulted
+        Assertions.assertEquals(0, longs.get());
+        Assertions.assertTrue(registry.supportsClass(Long.class));
+        Assertions.assertFalse(registry.supportsClass(String.class));
+
+        // unsupported documents
+        Assertions.assertNull(registry.createBulkOperationsIfSupported("id", Action.INDEX));
+        Assertions.assertEquals(0, registry.createBulkOperations("id", Action.INDEX).size());
+        Assertions.assertFalse(registry.supports("id"));
+        Assertions.assertTrue(registry.supports(3L));
+        Assertions.assertEquals(3, numbers.get());
+    }
+
+    @Test
+    public void testSupportedWithoutOperations() throws IOException {
+        final BulkOperationFactory factory = new BulkOperationFactory() {
+            @Override
+            public List<BulkOperation> createBulkOperations(final Object document, final Action action) {
+                return null;
+            }
+
+            @Override
+            public boolean supports(final Object document) {
+                return true;
+            }
+        };
+
+        final List<BulkOperation> ops = factory.createBulkOperationsIfSupported("id", Action.INDEX);
+        Assertions.assertNotNull(ops);
+        Assertions.assertEquals(0, ops.size());
+
+        final BulkOperationFactoryRegistry registry = ImmutableBulkOperationFactoryRegistry.builder() //
+                .factories(ImmutableList.of(factory)) //
+                .build();
+        Assertions.assertEquals(0, registry.createBulkOperationsIfSupported("id", Action.INDEX).size());
+    }
+}
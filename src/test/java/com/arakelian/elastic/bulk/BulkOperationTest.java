@@ -1,13 +1,37 @@
 package com.arakelian.elastic.bulk;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.doc.CompactJson;
 import com.arakelian.elastic.model.IndexTest;
 import com.arakelian.elastic.model.VersionComponents;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 
 public class BulkOperationTest {
+    @Test
+    public void testCompactJson() throws IOException {
+        final String source = "{\"name\":\"Gr\u00e9g \u4e2d\"}";
+        final BulkOperation op = ImmutableBulkOperation.builder() //
+                .action(Action.INDEX) //
+                .elasticVersion(VersionComponents.of(7, 0)) //
+                .id("id") //
+                .source(CompactJson.of(source.getBytes(Charsets.UTF_8))) //
+                .index(IndexTest.MINIMAL) //
+                .build();
+
+        // compact JSON is copied into payload as-is
+        Assertions.assertTrue(op.getCompactSource() instanceof CompactJson);
+        final String expected = "{\"index\":{\"_index\":\"index_name\",\"_id\":\"id\"}}\n" + source + "\n";
+        Assertions.assertArrayEquals(expected.getBytes(Charsets.UTF_8), toByteArray(op.getPayload()));
+        Assertions.assertEquals(source, op.getSource().toString());
+    }
+
     @Test
     public void testEscaping() {
         final BulkOperation op = ImmutableBulkOperation.builder() //
@@ -37,4 +61,33 @@ public class BulkOperationTest {
                         + "{\"name\":\"Greg\\tArakelian\",\"gender\":\"male\"}\n",
                 op.getOperation().toString());
     }
+
+    @Test
+    public void testUtf8() throws IOException {
+        final String source = "{\"name\":\"Gr\u00e9g \u4e2d \ud83d\ude00 \ud83d\"}";
+        final BulkOperation op = ImmutableBulkOperation.builder() //
+                .action(Action.INDEX) //
+                .elasticVersion(VersionComponents.of(7, 0)) //
+                .id("id") //
+                .source(source) //
+                .index(IndexTest.MINIMAL) //
+                .build();
+
+        final String expected = "{\"index\":{\"_index\":\"index_name\",\"_id\":\"id\"}}\n" + source + "\n";
+        final BulkPayload operation = op.getPayload();
+        Assertions.assertArrayEquals(expected.getBytes(Charsets.UTF_8), toByteArray(operation));
+        Assertions.assertEquals(expected.getBytes(Charsets.UTF_8).length, operation.size());
+        Assertions.assertTrue(operation.endsWithNewline());
+
+        // batch payload streams each operation without concatenation
+        final BulkPayload payload = BulkPayload.of(ImmutableList.of(op, op));
+        Assertions.assertEquals(2 * operation.size(), payload.size());
+        Assertions.assertArrayEquals((expected + expected).getBytes(Charsets.UTF_8), toByteArray(payload));
+    }
+
+    private byte[] toByteArray(final BulkPayload payload) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        payload.writeTo(out);
+        return out.toByteArray();
+    }
 }
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Assertions;
+
+import com.arakelian.elastic.AsyncElasticClient;
+import com.arakelian.elastic.ElasticClient;
+import com.arakelian.elastic.model.BulkResponse;
+import com.arakelian.elastic.model.BulkResponse.BulkOperationResponse;
+import com.arakelian.elastic.model.ImmutableBulkOperationResponse;
+import com.arakelian.elastic.model.ImmutableBulkResponse;
+import com.arakelian.elastic.model.ImmutableItem;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Answers bulk requests without an Elastic server, and records the operations that it receives.
+ * Other Elastic APIs are not supported.
+ */
+public class FakeElasticClient {
+    /**
+     * Bulk operation received by the client.
+     */
+    public static final class Received {
+        private final String action;
+        private final String index;
+        private final String id;
+        private final String source;
+
+        private Received(final String action, final String index, final String id, final String source) {
+            this.action = action;
+            this.index = index;
+            this.id = id;
+            this.source = source;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this) //
+                    .omitNullValues() //
+                    .add("action", action) //
+                    .add("index", index) //
+                    .add("id", id) //
+                    .add("source", source) //
+                    .toString();
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Waits until the given condition is true.
+     *
+     * @param condition
+     *            condition to wait for
+     */
+    public static void await(final BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Timed out waiting for condition");
+            try {
+                Thread.sleep(5);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static int success(final Received op) {
+        return "index".equals(op.action) || "create".equals(op.action) ? 201 : 200;
+    }
+
+    /** Operations of each bulk request, in the order that requests were received **/
+    private final List<List<Received>> requests = new CopyOnWriteArrayList<>();
+
+    /** Responses that are held until {@link #release()}, when holding **/
+    private final List<Runnable> held = new ArrayList<>();
+
+    /** True if responses are held **/
+    private boolean holding;
+
+    /** Returns the status of each bulk operation **/
+    private volatile ToIntFunction<Received> status = FakeElasticClient::success;
+
+    /**
+     * Returns the bulk response to a request.
+     *
+     * @param operations
+     *            bulk request
+     * @return bulk response
+     */
+    private BulkResponse bulk(final CharSequence operations) {
+        final List<Received> ops = new ArrayList<>();
+        final List<String> lines = ImmutableList.copyOf(operations.toString().split("\n"));
+        for (int i = 0; i < lines.size(); i++) {
+            final JsonNode actionAndMetadata = readTree(lines.get(i));
+            final String action = actionAndMetadata.fieldNames().next();
+            final JsonNode metadata = actionAndMetadata.get(action);
+            final String source = !"delete".equals(action) ? lines.get(++i) : null;
+            final String index = metadata.get("_index").asText();
+            ops.add(new Received(action, index, metadata.get("_id").asText(), source));
+        }
+        requests.add(ImmutableList.copyOf(ops));
+
+        final ImmutableBulkResponse.Builder response = ImmutableBulkResponse.builder() //
+                .took(1);
+        boolean errors = false;
+        for (final Received op : ops) {
+            final int code = status.applyAsInt(op);
+            errors |= code >= 300;
+            final BulkOperationResponse item = ImmutableBulkOperationResponse.builder() //
+                    .index(op.index) //
+                    .id(op.id) //
+                    .status(code) //
+                    .build();
+            switch (op.action) {
+            case "create":
+                response.addItem(ImmutableItem.builder().create(item).build());
+                break;
+            case "delete":
+                response.addItem(ImmutableItem.builder().delete(item).build());
+                break;
+            case "update":
+                response.addItem(ImmutableItem.builder().update(item).build());
+                break;
+            default:
+                response.addItem(ImmutableItem.builder().index(item).build());
+                break;
+            }
+        }
+        return response.errors(errors).build();
+    }
+
+    /**
+     * Returns a non-blocking client. When responses are held, its futures complete once they are
+     * released.
+     *
+     * @return a non-blocking client
+     */
+    public AsyncElasticClient getAsyncClient() {
+        return proxy(AsyncElasticClient.class, operations -> {
+            final BulkResponse response = bulk(operations);
+            final CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+            synchronized (this) {
+                if (holding) {
+                    held.add(() -> future.complete(response));
+                    return future;
+                }
+            }
+            future.complete(response);
+            return future;
+        });
+    }
+
+    /**
+     * Returns a blocking client. When responses are held, callers block until they are released.
+     *
+     * @return a blocking client
+     */
+    public ElasticClient getClient() {
+        return proxy(ElasticClient.class, operations -> {
+            final BulkResponse response = bulk(operations);
+            synchronized (this) {
+                while (holding) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Returns all bulk operations received, in order.
+     *
+     * @return all bulk operations received
+     */
+    public List<Received> getOperations() {
+        final List<Received> ops = new ArrayList<>();
+        for (final List<Received> request : requests) {
+            ops.addAll(request);
+        }
+        return ops;
+    }
+
+    /**
+     * Returns the bulk operations of each request, in the order that requests were received.
+     *
+     * @return the bulk operations of each request
+     */
+    public List<List<Received>> getRequests() {
+        return ImmutableList.copyOf(requests);
+    }
+
+    /**
+     * Holds responses until {@link #release()} is called. Requests are still recorded as they are
+     * received.
+     */
+    public synchronized void hold() {
+        holding = true;
+    }
+
+    private <T> T proxy(final Class<T> type, final Function<CharSequence, ?> handler) {
+        final Class<?>[] interfaces = new Class<?>[] { type };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), interfaces, (p, m, args) -> {
+            switch (m.getName()) {
+            case "bulk":
+                return handler.apply((CharSequence) args[0]);
+            case "equals":
+                return p == args[0];
+            case "hashCode":
+                return System.identityHashCode(p);
+            case "toString":
+                return toString();
+            default:
+                throw new UnsupportedOperationException(m.getName());
+            }
+        }));
+    }
+
+    private JsonNode readTree(final String line) {
+        try {
+            return MAPPER.readTree(line);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Releases held responses, and stops holding them.
+     */
+    public void release() {
+        final List<Runnable> responses;
+        synchronized (this) {
+            holding = false;
+            notifyAll();
+            responses = new ArrayList<>(held);
+            held.clear();
+        }
+        responses.forEach(Runnable::run);
+    }
+
+    /**
+     * Sets the status of each bulk operation; operations succeed by default.
+     *
+     * @param status
+     *            function that returns the status of a bulk operation
+     */
+    public void setStatus(final ToIntFunction<Received> status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this) //
+                .add("requests", requests.size()) //
+                .toString();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.model.MemoryBudgetStats;
+
+public class MemoryBudgetTest {
+    @Test
+    public void testAcquireAndRelease() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(60);
+        Assertions.assertEquals(40, budget.getAvailableBytes());
+
+        // budget is exhausted
+        Assertions.assertFalse(budget.tryAcquire(41));
+        Assertions.assertTrue(budget.tryAcquire(40));
+        Assertions.assertEquals(0, budget.getAvailableBytes());
+
+        budget.release(100);
+        Assertions.assertEquals(100, budget.getAvailableBytes());
+
+        // operation larger than budget is admitted when nothing else is in use
+        Assertions.assertTrue(budget.tryAcquire(150));
+        Assertions.assertFalse(budget.tryAcquire(1));
+        budget.release(150);
+
+        final MemoryBudgetStats stats = budget.getStats();
+        Assertions.assertEquals(100, stats.getCapacity());
+        Assertions.assertEquals(0, stats.getUsedBytes());
+        Assertions.assertEquals(150, stats.getPeakBytes());
+        Assertions.assertEquals(2, stats.getRejected());
+        Assertions.assertEquals(0.0, stats.getUtilization());
+    }
+
+    @Test
+    public void testBlocking() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(80);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            try {
+                budget.acquire(50);
+                acquired.countDown();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        // producer waits until enough bytes are released
+        Assertions.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        budget.release(80);
+        Assertions.assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        thread.join();
+
+        Assertions.assertEquals(50, budget.getUsedBytes());
+        Assertions.assertEquals(1, budget.getStats().getBlocked());
+        Assertions.assertEquals(0.5, budget.getStats().getUtilization());
+    }
+
+    @Test
+    public void testFits() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(100);
+        Assertions.assertTrue(budget.fits(150));
+
+        // some bytes are available, but not enough
+        budget.acquire(70);
+        Assertions.assertTrue(budget.fits(30));
+        Assertions.assertFalse(budget.fits(31));
+        Assertions.assertEquals(30, budget.getAvailableBytes());
+        Assertions.assertEquals(0, budget.getStats().getRejected());
+    }
+
+    @Test
+    public void testInterrupted() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(80);
+
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final Thread thread = new Thread(() -> {
+            try {
+                budget.acquire(50);
+            } catch (final InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        thread.start();
+
+        // waiting producer can be interrupted
+        FakeElasticClient.await(() -> budget.getStats().getBlocked() == 1);
+        thread.interrupt();
+        thread.join(10_000);
+        Assertions.assertTrue(interrupted.get());
+        Assertions.assertEquals(80, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.acquire(80);
+
+        // gives up once timeout elapses
+        Assertions.assertFalse(budget.tryAcquire(50, 50, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(1, budget.getStats().getBlocked());
+        Assertions.assertEquals(1, budget.getStats().getRejected());
+
+        budget.release(80);
+        Assertions.assertTrue(budget.tryAcquire(50, 50, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(50, budget.getUsedBytes());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.bulk;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.bulk.BulkOperation.Action;
+import com.arakelian.elastic.doc.ElasticDocBuilder;
+import com.arakelian.elastic.doc.ElasticDocBuilderImpl;
+import com.arakelian.elastic.model.ElasticDocConfig;
+import com.arakelian.elastic.model.Field;
+import com.arakelian.elastic.model.ImmutableElasticDocConfig;
+import com.arakelian.elastic.model.ImmutableField;
+import com.arakelian.elastic.model.ImmutableMapping;
+import com.arakelian.elastic.model.IndexTest;
+import com.arakelian.elastic.model.JsonSelector;
+
+public class SimpleBulkOperationFactoryTest {
+    public static class Person {
+        private final String name;
+        private final int age;
+
+        public Person(final String name, final int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final String EXPECTED = "{\"name\":\"Schuyler\",\"age\":56}";
+
+    private static ElasticDocBuilder createBuilder() {
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(
+                        ImmutableMapping.builder() //
+                                .all(null) //
+                                .addField(
+                                        ImmutableField.builder() //
+                                                .name("name") //
+                                                .type(Field.Type.KEYWORD) //
+                                                .build()) //
+                                .addField(
+                                        ImmutableField.builder() //
+                                                .name("age") //
+                                                .type(Field.Type.INTEGER) //
+                                                .build()) //
+                                .build()) //
+                .putTarget("name", JsonSelector.of("/name")) //
+                .putTarget("age", JsonSelector.of("/age")) //
+                .build();
+        return new ElasticDocBuilderImpl(config);
+    }
+
+    private static ImmutableSimpleBulkOperationFactory.Builder<Person> factory() {
+        return ImmutableSimpleBulkOperationFactory.<Person> builder() //
+                .documentClass(Person.class) //
+                .id(Person::getName) //
+                .index(IndexTest.MINIMAL) //
+                .version(person -> null) //
+                .elasticDocBuilder(createBuilder());
+    }
+
+    @Test
+    public void testCustomFromCharSequence() throws IOException {
+        final AtomicInteger calls = new AtomicInteger();
+        final ElasticDocBuilder builder = createBuilder();
+        final SimpleBulkOperationFactory<Person> factory = factory() //
+                .fromCharSequence(json -> {
+                    calls.incrementAndGet();
+                    return builder.build(json);
+                }) //
+                .build();
+
+        // customized conversion of JSON text is still applied to objects
+        final Person person = new Person("Schuyler", 56);
+        Assertions.assertTrue(factory.getJson().apply(person) instanceof CharSequence);
+
+        final List<BulkOperation> ops = factory.createBulkOperations(person, Action.INDEX);
+        Assertions.assertEquals(1, ops.size());
+        Assertions.assertEquals(EXPECTED, ops.get(0).getSource().toString());
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testDefaultFromCharSequence() throws IOException {
+        final SimpleBulkOperationFactory<Person> factory = factory().build();
+
+        // objects are handed to the document builder without being serialized to JSON text
+        final Person person = new Person("Schuyler", 56);
+        Assertions.assertSame(person, factory.getJson().apply(person));
+
+        final List<BulkOperation> ops = factory.createBulkOperations(person, Action.INDEX);
+        Assertions.assertEquals(1, ops.size());
+        Assertions.assertEquals(EXPECTED, ops.get(0).getSource().toString());
+
+        // documents are unchanged without a document builder
+        final SimpleBulkOperationFactory<Person> identity = factory() //
+                .elasticDocBuilder(null) //
+                .build();
+        final String source = identity.createBulkOperations(person, Action.INDEX).get(0).getSource()
+                .toString();
+        Assertions.assertTrue(source.contains("\"name\":\"Schuyler\""), source);
+        Assertions.assertTrue(source.contains("\"age\":56"), source);
+    }
+}
@@ -26,6 +26,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -34,10 +39,12 @@ import com.arakelian.core.utils.DateUtils;
 import com.arakelian.elastic.AbstractElasticDockerTest;
 import com.arakelian.elastic.bulk.BulkIndexer;
 import com.arakelian.elastic.bulk.BulkIngester;
+import com.arakelian.elastic.bulk.BulkIngesterSubscriber;
 import com.arakelian.elastic.bulk.BulkOperation.VersionType;
 import com.arakelian.faker.model.Person;
 import com.arakelian.faker.service.RandomPerson;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 
 public class IndexerEventHandlerTest extends AbstractElasticDockerTest {
     private static class CaptureIndexerEventHandler extends AbstractIndexerEventHandler {
@@ -56,11 +63,70 @@ public class IndexerEventHandlerTest extends AbstractElasticDockerTest {
             copy.setVersion(event.getVersion());
             copy.setVersionType(event.getVersionType());
             copy.setStatus(event.getStatus());
+            copy.setCause(event.getCause());
             events.add(copy);
             eventsById.put(id, copy);
         }
     }
 
+    @Test
+    public void testFlowSubscriber() throws Exception {
+        final Map<String, IndexerEvent> eventsById = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        try (final IndexerEventFlowPublisher listener = new IndexerEventFlowPublisher()) {
+            listener.subscribe(new Flow.Subscriber<IndexerEvent>() {
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onNext(final IndexerEvent event) {
+                    eventsById.put(event.getId(), event);
+                }
+
+                @Override
+                public void onSubscribe(final Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+            });
+
+            final List<Person> people = RandomPerson.get().listOf(100);
+            withPersonIndex(index -> {
+                try (final BulkIndexer indexer = createIndexer(listener)) {
+                    // documents are requested by subscriber as indexer has capacity
+                    final BulkIngesterSubscriber subscriber = createPersonIngester(index, indexer)
+                            .newSubscriber(INDEX, 10);
+                    try (final SubmissionPublisher<Object> documents = new SubmissionPublisher<>()) {
+                        documents.subscribe(subscriber);
+                        people.forEach(documents::submit);
+                    }
+                    Futures.getChecked(subscriber.getCompletion(), IOException.class, 30, TimeUnit.SECONDS);
+                    assertEquals(people.size(), subscriber.getReceived());
+                    assertEquals(0, subscriber.getFailed());
+                }
+
+                for (final Person person : people) {
+                    assertGetDocument(index, person, null);
+                }
+            });
+        }
+
+        // publisher completes subscribers when closed, after delivering outcomes
+        Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(100, eventsById.size());
+        for (final IndexerEvent event : eventsById.values()) {
+            assertEquals(INDEX, event.getAction());
+            assertEquals(SUCCEEDED, event.getStatus());
+        }
+    }
+
     @Test
     public void testPublish() throws IOException {
         final CaptureIndexerEventHandler handler = new CaptureIndexerEventHandler();
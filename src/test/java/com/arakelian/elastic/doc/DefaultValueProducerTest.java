@@ -236,6 +236,39 @@ public class DefaultValueProducerTest {
                         "\"2016-88-2\""));
     }
 
+    @Test
+    public void testDateFastPath() throws IOException {
+        final DefaultValueProducer dates = new DefaultValueProducer(JacksonUtils.getObjectMapper());
+        final ObjectMapper mapper = JacksonUtils.getObjectMapper();
+
+        // ISO-8601 dates with an offset are parsed by the fast path
+        final Field iso = ImmutableField.builder().name("iso").type(Field.Type.DATE).build();
+        final List<String> inputs = ImmutableList.of(
+                "2016-12-21T16:46:39.830Z", //
+                "2016-12-21T16:46:39.830000000Z", //
+                "2016-12-21T16:46:39Z", //
+                "2016-12-21T11:46:39-05:00", //
+                "2016-12-21T22:16:39.5+05:30");
+        for (final String input : inputs) {
+            final ValueCollector<Object> result = new ValueCollector<>();
+            dates.traverse(iso, mapper.getNodeFactory().textNode(input), result);
+            Assertions.assertEquals(ImmutableList.of(DateUtils.toZonedDateTimeUtc(input)), result.get());
+        }
+        Assertions.assertEquals(inputs.size(), dates.getDateHits());
+        Assertions.assertEquals(0, dates.getDateMisses());
+
+        // other formats are given to the general parser, and the field learns to skip the fast path
+        final Field other = ImmutableField.builder().name("other").type(Field.Type.DATE).build();
+        for (int i = 0; i < 20; i++) {
+            final ValueCollector<Object> result = new ValueCollector<>();
+            dates.traverse(other, mapper.getNodeFactory().textNode("09/04/2016"), result);
+            final ZonedDateTime expected = DateUtils.toZonedDateTimeUtc("09/04/2016");
+            Assertions.assertEquals(ImmutableList.of(expected), result.get());
+        }
+        Assertions.assertEquals(inputs.size(), dates.getDateHits());
+        Assertions.assertEquals(20, dates.getDateMisses());
+    }
+
     @Test
     public void testDouble() throws IOException {
         final Field field = ImmutableField.builder().name("field").type(Field.Type.DOUBLE).build();
@@ -17,6 +17,13 @@
 
 package com.arakelian.elastic.doc;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,6 +35,7 @@ import com.arakelian.elastic.doc.filters.ImmutableStripWhitespace;
 import com.arakelian.elastic.doc.filters.ImmutableUppercase;
 import com.arakelian.elastic.doc.filters.Splitter;
 import com.arakelian.elastic.doc.filters.TokenFilter;
+import com.arakelian.elastic.doc.plugins.ElasticDocBuilderPlugin;
 import com.arakelian.elastic.model.ElasticDocConfig;
 import com.arakelian.elastic.model.Field;
 import com.arakelian.elastic.model.ImmutableElasticDocConfig;
@@ -35,9 +43,22 @@ import com.arakelian.elastic.model.ImmutableField;
 import com.arakelian.elastic.model.ImmutableMapping;
 import com.arakelian.elastic.model.JsonSelector;
 import com.arakelian.elastic.model.Mapping;
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.arakelian.json.JsonFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 
 public class ElasticDocBuilderTest {
+    public static class Person {
+        public int getAge() {
+            return 56;
+        }
+    }
+
     /** Sample input **/
     private String sampleJson;
 
@@ -229,6 +250,124 @@ public class ElasticDocBuilderTest {
                 actual);
     }
 
+    @Test
+    public void testBuildFromValue() {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .all(null) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("friends") //
+                                .type(Field.Type.KEYWORD) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("age") //
+                                .type(Field.Type.INTEGER) //
+                                .build()) //
+                .build();
+
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .putTarget("friends", JsonSelector.of("/friends")) //
+                .putTarget("age", JsonSelector.of("/age")) //
+                .build();
+
+        // objects are converted without being serialized to JSON text first
+        final ElasticDocBuilderImpl builder = new ElasticDocBuilderImpl(config);
+        final ImmutableMap<String, Object> value = ImmutableMap.of( //
+                "name",
+                "Schuyler",
+                "friends",
+                ImmutableList.of("Moe", "Larry", "Curly"),
+                "age",
+                Integer.valueOf(56));
+        final String expected = "{\"friends\":[\"Moe\",\"Larry\",\"Curly\"],\"age\":56}";
+        assertEquals(expected, builder.buildFromValue(value));
+        assertEquals(expected, builder.build("{\"friends\":[\"Moe\",\"Larry\",\"Curly\"],\"age\":56}"));
+
+        // objects are converted with the configured mapper
+        final ObjectMapper mapper = JacksonUtils.getObjectMapper().copy()
+                .setPropertyNamingStrategy(PropertyNamingStrategies.UPPER_CAMEL_CASE);
+        final ElasticDocBuilderImpl custom = new ElasticDocBuilderImpl(ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .objectMapper(mapper) //
+                .putTarget("age", JsonSelector.of("/Age")) //
+                .build());
+        assertEquals("{\"age\":56}", custom.buildFromValue(new Person()));
+    }
+
+    @Test
+    public void testCompactJson() {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .all(null) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("friends") //
+                                .type(Field.Type.KEYWORD) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("name") //
+                                .type(Field.Type.KEYWORD) //
+                                .build()) //
+                .build();
+
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .putTarget("name", JsonSelector.of("/name")) //
+                .putTarget("friends", JsonSelector.of("/friends")) //
+                .build();
+
+        // fields are written in mapping order, straight from document state
+        final ElasticDocBuilderImpl builder = new ElasticDocBuilderImpl(config);
+        for (int i = 0; i < 2; i++) {
+            final CharSequence actual = builder.build(sampleJson);
+            Assertions.assertTrue(actual instanceof CompactJson);
+            assertEquals("{\"friends\":[\"Moe\",\"Larry\",\"Curly\"],\"name\":\"Schuyler\"}", actual);
+        }
+    }
+
+    @Test
+    public void testConcurrentBuilds() throws InterruptedException, ExecutionException {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .all(null) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("name") //
+                                .addTokenFilter(ImmutableUppercase.of()) //
+                                .type(Field.Type.KEYWORD) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("friends") //
+                                .type(Field.Type.KEYWORD) //
+                                .build()) //
+                .build();
+
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .putTarget("name", JsonSelector.of("/name")) //
+                .putTarget("friends", JsonSelector.of("/friends")) //
+                .build();
+
+        // a single builder is shared by all threads
+        final ElasticDocBuilder builder = new ElasticDocBuilderImpl(config);
+        final String expected = "{\"name\":\"SCHUYLER\",\"friends\":[\"Moe\",\"Larry\",\"Curly\"]}";
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> futures = Lists.newArrayList();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> builder.build(sampleJson).toString()));
+            }
+            for (final Future<String> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testGeopoint() {
         final Mapping mapping = ImmutableMapping.builder() //
@@ -442,6 +581,173 @@ public class ElasticDocBuilderTest {
                 new ElasticDocBuilderImpl(config).build(sampleJson));
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOverrides() {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .all(null) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("ints") //
+                                .type(Field.Type.INTEGER) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("title") //
+                                .build()) //
+                .build();
+
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .compact(false) //
+                .putTarget("ints", JsonSelector.of("/numbers/int")) //
+                .build();
+
+        // overrides of the protected methods are on the call path of build
+        final List<String> calls = Lists.newArrayList();
+        final List<ElasticDoc> docs = Lists.newArrayList();
+        final ElasticDocBuilderImpl builder = new ElasticDocBuilderImpl(config) {
+            @Override
+            protected Map<String, Object> getDocumentAsMap() {
+                calls.add("getDocumentAsMap");
+                return super.getDocumentAsMap();
+            }
+
+            @Override
+            protected void put(final ElasticDoc doc, final Field field, final Object obj) {
+                calls.add("put " + obj);
+                super.put(doc, field, obj);
+            }
+
+            @Override
+            protected void putNode(final ElasticDoc doc, final Field field, final JsonNode node) {
+                calls.add("putNode " + field.getName());
+                docs.add(doc);
+                super.putNode(doc, field, node);
+            }
+
+            @Override
+            protected CharSequence writeDocumentAsJson(final boolean compact) {
+                calls.add("writeDocumentAsJson");
+                Assertions.assertEquals(3, getDocument().get("ints").size());
+                put(docs.get(0), mapping.getField("title"), "added");
+                return super.writeDocumentAsJson(compact);
+            }
+        };
+        Assertions.assertEquals(
+                "{\"ints\":[-2147483648,0,2147483647],\"title\":\"added\"}",
+                JsonFilter.compactQuietly(builder.build(sampleJson)).toString());
+        Assertions.assertEquals(
+                ImmutableList.of(
+                        "putNode ints",
+                        "put -2147483648",
+                        "put -2147483648",
+                        "put 0",
+                        "put 2147483647",
+                        "put 2147483647",
+                        "writeDocumentAsJson",
+                        "put added",
+                        "getDocumentAsMap"),
+                calls);
+        Assertions.assertThrows(IllegalStateException.class, () -> builder.getDocument());
+    }
+
+    @Test
+    public void testPrimitives() {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .all(null) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("booleans") //
+                                .type(Field.Type.BOOLEAN) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("doubles") //
+                                .sortTokens(true) //
+                                .type(Field.Type.DOUBLE) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("ints") //
+                                .ignoreMalformed(true) //
+                                .type(Field.Type.INTEGER) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("prices") //
+                                .type(Field.Type.FLOAT) //
+                                .build()) //
+                .build();
+
+        final ElasticDocConfig config = ImmutableElasticDocConfig.builder() //
+                .mapping(mapping) //
+                .putTarget("booleans", JsonSelector.of("/booleans/true")) //
+                .putTarget("doubles", JsonSelector.of("/numbers/double")) //
+                .putTarget("ints", JsonSelector.of("/numbers/int")) //
+                .putTarget("ints", JsonSelector.of("/numbers/shorts")) //
+                .putTarget("prices", JsonSelector.of("/store/book/price")) //
+                .build();
+
+        // primitives are written without boxing
+        final String expected = "{\"booleans\":true,\"doubles\":[6.67E-11,2.718,3.14]," //
+                + "\"ints\":[-2147483648,0,2147483647,-32768,32767],\"prices\":[8.95,12.99,8.99,22.99]}";
+        final ElasticDocBuilderImpl builder = new ElasticDocBuilderImpl(config);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, builder.build(sampleJson));
+        }
+
+        // plugins receive boxed values
+        final List<Object> values = Lists.newArrayList();
+        final ElasticDocBuilderPlugin plugin = new ElasticDocBuilderPlugin() {
+            @Override
+            public String getName() {
+                return "boxed";
+            }
+
+            @Override
+            public void put(
+                    final ElasticDoc doc,
+                    final Field field,
+                    final Object value,
+                    final Field originalField,
+                    final Object originalValue) {
+                values.add(value);
+            }
+        };
+        final ElasticDocBuilderImpl boxed = new ElasticDocBuilderImpl(ImmutableElasticDocConfig.builder() //
+                .from(config) //
+                .addPlugin(plugin) //
+                .build());
+        assertEquals(expected, boxed.build(sampleJson));
+        Assertions.assertEquals(Boolean.TRUE, values.get(0));
+        Assertions.assertEquals(Float.valueOf(22.99f), values.get(values.size() - 1));
+
+        // subclasses that override put receive boxed values
+        final List<Object> puts = Lists.newArrayList();
+        final ElasticDocBuilderImpl subclass = new ElasticDocBuilderImpl(config) {
+            @Override
+            protected void put(final ElasticDoc doc, final Field field, final Object obj) {
+                puts.add(obj);
+                super.put(doc, field, obj);
+            }
+        };
+        assertEquals(expected, subclass.build(sampleJson));
+        Assertions.assertEquals(values, puts);
+
+        // subclasses may handle primitives without boxing
+        final List<Integer> ints = Lists.newArrayList();
+        final ElasticDocBuilderImpl unboxed = new ElasticDocBuilderImpl(config) {
+            @Override
+            protected void put(final ElasticDoc doc, final Field field, final int value) {
+                ints.add(value);
+                super.put(doc, field, value);
+            }
+        };
+        assertEquals(expected, unboxed.build(sampleJson));
+        Assertions.assertEquals(9, ints.size());
+    }
+
     @Test
     public void testSourcePathIsArray() {
         final Mapping mapping = ImmutableMapping.builder() //
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.doc.filters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.model.Field;
+import com.arakelian.elastic.model.ImmutableField;
+import com.arakelian.elastic.model.ImmutableMapping;
+import com.arakelian.elastic.model.Mapping;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+public class CachingTokenFilterTest {
+    @Test
+    public void testCachesTokens() {
+        final AtomicInteger calls = new AtomicInteger();
+        final TokenFilter chain = TokenChain
+                .link(ImmutableList.of(SplitterTest.WHITESPACE, UppercaseTest.FILTER));
+        final TokenFilter counting = new TokenFilter() {
+            @Override
+            public <T extends Consumer<String>> T accept(final String value, final T output) {
+                if (value != null) {
+                    calls.incrementAndGet();
+                }
+                return chain.accept(value, output);
+            }
+        };
+
+        final CachingTokenFilter filter = new CachingTokenFilter(counting, 100, null);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(ImmutableList.of("ONE", "TWO"), filter.execute("one two"));
+            Assertions.assertEquals(ImmutableList.of("VA"), filter.execute("va"));
+        }
+        Assertions.assertEquals(2, calls.get());
+
+        final CacheStats stats = filter.getStats();
+        Assertions.assertEquals(4, stats.hitCount());
+        Assertions.assertEquals(2, stats.missCount());
+    }
+
+    @Test
+    public void testMapping() {
+        final Mapping mapping = ImmutableMapping.builder() //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("state") //
+                                .type(Field.Type.KEYWORD) //
+                                .addTokenFilter(UppercaseTest.FILTER) //
+                                .tokenCacheWeight(1024L) //
+                                .build()) //
+                .addField(
+                        ImmutableField.builder() //
+                                .name("name") //
+                                .type(Field.Type.KEYWORD) //
+                                .addTokenFilter(UppercaseTest.FILTER) //
+                                .build()) //
+                .build();
+
+        final TokenFilter state = mapping.getFieldTokenFilter("state");
+        Assertions.assertTrue(state instanceof CachingTokenFilter);
+        Assertions.assertEquals(ImmutableList.of("VA"), state.execute("va"));
+        Assertions.assertEquals(ImmutableList.of("VA"), state.execute("va"));
+        Assertions.assertEquals(1, ((CachingTokenFilter) state).getStats().hitCount());
+
+        Assertions.assertFalse(mapping.getFieldTokenFilter("name") instanceof CachingTokenFilter);
+    }
+
+    @Test
+    public void testSizeOrWeight() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new CachingTokenFilter(UppercaseTest.FILTER, 100, 1024L));
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new CachingTokenFilter(UppercaseTest.FILTER, null, null));
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new CachingTokenFilter(UppercaseTest.FILTER, 0, null));
+
+        // fields are validated when they are built
+        Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> ImmutableField.builder() //
+                        .name("state") //
+                        .tokenCacheSize(100) //
+                        .tokenCacheWeight(1024L) //
+                        .build());
+        Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> ImmutableField.builder() //
+                        .name("state") //
+                        .tokenCacheWeight(0L) //
+                        .build());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Compares the cost per field value of char filter chains that create a string per filter, that
+ * rewrite a single buffer with one pass per filter, and that fuse runs of filters into single
+ * scans with {@link CharBufferChain}.
+ *
+ * This is not run as part of the test suite; run {@link #main(String[])} directly.
+ */
+public class CharBufferChainBenchmark {
+    private static final Map<String, List<AbstractCharFilter>> FIELDS = ImmutableMap.of(
+            "name",
+            ImmutableList.of(
+                    TrimWhitespaceTest.FILTER,
+                    ImmutableReduceWhitespace.of(),
+                    LowercaseTest.FILTER,
+                    ReplaceControlCharactersTest.FILTER),
+            "code",
+            ImmutableList.of(StripWhitespaceTest.FILTER, UppercaseTest.FILTER, TruncateTest.SAMPLE),
+            "keyword",
+            ImmutableList.of(TrimWhitespaceTest.FILTER, LowercaseTest.FILTER, TruncateTest.SAMPLE));
+
+    private static final List<String> VALUES = ImmutableList.of(
+            "  The Quick  Brown Fox Jumps Over   The Lazy Dog ",
+            "already normalized value",
+            "AB 12 cd 34 EF");
+
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final int ROUNDS = 5;
+
+    private static int sink;
+
+    public static void main(final String[] args) {
+        final Consumer<CharSequence> consumer = token -> sink += token.length();
+
+        for (final String field : FIELDS.keySet()) {
+            final List<AbstractCharFilter> filters = FIELDS.get(field);
+            final CharBufferChain chain = new CharBufferChain(filters);
+            final StringBuilder token = new StringBuilder();
+
+            final long strings = measure(() -> {
+                for (final String value : VALUES) {
+                    String result = value;
+                    for (final AbstractCharFilter filter : filters) {
+                        result = filter.apply(result);
+                    }
+                    sink += result.length();
+                }
+            });
+            final long passes = measure(() -> {
+                for (final String value : VALUES) {
+                    token.setLength(0);
+                    token.append(value);
+                    for (final AbstractCharFilter filter : filters) {
+                        filter.rewrite(token);
+                    }
+                    sink += token.length();
+                }
+            });
+            final long fused = measure(() -> {
+                for (final String value : VALUES) {
+                    chain.executeBuffered(value, consumer);
+                }
+            });
+
+            System.out.printf(
+                    "%-8s strings: %5d ns/op, passes: %5d ns/op, fused: %5d ns/op (%.2fx)%n",
+                    field,
+                    strings,
+                    passes,
+                    fused,
+                    (double) passes / fused);
+        }
+    }
+
+    private static long measure(final Runnable op) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                op.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / ITERATIONS / VALUES.size());
+        }
+        return best;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.doc.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class CharBufferChainTest {
+    private static final List<AbstractCharFilter> FILTERS = ImmutableList.of(
+            LowercaseTest.FILTER,
+            UppercaseTest.FILTER,
+            TrimWhitespaceTest.FILTER,
+            StripWhitespaceTest.FILTER,
+            ImmutableReduceWhitespace.of(),
+            ReplaceControlCharactersTest.FILTER,
+            NormalizePunctuationTest.FILTER,
+            TruncateTest.SAMPLE,
+            ReverseTest.FILTER);
+
+    private static final List<String> VALUES = ImmutableList.of(
+            "",
+            " ",
+            "Hello World",
+            "  leading and trailing  ",
+            "\t tabs \t and\n\nnewlines \r\n",
+            "single\ttab",
+            "one\u0000two",
+            "Straße İstanbul ΣΟΦΟΣ",
+            " non-breaking spaces ",
+            "surrogate 😀 pair",
+            "a very long value that will be truncated");
+
+    private static final char[] CHARS = { ' ', ' ', '\t', '\n', '\u0000', '\u00a0', 'a', 'B', 'z', '0',
+            '-', '\u2019', '\u00e9', '\u0130' };
+
+    /** Characters that fused scans handle without falling back to the original filters **/
+    private static final char[] ASCII = { ' ', ' ', ' ', 'a', 'B', 'z', '0', '-', '.' };
+
+    @Test
+    public void testChainMatchesStrings() {
+        final CharBufferChain chain = new CharBufferChain(FILTERS);
+        for (final String value : VALUES) {
+            String expected = value;
+            for (final AbstractCharFilter filter : FILTERS) {
+                expected = filter.apply(expected);
+            }
+            Assertions.assertEquals(expected, chain.apply(value), value);
+        }
+    }
+
+    @Test
+    public void testExecute() {
+        final TokenFilter filter = TokenChain.link(
+                ImmutableList.of(
+                        TrimWhitespaceTest.FILTER,
+                        ImmutableReduceWhitespace.of(),
+                        LowercaseTest.FILTER));
+        Assertions.assertTrue(filter instanceof CharBufferChain);
+        Assertions.assertEquals(ImmutableList.of("hello world"), filter.execute("  Hello \t World "));
+        Assertions.assertEquals(ImmutableList.of(), filter.execute("   "));
+        Assertions.assertEquals(ImmutableList.of(), filter.execute(null));
+
+        // only the buffered variant passes the reusable buffer to the consumer
+        final List<CharSequence> tokens = new ArrayList<>();
+        filter.execute(" Hello ", tokens::add);
+        filter.executeBuffered(" World ", token -> tokens.add(token.toString()));
+        Assertions.assertEquals(ImmutableList.of("hello", "world"), tokens);
+        Assertions.assertTrue(tokens.get(0) instanceof String);
+    }
+
+    @Test
+    public void testFusedScansMatchFilters() {
+        // random runs of filters, where character mapping and positional filters are fused
+        assertMatchesFilters(ASCII);
+    }
+
+    @Test
+    public void testLookupTablesMatchFilters() {
+        // random runs of filters, where character mapping filters are composed into lookup tables
+        assertMatchesFilters(CHARS);
+    }
+
+    @Test
+    public void testNestedExecute() {
+        final TokenFilter filter = TokenChain
+                .link(ImmutableList.of(UppercaseTest.FILTER, ReverseTest.FILTER));
+        final List<String> tokens = new ArrayList<>();
+        filter.executeBuffered("abc", outer -> {
+            // consumer runs while outer buffer is in use
+            filter.executeBuffered("xyz", inner -> tokens.add(inner.toString()));
+            tokens.add(outer.toString());
+        });
+        Assertions.assertEquals(ImmutableList.of("ZYX", "CBA"), tokens);
+    }
+
+    @Test
+    public void testRewriteMatchesApply() {
+        for (final AbstractCharFilter filter : FILTERS) {
+            for (final String value : VALUES) {
+                final StringBuilder token = new StringBuilder(value);
+                Assertions.assertTrue(filter.rewrite(token));
+                Assertions.assertEquals(filter.apply(value), token.toString(), filter + ": " + value);
+            }
+        }
+    }
+
+    private void assertMatchesFilters(final char[] chars) {
+        final Random random = new Random(0);
+        for (int n = 0; n < 10000; n++) {
+            final List<AbstractCharFilter> filters = new ArrayList<>();
+            for (int i = 2 + random.nextInt(4); i > 0; i--) {
+                filters.add(FILTERS.get(random.nextInt(FILTERS.size())));
+            }
+            final CharBufferChain chain = new CharBufferChain(filters);
+
+            final StringBuilder buf = new StringBuilder();
+            for (int i = random.nextInt(16); i > 0; i--) {
+                buf.append(chars[random.nextInt(chars.length)]);
+            }
+            final String value = buf.toString();
+
+            String expected = value;
+            for (final AbstractCharFilter filter : filters) {
+                expected = filter.apply(expected);
+            }
+            final StringBuilder token = new StringBuilder(value);
+            Assertions.assertEquals(expected != null, chain.rewrite(token));
+            if (expected != null) {
+                Assertions.assertEquals(expected, token.toString(), filters + ": " + value);
+            }
+        }
+    }
+}
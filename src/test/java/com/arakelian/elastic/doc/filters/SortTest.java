@@ -22,12 +22,17 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
 import com.arakelian.core.utils.SerializableTestUtils;
 import com.arakelian.jackson.utils.JacksonTestUtils;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 public class SortTest {
     public static final SortFilter SAMPLE = ImmutableSortFilter.builder().build();
@@ -46,6 +51,28 @@ public class SortTest {
         return SAMPLE.accept(null, collector).get();
     }
 
+    @Test
+    public void testConcurrentExecution() throws InterruptedException, ExecutionException {
+        // filter chain is shared by all threads
+        final TokenFilter chain = TokenChain.link(ImmutableList.of(Splitter.WHITESPACE, SAMPLE));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<List<String>>> futures = Lists.newArrayList();
+            for (int i = 0; i < 1000; i++) {
+                final String value = i % 2 == 0 ? "c b a" : "z y x w";
+                futures.add(executor.submit(() -> chain.execute(value)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                final List<String> expected = i % 2 == 0 ? ImmutableList.of("a", "b", "c")
+                        : ImmutableList.of("w", "x", "y", "z");
+                assertEquals(expected, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testJackson() throws IOException {
         JacksonTestUtils.testReadWrite(SAMPLE, SortFilter.class);
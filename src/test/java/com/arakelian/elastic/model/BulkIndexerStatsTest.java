@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BulkIndexerStatsTest {
+    @Test
+    public void testDefaults() {
+        // statistics that were added later are optional
+        final BulkIndexerStats stats = ImmutableBulkIndexerStats.builder() //
+                .failed(1) //
+                .retries(2) //
+                .submitted(10) //
+                .successful(9) //
+                .totalBytes(1000) //
+                .versionConflicts(0) //
+                .build();
+        Assertions.assertEquals(0, stats.getBatchBytes());
+        Assertions.assertEquals(0, stats.getCollapsed());
+        Assertions.assertEquals(0, stats.getConcurrency());
+        Assertions.assertEquals(10, stats.getExpected());
+        Assertions.assertEquals(12, stats.getTotal());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.model;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+
+public class JsonSelectorPlanTest {
+    private static final String JSON = "{\"a\":\"a1\", \"b\":[\"b1\",\"b2\"], "
+            + "\"c\":[{\"ca\":\"c1\",\"cb\":\"c2\"},{\"ca\":\"c3\",\"cc\":{\"x\":[1,null,2]}}], "
+            + "\"d\":{\"da\":{\"x\":\"d1\"},\"db\":[[{\"x\":\"d2\"}],{\"x\":\"d3\"}]}, "
+            + "\"x\":[false,3.141569,9223372036854775807]}";
+
+    private static final List<String> SELECTORS = ImmutableList.of(
+            "a",
+            "b",
+            "c",
+            "c/ca",
+            "c/cc",
+            "c/cc/x",
+            "d/da",
+            "d/db/x",
+            "x",
+            "missing",
+            "a/missing",
+            "$.a",
+            "+ a, d/da/x");
+
+    @Test
+    public void testRead() throws IOException {
+        final Field field = FieldTest.MINIMAL;
+        final Multimap<JsonSelector, Field> targets = LinkedHashMultimap.create();
+        for (final String selector : SELECTORS) {
+            targets.put(JsonSelector.of(selector), field);
+        }
+
+        final JsonSelectorPlan plan = JsonSelectorPlan.compile(targets);
+        Assertions.assertEquals(SELECTORS.size(), plan.getSelectors().size());
+
+        final JsonNode document = JacksonUtils.readValue(JSON, JsonNode.class);
+        final JsonNode[] values = plan.read(document);
+        for (int i = 0; i < values.length; i++) {
+            final JsonSelector selector = plan.getSelectors().get(i);
+            Assertions.assertEquals(ImmutableList.of(field), plan.getTargets(i));
+            if (selector.getType() == JsonSelector.Type.PATH) {
+                Assertions.assertEquals(selector.read(document), values[i], selector.getSelector());
+            } else {
+                Assertions.assertNull(values[i], selector.getSelector());
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.okhttp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.ElasticException;
+import com.arakelian.elastic.model.About;
+import com.arakelian.elastic.model.VersionComponents;
+import com.arakelian.jackson.utils.JacksonUtils;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.converter.scalars.ScalarsConverterFactory;
+import retrofit2.mock.MockRetrofit;
+import retrofit2.mock.NetworkBehavior;
+
+public class OkHttpElasticClientTest {
+    private NetworkBehavior networkBehavior;
+
+    private OkHttpElasticClient elasticClient;
+
+    @BeforeEach
+    public void initializeRetrofit() {
+        final Retrofit retrofit = new Retrofit.Builder() //
+                .baseUrl("http://localhost") //
+                .addConverterFactory(ScalarsConverterFactory.create()) //
+                .addConverterFactory(JacksonConverterFactory.create(JacksonUtils.getObjectMapper())) //
+                .build();
+
+        // configure Mock delegate
+        networkBehavior = NetworkBehavior.create();
+        networkBehavior.setDelay(0, TimeUnit.MICROSECONDS);
+        networkBehavior.setVariancePercent(0);
+        final MockRetrofit mockRetrofit = new MockRetrofit.Builder(retrofit) //
+                .networkBehavior(networkBehavior) //
+                .build();
+
+        final MockOkHttpElasticApi mockApi = new MockOkHttpElasticApi(
+                mockRetrofit.create(OkHttpElasticApi.class));
+        elasticClient = new OkHttpElasticClient("http://localhost", (elasticUrl, mapper) -> {
+            return mockApi;
+        }, JacksonUtils.getObjectMapper(), VersionComponents.of("6.0.1"));
+    }
+
+    @Test
+    public void testAsync() throws InterruptedException, ExecutionException {
+        networkBehavior.setFailurePercent(0);
+        networkBehavior.setErrorPercent(0);
+
+        final CompletableFuture<About> future = elasticClient.async().about();
+        Assertions.assertEquals(elasticClient.about(), future.get());
+    }
+
+    @Test
+    public void testAsyncFailure() throws InterruptedException {
+        networkBehavior.setFailurePercent(100);
+
+        final CompletableFuture<About> future = elasticClient.async().about();
+        final ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertTrue(e.getCause() instanceof ElasticException, () -> e.getCause().toString());
+    }
+
+    @Test
+    public void testAsyncUnsupported() {
+        // exceptions thrown while creating request complete the future
+        final CompletableFuture<?> future = elasticClient.async().refreshIndex("test");
+        final ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertTrue(e.getCause() instanceof ElasticException, () -> e.getCause().toString());
+        Assertions.assertTrue(e.getCause().getCause() instanceof UnsupportedOperationException);
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.arakelian.elastic.refresh;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -36,7 +37,10 @@ import com.arakelian.elastic.okhttp.OkHttpElasticApi;
 import com.arakelian.elastic.okhttp.OkHttpElasticClient;
 import com.arakelian.jackson.utils.JacksonUtils;
 
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
@@ -73,6 +77,12 @@ public class RefreshLimiterTest {
             @Override
             public Call<Refresh> refreshIndex(final String names) {
                 refreshCount.incrementAndGet();
+                if (names.contains("missing")) {
+                    final ResponseBody body = ResponseBody
+                            .create("{}", MediaType.parse("application/json"));
+                    return delegate.returning(Calls.response(Response.<Refresh> error(404, body)))
+                            .refreshIndex(names);
+                }
                 final Refresh response = ImmutableRefresh.builder() //
                         .shards(
                                 ImmutableShards.builder() //
@@ -87,6 +97,143 @@ public class RefreshLimiterTest {
         return elasticClient;
     }
 
+    @Test
+    public void testCloseRefreshesPending() {
+        final RefreshLimiterConfig config = ImmutableRefreshLimiterConfig.builder() //
+                .coreThreads(1) //
+                .maximumThreads(1) //
+                .defaultPermitsPerSecond(1.0d) //
+                .coalesceMillis(60000) //
+                .build();
+
+        final MockOkHttpElasticApi mockApi = mockApi();
+        final OkHttpElasticClient elasticClient = new OkHttpElasticClient("http://localhost",
+                (elasticUrl, mapper) -> {
+                    return mockApi;
+                }, JacksonUtils.getObjectMapper(), VersionComponents.of("6.0.1"));
+        networkBehavior.setFailurePercent(0);
+
+        final String index = "test";
+        final DefaultRefreshLimiter refreshLimiter = new DefaultRefreshLimiter(config, elasticClient);
+        refreshLimiter.enqueueRefresh(index);
+        refreshLimiter.close();
+
+        // pending index is refreshed during close, rather than waiting for next tick
+        Assertions.assertTrue(refreshLimiter.waitForRefresh(index, 1, TimeUnit.MINUTES));
+        Assertions.assertEquals(1, mockApi.refreshCount.get());
+        final RefreshStats stats = refreshLimiter.getStats(index);
+        Assertions.assertEquals(0, stats.getAcquires().get());
+        Assertions.assertEquals(1, stats.getAttempts().get());
+        Assertions.assertEquals(1, stats.getSuccessful().get());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> refreshLimiter.enqueueRefresh(index));
+    }
+
+    @Test
+    public void testCoalesce() {
+        final RefreshLimiterConfig config = ImmutableRefreshLimiterConfig.builder() //
+                .coreThreads(1) //
+                .maximumThreads(1) //
+                .defaultPermitsPerSecond(1.0d) //
+                .coalesceMillis(500) //
+                .build();
+
+        final MockOkHttpElasticApi mockApi = mockApi();
+        final OkHttpElasticClient elasticClient = new OkHttpElasticClient("http://localhost",
+                (elasticUrl, mapper) -> {
+                    return mockApi;
+                }, JacksonUtils.getObjectMapper(), VersionComponents.of("6.0.1"));
+        networkBehavior.setFailurePercent(0);
+
+        final String[] indexes = { "test-1", "test-2", "test-3" };
+        try (DefaultRefreshLimiter refreshLimiter = new DefaultRefreshLimiter(config, elasticClient)) {
+            for (final String index : indexes) {
+                refreshLimiter.enqueueRefresh(index);
+                refreshLimiter.enqueueRefresh(index);
+            }
+            for (final String index : indexes) {
+                Assertions.assertTrue(refreshLimiter.waitForRefresh(index, 1, TimeUnit.MINUTES));
+            }
+
+            // indexes are refreshed with a single request, but statistics are kept per index
+            Assertions.assertEquals(1, mockApi.refreshCount.get());
+            for (final String index : indexes) {
+                final RefreshStats stats = refreshLimiter.getStats(index);
+                LOGGER.info("Index {}: {}", index, stats);
+                Assertions.assertEquals(1, stats.getAttempts().get());
+                Assertions.assertEquals(1, stats.getSuccessful().get());
+            }
+        }
+    }
+
+    @Test
+    public void testCoalesceAcquires() {
+        final RefreshLimiterConfig config = ImmutableRefreshLimiterConfig.builder() //
+                .coreThreads(1) //
+                .maximumThreads(1) //
+                .defaultPermitsPerSecond(1.0d) //
+                .coalesceMillis(50) //
+                .build();
+
+        final MockOkHttpElasticApi mockApi = mockApi();
+        final OkHttpElasticClient elasticClient = new OkHttpElasticClient("http://localhost",
+                (elasticUrl, mapper) -> {
+                    return mockApi;
+                }, JacksonUtils.getObjectMapper(), VersionComponents.of("6.0.1"));
+        networkBehavior.setFailurePercent(0);
+
+        final String index = "test";
+        try (DefaultRefreshLimiter refreshLimiter = new DefaultRefreshLimiter(config, elasticClient)) {
+            // second refresh waits about a second for rate limiter, spanning many ticks
+            for (int i = 0; i < 2; i++) {
+                refreshLimiter.enqueueRefresh(index);
+                Assertions.assertTrue(refreshLimiter.waitForRefresh(index, 1, TimeUnit.MINUTES));
+            }
+
+            final RefreshStats stats = refreshLimiter.getStats(index);
+            LOGGER.info("Index {}: {}", index, stats);
+            Assertions.assertEquals(2, stats.getAcquires().get());
+            Assertions.assertEquals(2, stats.getAttempts().get());
+            Assertions.assertEquals(2, stats.getSuccessful().get());
+        }
+    }
+
+    @Test
+    public void testCoalesceNotFound() {
+        final RefreshLimiterConfig config = ImmutableRefreshLimiterConfig.builder() //
+                .coreThreads(1) //
+                .maximumThreads(1) //
+                .defaultPermitsPerSecond(1.0d) //
+                .coalesceMillis(500) //
+                .build();
+
+        final MockOkHttpElasticApi mockApi = mockApi();
+        final OkHttpElasticClient elasticClient = new OkHttpElasticClient("http://localhost",
+                (elasticUrl, mapper) -> {
+                    return mockApi;
+                }, JacksonUtils.getObjectMapper(), VersionComponents.of("6.0.1"));
+        networkBehavior.setFailurePercent(0);
+
+        final String[] indexes = { "test-1", "missing" };
+        try (DefaultRefreshLimiter refreshLimiter = new DefaultRefreshLimiter(config, elasticClient)) {
+            for (final String index : indexes) {
+                refreshLimiter.enqueueRefresh(index);
+            }
+            for (final String index : indexes) {
+                Assertions.assertTrue(refreshLimiter.waitForRefresh(index, 1, TimeUnit.MINUTES));
+            }
+
+            // coalesced request fails, and indexes are refreshed individually
+            Assertions.assertEquals(3, mockApi.refreshCount.get());
+            for (final String index : indexes) {
+                final RefreshStats stats = refreshLimiter.getStats(index);
+                LOGGER.info("Index {}: {}", index, stats);
+                Assertions.assertEquals(1, stats.getAttempts().get());
+            }
+            Assertions.assertEquals(1, refreshLimiter.getStats("test-1").getSuccessful().get());
+            Assertions.assertEquals(0, refreshLimiter.getStats("missing").getSuccessful().get());
+        }
+    }
+
     @Test
     public void testEnqueueOnePerSecond() {
         verifyEnqueue(3000, 1.0d, false);
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arakelian.elastic.utils;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.arakelian.elastic.model.JsonSelector;
+import com.arakelian.jackson.utils.JacksonUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+public class JsonPathMatcherTest {
+    private static final String JSON = "{\"a\":\"a1\", \"b\":[\"b1\",\"b2\"], "
+            + "\"c\":[{\"ca\":\"c1\",\"cb\":\"c2\"},{\"ca\":\"c3\",\"cc\":{\"x\":[1,2]}}], "
+            + "\"d\":{\"da\":{\"x\":\"d1\"},\"db\":[[{\"x\":\"d2\"}],{\"x\":\"d3\"}]}, "
+            + "\"x\":[false,3.141569,9223372036854775807]}";
+
+    private static final List<String> SELECTORS = ImmutableList
+            .of("a", "b", "c", "c/ca", "c/cc/x", "d/da", "d/db/x", "x", "missing", "a/missing");
+
+    private JsonNode read(final String... selectors) throws IOException {
+        final ImmutableList.Builder<List<String>> paths = ImmutableList.builder();
+        for (final String selector : selectors) {
+            paths.add(JsonSelector.of(selector).getPath());
+        }
+        final JsonPathMatcher matcher = JsonPathMatcher.compile(paths.build());
+
+        final ObjectMapper mapper = JacksonUtils.getObjectMapper();
+        try (final JsonParser parser = mapper.createParser(JSON)) {
+            return matcher.read(mapper, parser);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final ObjectMapper mapper = JacksonUtils.getObjectMapper();
+        try (final JsonParser parser = mapper.createParser("")) {
+            final JsonPathMatcher matcher = JsonPathMatcher.compile(ImmutableList.of());
+            Assertions.assertTrue(matcher.read(mapper, parser).isMissingNode());
+        }
+    }
+
+    @Test
+    public void testSameAsTree() throws IOException {
+        final JsonNode tree = JacksonUtils.readValue(JSON, JsonNode.class);
+        for (final String selector : SELECTORS) {
+            final JsonSelector js = JsonSelector.of(selector);
+            Assertions.assertEquals(js.read(tree), js.read(read(selector)), selector);
+        }
+
+        final JsonNode all = read(SELECTORS.toArray(new String[0]));
+        for (final String selector : SELECTORS) {
+            final JsonSelector js = JsonSelector.of(selector);
+            Assertions.assertEquals(js.read(tree), js.read(all), selector);
+        }
+    }
+
+    @Test
+    public void testSkipsUnmatched() throws IOException {
+        Assertions.assertEquals("{\"a\":\"a1\"}", read("a").toString());
+        Assertions.assertEquals("{\"c\":[{\"ca\":\"c1\"},{\"ca\":\"c3\"}]}", read("c/ca").toString());
+        Assertions.assertEquals("{\"d\":{\"da\":{\"x\":\"d1\"}}}", read("d/da").toString());
+        Assertions.assertEquals("{}", read("missing").toString());
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ResizableSemaphoreTest {
+    @Test
+    public void testGrow() {
+        final ResizableSemaphore semaphore = new ResizableSemaphore(1, false);
+        Assertions.assertTrue(semaphore.tryAcquire());
+        Assertions.assertFalse(semaphore.tryAcquire());
+
+        semaphore.setPermits(3);
+        Assertions.assertEquals(3, semaphore.getPermits());
+        Assertions.assertTrue(semaphore.tryAcquire(2));
+        Assertions.assertFalse(semaphore.tryAcquire());
+    }
+
+    @Test
+    public void testShrinkWhileHeld() {
+        final ResizableSemaphore semaphore = new ResizableSemaphore(4, false);
+        Assertions.assertTrue(semaphore.tryAcquire(3));
+
+        // permits that are held are not affected
+        semaphore.setPermits(1);
+        Assertions.assertEquals(1, semaphore.getPermits());
+        Assertions.assertEquals(-2, semaphore.availablePermits());
+
+        // a permit is available once enough have been released
+        semaphore.release(2);
+        Assertions.assertFalse(semaphore.tryAcquire());
+        semaphore.release();
+        Assertions.assertTrue(semaphore.tryAcquire());
+        Assertions.assertFalse(semaphore.tryAcquire());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.arakelian.elastic.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadExecutorTest {
+    @Test
+    public void testConcurrencyAndQueue() throws InterruptedException {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(
+                VirtualThreadExecutor.newThreadFactory("test-"), 2, 1, false);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger virtual = new AtomicInteger();
+        final Runnable task = () -> {
+            try {
+                release.await();
+                completed.incrementAndGet();
+                if (VirtualThreadExecutor.isVirtual(Thread.currentThread())) {
+                    virtual.incrementAndGet();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // two tasks run, and one waits
+        executor.execute(task);
+        executor.execute(task);
+        executor.execute(task);
+        waitFor(() -> executor.getActiveCount() == 2 && executor.getQueueSize() == 1);
+
+        // executor is full
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(task));
+
+        release.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(3, completed.get());
+
+        // tasks only run on virtual threads when the JVM supports them
+        Assertions.assertEquals(VirtualThreadExecutor.isVirtualThreadSupported() ? 3 : 0, virtual.get());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(task));
+    }
+
+    @Test
+    public void testCallerRuns() throws InterruptedException {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(
+                VirtualThreadExecutor.newThreadFactory("test-"), 1, 0, true);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waitFor(() -> executor.getActiveCount() == 1);
+
+        // executor is full, so task runs on this thread
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger ranOnCaller = new AtomicInteger();
+        executor.execute(() -> {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        });
+        Assertions.assertEquals(1, ranOnCaller.get());
+
+        release.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSetConcurrency() throws InterruptedException {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(
+                VirtualThreadExecutor.newThreadFactory("test-"), 1, 10, false);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        waitFor(() -> executor.getActiveCount() == 1 && executor.getQueueSize() == 2);
+
+        executor.setConcurrency(3);
+        waitFor(() -> executor.getActiveCount() == 3);
+
+        release.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testVirtualThreadEnabled() {
+        // virtual threads are supported from Java 21
+        final boolean supported = Runtime.version().feature() >= 21;
+        Assertions.assertEquals(supported, VirtualThreadExecutor.isVirtualThreadSupported());
+
+        // callers fall back to thread pools when virtual threads are not supported
+        Assertions.assertFalse(VirtualThreadExecutor.isVirtualThreadEnabled(false));
+        Assertions.assertEquals(supported, VirtualThreadExecutor.isVirtualThreadEnabled(true));
+
+        final Thread thread = VirtualThreadExecutor.newThreadFactory("test-").newThread(() -> {
+        });
+        Assertions.assertEquals(supported, VirtualThreadExecutor.isVirtual(thread));
+        Assertions.assertTrue(thread.isDaemon());
+        Assertions.assertFalse(VirtualThreadExecutor.isVirtual(Thread.currentThread()));
+    }
+
+    private void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Timed out waiting for condition");
+            Thread.sleep(10);
+        }
+    }
+}